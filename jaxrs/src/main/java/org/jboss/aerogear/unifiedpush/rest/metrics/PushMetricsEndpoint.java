@@ -19,11 +19,14 @@ package org.jboss.aerogear.unifiedpush.rest.metrics;
 import static org.jboss.aerogear.unifiedpush.rest.util.HttpRequestUtil.extractSortingQueryParamValue;
 import com.qmino.miredot.annotations.ReturnType;
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.PushMessageState;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
+import org.jboss.aerogear.unifiedpush.service.impl.SearchManager;
 import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
 
 import javax.inject.Inject;
 import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
@@ -44,6 +47,9 @@ public class PushMetricsEndpoint {
     @Inject
     private PushMessageMetricsService metricsService;
 
+    @Inject
+    private SearchManager searchManager;
+
     /**
      * GET info about submitted push messages for the given Push Application
      *
@@ -91,6 +97,74 @@ public class PushMetricsEndpoint {
                 .build();
     }
 
+    /**
+     * Cancel the delivery of a push message: devices that were not served yet are not going to receive the message
+     *
+     * @param id    id of {@link PushMessageInformation}
+     *
+     * @statuscode 204 The delivery was cancelled
+     * @statuscode 404 The requested push message does not exist
+     * @statuscode 409 The push message was collapsed into a newer push message
+     */
+    @PUT
+    @Path("/{id}/cancel")
+    @ReturnType("java.lang.Void")
+    public Response cancel(@PathParam("id") String id) {
+        return changeState(id, PushMessageState.CANCELLED);
+    }
+
+    /**
+     * Pause the delivery of a push message
+     *
+     * @param id    id of {@link PushMessageInformation}
+     *
+     * @statuscode 204 The delivery was paused
+     * @statuscode 404 The requested push message does not exist
+     * @statuscode 409 The delivery of the push message was already cancelled, or the push message was collapsed into a newer push message
+     */
+    @PUT
+    @Path("/{id}/pause")
+    @ReturnType("java.lang.Void")
+    public Response pause(@PathParam("id") String id) {
+        return changeState(id, PushMessageState.PAUSED);
+    }
+
+    /**
+     * Resume the delivery of a paused push message
+     *
+     * @param id    id of {@link PushMessageInformation}
+     *
+     * @statuscode 204 The delivery was resumed
+     * @statuscode 404 The requested push message does not exist
+     * @statuscode 409 The delivery of the push message was already cancelled, or the push message was collapsed into a newer push message
+     */
+    @PUT
+    @Path("/{id}/resume")
+    @ReturnType("java.lang.Void")
+    public Response resume(@PathParam("id") String id) {
+        return changeState(id, PushMessageState.ACTIVE);
+    }
+
+    private Response changeState(String id, PushMessageState state) {
+        final PushMessageInformation pushMessageInformation = metricsService.getPushMessageInformation(id);
+
+        // the push message has to belong to an application of the current developer
+        if (pushMessageInformation == null
+                || searchManager.getSearchService().findByPushApplicationIDForDeveloper(pushMessageInformation.getPushApplicationId()) == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Could not find requested push message").build();
+        }
+
+        if (pushMessageInformation.getState() == PushMessageState.CANCELLED && state != PushMessageState.CANCELLED) {
+            return Response.status(Response.Status.CONFLICT).entity("Delivery of the push message was cancelled").build();
+        }
+        if (pushMessageInformation.getState() == PushMessageState.COLLAPSED) {
+            return Response.status(Response.Status.CONFLICT).entity("Push message was collapsed into a newer push message").build();
+        }
+
+        metricsService.updateState(id, state);
+        return Response.noContent().build();
+    }
+
     private Integer parsePageSize(Integer pageSize) {
         if (pageSize != null) {
             pageSize = Math.min(MAX_PAGE_SIZE, pageSize);
@@ -229,9 +229,10 @@ public class PushApplicationEndpoint extends AbstractBaseEndpoint {
                 return builder.build();
             }
 
-            // update name/desc:
+            // update name/desc/collapse window:
             pushApp.setDescription(updatedPushApp.getDescription());
             pushApp.setName(updatedPushApp.getName());
+            pushApp.setCollapseWindow(updatedPushApp.getCollapseWindow());
             pushAppService.updatePushApplication(pushApp);
 
             return Response.noContent().build();
@@ -16,14 +16,28 @@
  */
 package org.jboss.aerogear.unifiedpush.rest.registry.installations;
 
+import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.rest.AbstractBaseEndpoint;
+import org.jboss.aerogear.unifiedpush.service.registration.InstallationExporter;
 import org.jboss.resteasy.annotations.GZIP;
 
 import com.qmino.miredot.annotations.ReturnType;
@@ -31,20 +45,82 @@ import com.qmino.miredot.annotations.ReturnType;
 @Path("/export")
 public class ExportEndpoint extends AbstractBaseEndpoint {
 
+    public static final String NDJSON = "ndjson";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    // a plain Jackson 1 mapper, honouring the same annotations of the model classes as the REST responses
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Inject
+    private InstallationExporter installationExporter;
+
     /**
      * Endpoint for exporting as JSON file device installations for a given variant.
      * Only Keycloak authenticated can access it
      *
+     * The installations are written while they are read from the database, either as JSON array (default),
+     * or as newline delimited JSON (<code>format=ndjson</code>), one installation per line.
+     *
      * @param variantId the variant ID
+     * @param format    <code>json</code> or <code>ndjson</code>
      * @return          list of {@link org.jboss.aerogear.unifiedpush.api.Installation}s
      */
     @GET
     @Path("/{variantId}/installations/")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
     @GZIP
     @ReturnType("java.util.List<org.jboss.aerogear.unifiedpush.api.Installation>")
-    public Response exportInstallations(@PathParam("variantId") String variantId) {
-        return Response.ok(getSearch().findAllInstallationsByVariantForDeveloper(variantId, 0, Integer.MAX_VALUE, null).getResultList()).build();
+    public Response exportInstallations(@PathParam("variantId") String variantId, @QueryParam("format") @DefaultValue("json") String format) {
+        final boolean ndjson = NDJSON.equalsIgnoreCase(format);
+        final ResultsStream.QueryBuilder<Installation> installations = getSearch().streamAllInstallationsByVariantForDeveloper(variantId);
+
+        final StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                final OutputStream out = new BufferedOutputStream(outputStream);
+                try {
+                    installationExporter.exportInstallations(installations, EXPORT_FETCH_SIZE, new InstallationsWriter(out, ndjson));
+                } catch (ResultStreamException e) {
+                    logger.severe("Error when exporting installations", e);
+                    throw new WebApplicationException(e);
+                }
+                if (!ndjson) {
+                    out.write(']');
+                }
+                out.flush();
+            }
+        };
+        return Response.ok(output, ndjson ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON).build();
     }
 
+    /**
+     * Writes the installations either as elements of a JSON array, or one per line
+     */
+    private static class InstallationsWriter implements InstallationExporter.InstallationWriter {
+        private final OutputStream out;
+        private final boolean ndjson;
+        private boolean first = true;
+
+        InstallationsWriter(OutputStream out, boolean ndjson) throws IOException {
+            this.out = out;
+            this.ndjson = ndjson;
+            if (!ndjson) {
+                out.write('[');
+            }
+        }
+
+        @Override
+        public void write(Installation installation) throws IOException {
+            if (!first && !ndjson) {
+                out.write(',');
+            }
+            out.write(mapper.writeValueAsBytes(installation));
+            if (ndjson) {
+                out.write('\n');
+            }
+            first = false;
+        }
+    }
 }
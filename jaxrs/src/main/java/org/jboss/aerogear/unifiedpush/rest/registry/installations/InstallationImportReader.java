@@ -0,0 +1,105 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.registry.installations;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jboss.aerogear.unifiedpush.api.Installation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the installations of an import file one by one, using the Jackson streaming parser,
+ * so that only the installations of the chunk being stored are held in memory.
+ *
+ * The file is deleted when the reader is closed.
+ */
+class InstallationImportReader implements Iterator<Installation>, Closeable {
+
+    private final ObjectMapper mapper;
+    private final File file;
+    private final JsonParser parser;
+
+    private Installation next;
+    private boolean endOfArray;
+
+    /**
+     * @throws IOException if the file can not be read or does not start with a JSON array
+     */
+    InstallationImportReader(ObjectMapper mapper, File file) throws IOException {
+        this.mapper = mapper;
+        this.file = file;
+        this.parser = mapper.getFactory().createParser(file);
+
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            final JsonParseException e = new JsonParseException("The devices to import must be a JSON array", parser.getCurrentLocation());
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !endOfArray) {
+            try {
+                final JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT) {
+                    next = mapper.readValue(parser, Installation.class);
+                } else if (token == JsonToken.END_ARRAY) {
+                    endOfArray = true;
+                } else {
+                    throw new JsonParseException("Expected a device object, but found " + token, parser.getCurrentLocation());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Error when parsing importer json file: " + e.getMessage(), e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Installation next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Installation installation = next;
+        next = null;
+        return installation;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            parser.close();
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
@@ -16,7 +16,6 @@
  */
 package org.jboss.aerogear.unifiedpush.rest.registry.installations;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.qmino.miredot.annotations.BodyType;
 import com.qmino.miredot.annotations.ReturnType;
@@ -25,17 +24,25 @@ import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.validation.DeviceTokenValidator;
 import org.jboss.aerogear.unifiedpush.rest.EmptyJSON;
 import org.jboss.aerogear.unifiedpush.rest.AbstractBaseEndpoint;
-import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedVariantCache;
+import org.jboss.aerogear.unifiedpush.service.metrics.AppOpenCounterBuffer;
+import org.jboss.aerogear.unifiedpush.service.registration.ImportJob;
+import org.jboss.aerogear.unifiedpush.service.registration.InstallationImporter;
+import org.jboss.aerogear.unifiedpush.service.registration.InstallationRegistrationBuffer;
+import org.jboss.aerogear.unifiedpush.service.registration.RegistrationAdmissionControl;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
 import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
 import org.jboss.aerogear.unifiedpush.rest.util.HttpBasicHelper;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
-import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
 import org.jboss.resteasy.annotations.providers.multipart.MultipartForm;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
 import javax.ws.rs.OPTIONS;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -48,12 +55,27 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 @Path("/registry/device")
 public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
 
+    // system property name used to configure the maximum number of installations of a batch registration
+    public static final String AEROGEAR_REGISTRATION_BATCH_SIZE = "aerogear.registration.batch.size";
+
+    private static final int DEFAULT_REGISTRATION_BATCH_SIZE = 1000;
+
+    // not part of the JAX-RS 1.1 status enum
+    private static final int REQUEST_ENTITY_TOO_LARGE = 413;
+    private static final int TOO_MANY_REQUESTS = 429;
+
     // at some point we should move the mapper to a util class.?
     public static final ObjectMapper mapper = new ObjectMapper();
 
@@ -61,10 +83,21 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
     @Inject
     private ClientInstallationService clientInstallationService;
     @Inject
-    private GenericVariantService genericVariantService;
+    private AuthenticatedVariantCache variantCache;
+
+    @Inject
+    private AppOpenCounterBuffer appOpenCounterBuffer;
+
+    @Inject
+    private InstallationRegistrationBuffer registrationBuffer;
 
     @Inject
-    private PushMessageMetricsService metricsService;
+    private InstallationImporter installationImporter;
+
+    @Inject
+    private RegistrationAdmissionControl admissionControl;
+
+    private final int maxBatchSize = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_REGISTRATION_BATCH_SIZE, DEFAULT_REGISTRATION_BATCH_SIZE);
 
     /**
      * Cross Origin for Installations
@@ -140,9 +173,12 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
      * @responseheader Access-Control-Allow-Credentials true
      * @responseheader WWW-Authenticate Basic realm="AeroGear UnifiedPush Server" (only for 401 response)
      *
+     * @responseheader Retry-After Seconds after which the registration should be retried (only for 429 response)
+     *
      * @statuscode 200 Successful storage of the device metadata
      * @statuscode 400 The format of the client request was incorrect (e.g. missing required values)
      * @statuscode 401 The request requires authentication
+     * @statuscode 429 The server is overloaded with registrations, the registration should be retried later
      */
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
@@ -165,17 +201,125 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
             return appendAllowOriginHeader(Response.status(Status.BAD_REQUEST), request);
         }
 
+        // shed the registration when the server is overloaded, the device will register again:
+        final int retryAfter = admissionControl.admit(variant.getVariantID(), 1);
+        if (retryAfter > 0) {
+            return createTooManyRequestsResponse(retryAfter, request);
+        }
+
         // The 'mobile application' on the device/client was launched.
         // If the installation is already in the DB, let's update the metadata,
         // otherwise we register a new installation:
         logger.finest("Mobile Application on device was launched");
 
-        // async:
-        clientInstallationService.addInstallation(variant, entity);
+        // coalesced and stored in batches, in the background:
+        registrationBuffer.enqueue(variant, entity);
 
         return appendAllowOriginHeader(Response.ok(entity), request);
     }
 
+    /**
+     * RESTful API for the registration of several devices at once, e.g. by a backend re-registering its devices.
+     * The Endpoint is protected using <code>HTTP Basic</code> (credentials <code>VariantID:secret</code>).
+     *
+     * <pre>
+     * curl -u "variantID:secret"
+     *   -v -H "Accept: application/json" -H "Content-type: application/json"
+     *   -X POST
+     *   -d '[
+     *     {
+     *       "deviceToken" : "someTokenString",
+     *       "alias" : "someUsername or email adress...",
+     *       "categories" : ["football", "sport"]
+     *     },
+     *     {
+     *       "deviceToken" : "someOtherTokenString",
+     *       ...
+     *     }
+     *   ]'
+     *   https://SERVER:PORT/context/rest/registry/device/batch
+     * </pre>
+     *
+     * The installations use the same JSON format as for the registration of a single device. All valid installations
+     * are stored (or updated) at once, before the response is sent. The response contains one result per submitted installation,
+     * in the same order, with the status code the installation would have gotten if it was registered on its own.
+     * The maximum number of installations per request can be configured by the {@link #AEROGEAR_REGISTRATION_BATCH_SIZE} system property.
+     *
+     * @param entities  {@link Installation}s for Device registration
+     * @return          list of {@link InstallationRegistrationResult}s
+     *
+     * @responseheader Access-Control-Allow-Origin      With host in your "Origin" header
+     * @responseheader Access-Control-Allow-Credentials true
+     * @responseheader WWW-Authenticate Basic realm="AeroGear UnifiedPush Server" (only for 401 response)
+     *
+     * @statuscode 200 The installations were processed, see the results for the status of each installation
+     * @statuscode 400 The format of the client request was incorrect
+     * @statuscode 401 The request requires authentication
+     * @statuscode 413 The request contains too many installations
+     * @statuscode 429 The server is overloaded with registrations, the request should be retried later (see <code>Retry-After</code> header)
+     */
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @ReturnType("java.util.List<org.jboss.aerogear.unifiedpush.rest.registry.installations.InstallationRegistrationResult>")
+    public Response registerInstallations(
+            List<Installation> entities,
+            @Context HttpServletRequest request) {
+
+        // find the matching variation:
+        final Variant variant = loadVariantWhenAuthorized(request);
+        if (variant == null) {
+            return create401Response(request);
+        }
+
+        if (entities == null) {
+            return appendAllowOriginHeader(Response.status(Status.BAD_REQUEST), request);
+        }
+        if (entities.size() > maxBatchSize) {
+            logger.finest(String.format("Batch registration of %d devices exceeds the limit of %d", entities.size(), maxBatchSize));
+            return appendAllowOriginHeader(Response.status(REQUEST_ENTITY_TOO_LARGE), request);
+        }
+
+        // validate all installations up-front, the valid ones are stored at once:
+        final List<Installation> validInstallations = new ArrayList<Installation>(entities.size());
+        final List<InstallationRegistrationResult> results = new ArrayList<InstallationRegistrationResult>(entities.size());
+        for (Installation entity : entities) {
+            final String reason = validate(entity, variant);
+            if (reason != null) {
+                results.add(new InstallationRegistrationResult(entity == null ? null : entity.getDeviceToken(), Status.BAD_REQUEST.getStatusCode(), reason));
+            } else {
+                validInstallations.add(entity);
+                results.add(null);
+            }
+        }
+
+        final int retryAfter = admissionControl.admit(variant.getVariantID(), validInstallations.size());
+        if (retryAfter > 0) {
+            return createTooManyRequestsResponse(retryAfter, request);
+        }
+
+        Status status = Status.OK;
+        String reason = null;
+        try {
+            clientInstallationService.addOrUpdateInstallations(variant, validInstallations);
+        } catch (RuntimeException e) {
+            logger.severe(String.format("Failed to store %d registrations for variant %s", validInstallations.size(), variant.getVariantID()), e);
+            status = Status.INTERNAL_SERVER_ERROR;
+            reason = "The installation could not be stored";
+        }
+
+        // the valid installations take the remaining places, in order:
+        final Iterator<Installation> stored = validInstallations.iterator();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, new InstallationRegistrationResult(stored.next().getDeviceToken(), status.getStatusCode(), reason));
+            }
+        }
+
+        return appendAllowOriginHeader(Response.ok(results), request);
+    }
+
     /**
      * RESTful API for Push Notification metrics registration.
      * The Endpoint is protected using <code>HTTP Basic</code> (credentials <code>VariantID:secret</code>).
@@ -187,6 +331,8 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
      *   https://SERVER:PORT/context/rest/registry/device/pushMessage/{pushMessageId}
      * </pre>
      *
+     * The app open is counted in memory and added to the analytics of the push message within a second.
+     *
      * @param pushMessageId push message identifier
      * @return              empty JSON body
      *
@@ -211,7 +357,7 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
 
         //let's do update the analytics
         if (pushMessageId != null) {
-            metricsService.updateAnalytics(pushMessageId, variant.getVariantID());
+            appOpenCounterBuffer.record(pushMessageId, variant.getVariantID());
         }
 
         return Response.ok(EmptyJSON.STRING).build();
@@ -251,11 +397,17 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
             return create401Response(request);
         }
 
+        // drop a registration that was not written yet:
+        final boolean pendingRegistrationRemoved = registrationBuffer.remove(variant, token);
+
         // look up all installations (with same token) for the given variant:
         Installation installation =
                 clientInstallationService.findInstallationForVariantByDeviceToken(variant.getVariantID(), token);
 
         if (installation == null) {
+            if (pendingRegistrationRemoved) {
+                return appendAllowOriginHeader(Response.noContent(), request);
+            }
             return appendAllowOriginHeader(Response.status(Status.NOT_FOUND), request);
         } else {
             logger.info("Deleting metadata Installation");
@@ -301,8 +453,13 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
      * ]
      * </pre>
      *
+     * The file is read as a stream and the devices are stored in chunks, in the background. The progress of the import
+     * can be polled from <code>/rest/registry/device/importer/{jobId}</code>.
+     * <p>
+     * Before 1.2.0 this endpoint returned an empty JSON object; it now returns the submitted import job.
+     *
      * @param form  JSON file to import
-     * @return      empty JSON body
+     * @return      the submitted {@link ImportJob}
      *
      * @responseheader WWW-Authenticate Basic realm="AeroGear UnifiedPush Server" (only for 401 response)
      *
@@ -315,7 +472,7 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces(MediaType.APPLICATION_JSON)
     @BodyType("org.jboss.aerogear.unifiedpush.rest.registry.installations.ImporterForm")
-    @ReturnType("org.jboss.aerogear.unifiedpush.rest.EmptyJSON")
+    @ReturnType("org.jboss.aerogear.unifiedpush.service.registration.ImportJob")
     public Response importDevice(
             @MultipartForm
             ImporterForm form,
@@ -327,21 +484,108 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
             return create401Response(request);
         }
 
-        List<Installation> devices;
+        if (form.getJsonFile() == null) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        final InstallationImportReader devices;
         try {
-            devices = mapper.readValue(form.getJsonFile(), new TypeReference<List<Installation>>() {});
+            devices = new InstallationImportReader(mapper, copyToTempFile(form.getJsonFile()));
         } catch (IOException e) {
             logger.severe("Error when parsing importer json file", e);
 
             return Response.status(Status.BAD_REQUEST).build();
         }
 
-        logger.info("Devices to import: " + devices.size());
+        final ImportJob job = installationImporter.createJob(variant);
+        logger.info("Starting device import " + job.getId());
 
-        clientInstallationService.addInstallations(variant, devices);
+        installationImporter.importInstallations(job, variant, devices);
 
         // return directly, the above is async and may take a bit :-)
-        return Response.ok(EmptyJSON.STRING).build();
+        return Response.ok(job).build();
+    }
+
+    /**
+     * API for polling the progress of a device import.
+     * The Endpoint is protected using <code>HTTP Basic</code> (credentials <code>VariantID:secret</code>).
+     * <p>
+     * The progress is only known to the node that received the import (see the <code>node</code> field of the job),
+     * in a cluster the request needs to reach that node, e.g. by sticky sessions.
+     *
+     * <pre>
+     * curl -u "variantID:secret"
+     *   -v -H "Accept: application/json"
+     *   https://SERVER:PORT/context/rest/registry/device/importer/{jobId}
+     * </pre>
+     *
+     * @param jobId id of the import job, as returned when submitting the import
+     * @return      the {@link ImportJob}, with the number of processed, imported, skipped and failed devices
+     *
+     * @responseheader WWW-Authenticate Basic realm="AeroGear UnifiedPush Server" (only for 401 response)
+     *
+     * @statuscode 200 The progress of the import job
+     * @statuscode 401 The request requires authentication
+     * @statuscode 404 The import job was not found (or finished more than an hour ago, or was submitted to another node)
+     */
+    @GET
+    @Path("/importer/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ReturnType("org.jboss.aerogear.unifiedpush.service.registration.ImportJob")
+    public Response importStatus(@PathParam("jobId") String jobId, @Context HttpServletRequest request) {
+
+        final Variant variant = loadVariantWhenAuthorized(request);
+        if (variant == null) {
+            return create401Response(request);
+        }
+
+        final ImportJob job = installationImporter.findJob(jobId);
+        if (job == null || !job.getVariantID().equals(variant.getVariantID())) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        return Response.ok(job).build();
+    }
+
+    /**
+     * The upload is buffered on disk, since the import runs after the request is completed
+     */
+    private File copyToTempFile(InputStream jsonFile) throws IOException {
+        final File file = File.createTempFile("ups-import-", ".json");
+        try {
+            Files.copy(jsonFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            jsonFile.close();
+        }
+        return file;
+    }
+
+    /**
+     * Applies the same checks as the registration of a single installation, plus the bean validation of the installation
+     *
+     * @return the reason why the installation is invalid, null if it is valid
+     */
+    private String validate(Installation entity, Variant variant) {
+        if (entity == null || entity.getDeviceToken() == null
+                || !DeviceTokenValidator.isValidDeviceTokenForVariant(entity.getDeviceToken(), variant.getType())) {
+            return "Invalid device token";
+        }
+        entity.setVariant(variant);
+        try {
+            validateModelClass(entity);
+        } catch (ConstraintViolationException cve) {
+            final StringBuilder reason = new StringBuilder();
+            for (ConstraintViolation<?> violation : cve.getConstraintViolations()) {
+                if (reason.length() > 0) {
+                    reason.append(", ");
+                }
+                reason.append(violation.getMessage());
+            }
+            return reason.toString();
+        }
+        return null;
     }
 
     private ResponseBuilder appendPreflightResponseHeaders(HttpHeaders headers, ResponseBuilder response) {
@@ -357,6 +601,10 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
         return response;
     }
 
+    private Response createTooManyRequestsResponse(int retryAfter, HttpServletRequest request) {
+        return appendAllowOriginHeader(Response.status(TOO_MANY_REQUESTS).header("Retry-After", retryAfter), request);
+    }
+
     private Response appendAllowOriginHeader(ResponseBuilder rb, HttpServletRequest request) {
 
         return rb.header("Access-Control-Allow-Origin", request.getHeader("Origin")) // return submitted origin
@@ -384,12 +632,7 @@ public class InstallationRegistrationEndpoint extends AbstractBaseEndpoint {
         String variantID = credentials[0];
         String secret = credentials[1];
 
-        final Variant variant = genericVariantService.findByVariantID(variantID);
-        if (variant != null && variant.getSecret().equals(secret)) {
-            return variant;
-        }
-
-        // unauthorized...
-        return null;
+        // null when unauthorized...
+        return variantCache.findAuthenticated(variantID, secret);
     }
 }
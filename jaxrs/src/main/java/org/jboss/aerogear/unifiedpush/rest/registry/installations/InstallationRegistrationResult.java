@@ -0,0 +1,54 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.registry.installations;
+
+/**
+ * Outcome of the registration of one installation of a batch registration request.
+ */
+public class InstallationRegistrationResult {
+
+    private final String deviceToken;
+    private final int status;
+    private final String reason;
+
+    public InstallationRegistrationResult(String deviceToken, int status, String reason) {
+        this.deviceToken = deviceToken;
+        this.status = status;
+        this.reason = reason;
+    }
+
+    /**
+     * @return the device token of the installation
+     */
+    public String getDeviceToken() {
+        return deviceToken;
+    }
+
+    /**
+     * @return HTTP status code, as if the installation was registered on its own
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return why the installation was not stored, if so
+     */
+    public String getReason() {
+        return reason;
+    }
+}
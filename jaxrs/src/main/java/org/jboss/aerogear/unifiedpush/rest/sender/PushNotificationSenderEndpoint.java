@@ -20,15 +20,21 @@ import com.qmino.miredot.annotations.BodyType;
 import com.qmino.miredot.annotations.ReturnType;
 import org.jboss.aerogear.unifiedpush.api.PushApplication;
 import org.jboss.aerogear.unifiedpush.message.InternalUnifiedPushMessage;
-import org.jboss.aerogear.unifiedpush.message.NotificationRouter;
+import org.jboss.aerogear.unifiedpush.message.NotificationSubmissionExecutor;
+import org.jboss.aerogear.unifiedpush.message.NotificationSubmissionExecutor.SubmissionCallback;
 import org.jboss.aerogear.unifiedpush.rest.EmptyJSON;
 import org.jboss.aerogear.unifiedpush.rest.util.HttpBasicHelper;
 import org.jboss.aerogear.unifiedpush.rest.util.HttpRequestUtil;
-import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedPushApplicationCache;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
 import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+import org.jboss.resteasy.annotations.Suspend;
+import org.jboss.resteasy.spi.AsynchronousResponse;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -38,14 +44,41 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Path("/sender")
 public class PushNotificationSenderEndpoint {
 
+    // system property name used to configure the maximum number of messages of a batch request
+    public static final String AEROGEAR_SENDER_BATCH_SIZE = "aerogear.sender.batch.size";
+
+    private static final int DEFAULT_SENDER_BATCH_SIZE = 100;
+
+    // JAX-RS 1.1 does not define all the status codes
+    private static final int REQUEST_ENTITY_TOO_LARGE = 413;
+
+    // the submission of a queued request is not awaited any longer (the request is answered with 503);
+    // queued submissions are dropped before (see NotificationSubmissionExecutor.MAX_QUEUE_TIME), so that only a submission
+    // that is still running after 10 seconds can be sent although its request timed out
+    private static final long SUBMIT_TIMEOUT = 30000;
+    private static final int SUBMIT_RETRY_AFTER_SECONDS = 1;
+
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    // the length of the database column
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final AeroGearLogger logger = AeroGearLogger.getInstance(PushNotificationSenderEndpoint.class);
     @Inject
-    private PushApplicationService pushApplicationService;
+    private AuthenticatedPushApplicationCache pushApplicationCache;
+    @Inject
+    private NotificationSubmissionExecutor submissionExecutor;
     @Inject
-    private NotificationRouter notificationRouter;
+    private Validator validator;
+
+    private final int maxBatchSize = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_SENDER_BATCH_SIZE, DEFAULT_SENDER_BATCH_SIZE);
 
     /**
      * RESTful API for sending Push Notifications.
@@ -72,28 +105,46 @@ public class PushNotificationSenderEndpoint {
      * <p>
      *
      * <b>Request Header</b> {@code aerogear-sender} uses to identify the used client. If the header is not present, the standard "user-agent" header is used.
+     * <p>
+     *
+     * The request is answered once the message is recorded, the submission does not block a HTTP worker thread though.
+     * When too many requests are waiting for being submitted, or the request waited too long, it is rejected and should be
+     * retried later; retries should carry an {@code Idempotency-Key}, in case the original request was still sent.
+     * <p>
+     *
+     * <b>Request Header</b> {@code Idempotency-Key} (optional) identifies retries of the same request: once a message was
+     * submitted with a key, further requests of the push application with that key are accepted without sending the message again.
      *
      * @param message   message to send
-     * @return          empty JSON body
+     * @param response  the suspended response, resumed with an empty JSON body
      *
      * @responseheader WWW-Authenticate Basic realm="AeroGear UnifiedPush Server" (only for 401 response)
+     * @responseheader Retry-After Seconds after which the request should be retried (only for 503 response)
+     * @responseheader aerogear-push-id The ID of the push message (of the original request, for a retried idempotency key) (only for 202 response)
      *
      * @statuscode 202 Indicates the Job has been accepted and is being process by the AeroGear UnifiedPush Server
+     * @statuscode 400 The idempotency key is too long, or the send time or spread window of the message is invalid
      * @statuscode 401 The request requires authentication
+     * @statuscode 503 The server is overloaded with push message requests, the request should be retried later
      */
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     @BodyType("org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage")
     @ReturnType("org.jboss.aerogear.unifiedpush.rest.EmptyJSON")
-    public Response send(final InternalUnifiedPushMessage message, @Context HttpServletRequest request) {
+    public void send(final InternalUnifiedPushMessage message, @Context HttpServletRequest request,
+                     @Suspend(SUBMIT_TIMEOUT) final AsynchronousResponse response) {
 
         final PushApplication pushApplication = loadPushApplicationWhenAuthorized(request);
         if (pushApplication == null) {
-            return Response.status(Status.UNAUTHORIZED)
-                    .header("WWW-Authenticate", "Basic realm=\"AeroGear UnifiedPush Server\"")
-                    .entity("Unauthorized Request")
-                    .build();
+            response.setResponse(create401Response());
+            return;
+        }
+
+        final Set<ConstraintViolation<InternalUnifiedPushMessage>> violations = validator.validate(message);
+        if (!violations.isEmpty()) {
+            response.setResponse(createBadRequestResponse(violations));
+            return;
         }
 
         // submit http request metadata:
@@ -102,11 +153,177 @@ public class PushNotificationSenderEndpoint {
         // add the client identifier
         message.setClientIdentifier(HttpRequestUtil.extractAeroGearSenderInformation(request));
 
-        // submitted to EJB:
-        notificationRouter.submit(pushApplication, message);
-        logger.fine(String.format("Push Message Request from [%s] API was internally submitted for further processing", message.getClientIdentifier()));
+        // retries of a request with the same key are not sent again
+        final String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey != null && idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            response.setResponse(Response.status(Status.BAD_REQUEST).entity("Idempotency key is too long").build());
+            return;
+        }
+        message.setIdempotencyKey(idempotencyKey);
+
+        // submitted to EJB, from the submission threads:
+        final boolean accepted = submissionExecutor.submit(pushApplication, message, new SubmissionCallback() {
+            @Override
+            public void onSubmitted(List<String> pushMessageInformationIDs) {
+                logger.fine(String.format("Push Message Request from [%s] API was internally submitted for further processing", message.getClientIdentifier()));
+                response.setResponse(Response.status(Status.ACCEPTED)
+                        .header(InternalUnifiedPushMessage.PUSH_MESSAGE_ID, pushMessageInformationIDs.get(0))
+                        .entity(EmptyJSON.STRING)
+                        .build());
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                response.setResponse(Response.status(Status.INTERNAL_SERVER_ERROR).build());
+            }
+
+            @Override
+            public void onExpired() {
+                response.setResponse(createServiceUnavailableResponse());
+            }
+        });
 
-        return Response.status(Status.ACCEPTED).entity(EmptyJSON.STRING).build();
+        if (!accepted) {
+            logger.warning(String.format("Push Message Request from [%s] API was rejected, too many requests are being submitted", message.getClientIdentifier()));
+            response.setResponse(createServiceUnavailableResponse());
+        }
+    }
+
+    /**
+     * RESTful API for sending several Push Notifications of one push application at once.
+     * The Endpoint is protected using <code>HTTP Basic</code> (credentials <code>PushApplicationID:masterSecret</code>).
+     * <p>
+     *
+     * The messages use the same JSON format as for sending a single message:
+     * <pre>
+     * curl -u "PushApplicationID:MasterSecret"
+     *   -v -H "Accept: application/json" -H "Content-type: application/json"
+     *   -X POST
+     *   -d '[
+     *     {
+     *       "criteria": {
+     *         "alias": ["someone@example.com"]
+     *       },
+     *       "message": {
+     *         "alert": "HELLO!"
+     *       }
+     *     },
+     *     {
+     *       "criteria": {
+     *         "alias": ["someone.else@example.com"]
+     *       },
+     *       "message": {
+     *         "alert": "HELLO AGAIN!"
+     *       }
+     *     }
+     *   ]'
+     *   https://SERVER:PORT/CONTEXT/rest/sender/batch
+     * </pre>
+     *
+     * All messages are recorded in one transaction and queued with one JMS send per variant type. The response contains
+     * the IDs of the recorded push message information (as shown in the metrics), in the order of the submitted messages.
+     * The maximum number of messages per request can be configured by the {@link #AEROGEAR_SENDER_BATCH_SIZE} system property.
+     *
+     * @param messages  messages to send
+     * @param response  the suspended response, resumed with the list of push message information IDs
+     *
+     * @responseheader WWW-Authenticate Basic realm="AeroGear UnifiedPush Server" (only for 401 response)
+     * @responseheader Retry-After Seconds after which the request should be retried (only for 503 response)
+     *
+     * @statuscode 202 Indicates the messages have been accepted and are being processed by the AeroGear UnifiedPush Server
+     * @statuscode 400 The format of the client request was incorrect, or the send time or spread window of a message is invalid
+     * @statuscode 401 The request requires authentication
+     * @statuscode 413 The request contains too many messages
+     * @statuscode 503 The server is overloaded with push message requests, the request should be retried later
+     */
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @BodyType("java.util.List<org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage>")
+    @ReturnType("java.util.List<java.lang.String>")
+    public void sendBatch(final List<InternalUnifiedPushMessage> messages, @Context HttpServletRequest request,
+                          @Suspend(SUBMIT_TIMEOUT) final AsynchronousResponse response) {
+
+        final PushApplication pushApplication = loadPushApplicationWhenAuthorized(request);
+        if (pushApplication == null) {
+            response.setResponse(create401Response());
+            return;
+        }
+
+        if (messages == null || messages.contains(null)) {
+            response.setResponse(Response.status(Status.BAD_REQUEST).build());
+            return;
+        }
+        if (messages.size() > maxBatchSize) {
+            logger.finest(String.format("Batch of %d push messages exceeds the limit of %d", messages.size(), maxBatchSize));
+            response.setResponse(Response.status(REQUEST_ENTITY_TOO_LARGE).build());
+            return;
+        }
+
+        for (InternalUnifiedPushMessage message : messages) {
+            final Set<ConstraintViolation<InternalUnifiedPushMessage>> violations = validator.validate(message);
+            if (!violations.isEmpty()) {
+                response.setResponse(createBadRequestResponse(violations));
+                return;
+            }
+        }
+
+        // submit http request metadata, shared by all the messages:
+        final String ipAddress = HttpRequestUtil.extractIPAddress(request);
+        final String clientIdentifier = HttpRequestUtil.extractAeroGearSenderInformation(request);
+        for (InternalUnifiedPushMessage message : messages) {
+            message.setIpAddress(ipAddress);
+            message.setClientIdentifier(clientIdentifier);
+        }
+
+        // submitted to EJB, from the submission threads:
+        final boolean accepted = submissionExecutor.submit(pushApplication, messages, new SubmissionCallback() {
+            @Override
+            public void onSubmitted(List<String> pushMessageInformationIDs) {
+                logger.fine(String.format("Batch of %d Push Message Requests from [%s] API was internally submitted for further processing", messages.size(), clientIdentifier));
+                response.setResponse(Response.status(Status.ACCEPTED).entity(pushMessageInformationIDs).build());
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                response.setResponse(Response.status(Status.INTERNAL_SERVER_ERROR).build());
+            }
+
+            @Override
+            public void onExpired() {
+                response.setResponse(createServiceUnavailableResponse());
+            }
+        });
+
+        if (!accepted) {
+            logger.warning(String.format("Batch of Push Message Requests from [%s] API was rejected, too many requests are being submitted", clientIdentifier));
+            response.setResponse(createServiceUnavailableResponse());
+        }
+    }
+
+    private Response create401Response() {
+        return Response.status(Status.UNAUTHORIZED)
+                .header("WWW-Authenticate", "Basic realm=\"AeroGear UnifiedPush Server\"")
+                .entity("Unauthorized Request")
+                .build();
+    }
+
+    /**
+     * 400 Bad Request response, containing a JSON map giving details about the violations
+     */
+    private Response createBadRequestResponse(Set<ConstraintViolation<InternalUnifiedPushMessage>> violations) {
+        final Map<String, String> responseObj = new HashMap<String, String>();
+
+        for (ConstraintViolation<InternalUnifiedPushMessage> violation : violations) {
+            responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+
+        return Response.status(Status.BAD_REQUEST).entity(responseObj).build();
+    }
+
+    private Response createServiceUnavailableResponse() {
+        return Response.status(Status.SERVICE_UNAVAILABLE).header("Retry-After", SUBMIT_RETRY_AFTER_SECONDS).build();
     }
 
     /**
@@ -118,12 +335,7 @@ public class PushNotificationSenderEndpoint {
         String pushApplicationID = credentials[0];
         String secret = credentials[1];
 
-        final PushApplication pushApplication = pushApplicationService.findByPushApplicationID(pushApplicationID);
-        if (pushApplication != null && pushApplication.getMasterSecret().equals(secret)) {
-            return pushApplication;
-        }
-
-        // unauthorized...
-        return null;
+        // null when unauthorized...
+        return pushApplicationCache.findAuthenticated(pushApplicationID, secret);
     }
 }
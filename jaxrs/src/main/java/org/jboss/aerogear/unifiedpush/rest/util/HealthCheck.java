@@ -17,9 +17,14 @@
 package org.jboss.aerogear.unifiedpush.rest.util;
 
 import org.jboss.aerogear.unifiedpush.message.HealthNetworkService;
+import org.jboss.aerogear.unifiedpush.message.NotificationSubmissionExecutor;
+import org.jboss.aerogear.unifiedpush.message.PipelineTimings;
 import org.jboss.aerogear.unifiedpush.service.HealthDBService;
 import org.jboss.aerogear.unifiedpush.service.impl.health.HealthDetails;
 import org.jboss.aerogear.unifiedpush.service.impl.health.HealthStatus;
+import org.jboss.aerogear.unifiedpush.service.metrics.AppOpenCounterBuffer;
+import org.jboss.aerogear.unifiedpush.service.registration.InstallationRegistrationBuffer;
+import org.jboss.aerogear.unifiedpush.service.registration.RegistrationAdmissionControl;
 
 import javax.inject.Inject;
 import javax.ws.rs.GET;
@@ -42,6 +47,21 @@ public class HealthCheck {
     @Inject
     private HealthNetworkService healthNetworkService;
 
+    @Inject
+    private InstallationRegistrationBuffer registrationBuffer;
+
+    @Inject
+    private RegistrationAdmissionControl admissionControl;
+
+    @Inject
+    private AppOpenCounterBuffer appOpenCounterBuffer;
+
+    @Inject
+    private NotificationSubmissionExecutor submissionExecutor;
+
+    @Inject
+    private PipelineTimings pipelineTimings;
+
     /**
      * Get health status
      *
@@ -63,6 +83,11 @@ public class HealthCheck {
         for (HealthDetails details : networkStatus.get()) {
             status.add(details);
         }
+        status.add(registrationBuffer.status());
+        status.add(admissionControl.status());
+        status.add(appOpenCounterBuffer.status());
+        status.add(submissionExecutor.status());
+        status.add(pipelineTimings.status());
 
         return status;
     }
@@ -16,15 +16,23 @@
  */
 package org.jboss.aerogear.unifiedpush.rest.util;
 
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+
 import javax.servlet.http.HttpServletRequest;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Helper for various tasks for working with {@link javax.servlet.http.HttpServletRequest} objects.
  */
 public final class HttpRequestUtil {
 
+    // system property name used to configure the (comma separated) IP addresses of trusted proxies
+    public static final String AEROGEAR_TRUSTED_PROXIES = "aerogear.trusted.proxies";
+
+    private static final Set<String> TRUSTED_PROXIES = parseTrustedProxies(ConfigurationUtils.tryGetProperty(AEROGEAR_TRUSTED_PROXIES));
+
     private HttpRequestUtil() {
         // no-op
     }
@@ -48,26 +56,79 @@ public final class HttpRequestUtil {
     /**
      * Extracts the IP address from the given {@link javax.servlet.http.HttpServletRequest}.
      *
+     * The <code>x-forwarded-for</code> header may contain a chain of addresses (<code>client, proxy1, proxy2</code>).
+     * When trusted proxies are configured (see {@link #AEROGEAR_TRUSTED_PROXIES}), the proxy headers are only honoured
+     * if the request was received from one of them, otherwise the remote address is returned; the chain is walked from
+     * the right and the first address that is not a trusted proxy is returned. Without trusted proxies, the left-most
+     * address is returned.
+     * Only IP address literals are accepted, the headers are never resolved via DNS.
+     *
      * @param request to inspect
      *
      * @return the IP address from the given request
      */
     public static String extractIPAddress(final HttpServletRequest request) {
-        String ip = request.getHeader("x-forwarded-for");
-        if (isIPAdressValid(ip)) {
+        return extractIPAddress(request, TRUSTED_PROXIES);
+    }
+
+    static String extractIPAddress(final HttpServletRequest request, final Set<String> trustedProxies) {
+        // headers of a request that did not pass a trusted proxy may be set by the client itself
+        if (!trustedProxies.isEmpty() && !trustedProxies.contains(request.getRemoteAddr())) {
+            return request.getRemoteAddr();
+        }
+
+        String ip = extractForwardedFor(request.getHeader("x-forwarded-for"), trustedProxies);
+        if (ip != null) {
             return ip;
         }
-        ip = request.getHeader("Proxy-Client-IP");
-        if (isIPAdressValid(ip)) {
+        ip = trim(request.getHeader("Proxy-Client-IP"));
+        if (isIPAddressLiteral(ip)) {
             return ip;
         }
-        ip = request.getHeader("WL-Proxy-Client-IP");
-        if (isIPAdressValid(ip)) {
+        ip = trim(request.getHeader("WL-Proxy-Client-IP"));
+        if (isIPAddressLiteral(ip)) {
             return ip;
         }
         return request.getRemoteAddr();
     }
 
+    /**
+     * @return the client address of the given <code>x-forwarded-for</code> chain, or null if it contains no valid address
+     */
+    private static String extractForwardedFor(final String forwardedFor, final Set<String> trustedProxies) {
+        if (!hasValue(forwardedFor)) {
+            return null;
+        }
+
+        String leftMost = null;
+        int end = forwardedFor.length();
+        while (end >= 0) {
+            final int separator = forwardedFor.lastIndexOf(',', end - 1);
+            final String ip = forwardedFor.substring(separator + 1, end).trim();
+            if (isIPAddressLiteral(ip)) {
+                if (!trustedProxies.isEmpty() && !trustedProxies.contains(ip)) {
+                    return ip;
+                }
+                leftMost = ip;
+            }
+            end = separator;
+        }
+        return leftMost;
+    }
+
+    private static Set<String> parseTrustedProxies(final String trustedProxies) {
+        if (!hasValue(trustedProxies)) {
+            return Collections.emptySet();
+        }
+        final Set<String> proxies = new HashSet<String>();
+        for (String proxy : trustedProxies.split(",")) {
+            if (hasValue(proxy.trim())) {
+                proxies.add(proxy.trim());
+            }
+        }
+        return Collections.unmodifiableSet(proxies);
+    }
+
     /**
      * Reads the "aerogear-sender" header to check if an AeroGear Sender client was used. If the header value is NULL
      * the value of the standard "user-agent" header is returned
@@ -86,24 +147,104 @@ public final class HttpRequestUtil {
     }
 
     /**
-     * Simple validation, using java.net.InetAddress.getByName().
+     * Checks whether the given value is an IPv4 (dotted quad) or IPv6 address literal, without resolving anything.
      *
      * @param ip the IP address string to check
      *
      * @return true for a valid IP address
      */
-    private static boolean isIPAdressValid(final String ip){
-
-        // InetAddress.getByName() validates 'null' as a valid IP (localhost).
-        // we do not want that
-        if (hasValue(ip)) {
-            try {
-                InetAddress.getByName(ip);
-                return true;
-            } catch (UnknownHostException uhe) {
+    static boolean isIPAddressLiteral(final String ip) {
+        if (!hasValue(ip)) {
+            return false;
+        }
+        return ip.indexOf(':') == -1 ? isIPv4Literal(ip, 0, ip.length()) : isIPv6Literal(ip);
+    }
+
+    /**
+     * Four decimal numbers between 0 and 255, separated by dots
+     */
+    private static boolean isIPv4Literal(final String ip, final int start, final int end) {
+        int parts = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            final char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return false;
+                }
+            } else if (c == '.' && digits > 0 && parts < 3) {
+                parts++;
+                value = 0;
+                digits = 0;
+            } else {
+                return false;
             }
         }
-        return false;
+        return parts == 3 && digits > 0;
+    }
+
+    /**
+     * Eight groups of up to four hex digits, separated by colons. One run of zero groups may be compressed to
+     * <code>::</code>, the last two groups may be written as IPv4 address and a zone ID may follow a <code>%</code>.
+     */
+    private static boolean isIPv6Literal(final String ip) {
+        int end = ip.indexOf('%');
+        if (end == -1) {
+            end = ip.length();
+        } else if (end == ip.length() - 1) {
+            return false;
+        }
+
+        int groups = 0;
+        int digits = 0;
+        boolean compressed = false;
+        int i = 0;
+        if (ip.startsWith("::")) {
+            compressed = true;
+            i = 2;
+        }
+        for (; i < end; i++) {
+            final char c = ip.charAt(i);
+            if (Character.digit(c, 16) != -1 && c < 128) {
+                if (++digits > 4) {
+                    return false;
+                }
+            } else if (c == ':' && digits > 0) {
+                groups++;
+                digits = 0;
+                if (i + 1 < end && ip.charAt(i + 1) == ':') {
+                    if (compressed) {
+                        return false;
+                    }
+                    compressed = true;
+                    i++;
+                } else if (i + 1 == end) {
+                    // trailing single colon
+                    return false;
+                }
+            } else if (c == '.' && digits > 0) {
+                // embedded IPv4 address, taking the place of the last two groups
+                final int ipv4Start = i - digits;
+                if (!isIPv4Literal(ip, ipv4Start, end)) {
+                    return false;
+                }
+                groups += 2;
+                digits = 0;
+                break;
+            } else {
+                return false;
+            }
+        }
+        if (digits > 0) {
+            groups++;
+        }
+        return compressed ? groups < 8 : groups == 8;
+    }
+
+    private static String trim(final String value) {
+        return value == null ? null : value.trim();
     }
 
     private static boolean hasValue(final String value) {
@@ -17,6 +17,7 @@
 package org.jboss.aerogear.unifiedpush.rest.util;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.github.fge.jackson.JacksonUtils;
@@ -24,32 +25,42 @@ import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import org.jboss.aerogear.unifiedpush.rest.util.transform.DynamicTransformer;
 
+import javax.enterprise.context.ApplicationScoped;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Basic request transformer
+ *
+ * The patch files are compiled once per path and version: the JSON patch operations are parsed and the
+ * dynamic transformer is instantiated when a version of a path is requested for the first time.
  */
+@ApplicationScoped
 public class RequestTransformer {
     private final Logger logger = Logger.getLogger(RequestTransformer.class.getName());
 
     private static final String OPERATIONS = "operations";
     private static final String TRANSFORMER = "dynamicTransformer";
 
-    public StringBuilder transform(String path, String version, StringBuilder json) {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final ConcurrentMap<String, Transformation> transformations = new ConcurrentHashMap<String, Transformation>();
+
+    public byte[] transform(String path, String version, byte[] json) {
         try {
-            final JsonNode node = locateJsonPatch(path, version);
-            final JsonNode operations = node.findPath(OPERATIONS);
-            final JsonNode patch;
-            if (patchHasDynamicTransformer(operations)) {
-                patch = operations;
-            } else {
-                patch = node;
+            final Transformation transformation = findTransformation(path, version);
+            if (transformation == null) {
+                return json;
             }
-
-            final JsonNode patched = transformJson(patch, json);
-            return convertToStringBuilder(applyDynamicTransformer(patched, node));
+            return mapper.writeValueAsBytes(transformation.apply(convertToJsonNode(json)));
         } catch (IOException e) {
             logger.log(Level.SEVERE, String.format("could not find/load path file for version '%s' and path '%s'", version, path), e);
             return json;
@@ -58,47 +69,99 @@ public class RequestTransformer {
         }
     }
 
-    private boolean patchHasDynamicTransformer(JsonNode operations) {
-        return !operations.isMissingNode();
+    /**
+     * Only the patch files that exist are cached, so that arbitrary request paths do not fill the cache
+     */
+    private Transformation findTransformation(String path, String version) throws IOException, JsonPatchException {
+        final String key = path + "/" + version;
+        Transformation transformation = transformations.get(key);
+        if (transformation == null) {
+            final JsonNode node = locateJsonPatch(key);
+            if (node == null) {
+                logger.log(Level.FINE, String.format("no patch file for version '%s' and path '%s'", version, path));
+                return null;
+            }
+            transformation = compile(node);
+            transformations.putIfAbsent(key, transformation);
+        }
+        return transformation;
     }
 
-    private JsonNode locateJsonPatch(String path, String version) throws IOException {
-        return JacksonUtils.getReader().readTree(getClass().getResourceAsStream(path + "/" + version + ".json"));
-    }
+    private Transformation compile(JsonNode node) throws IOException, JsonPatchException {
+        final JsonNode operations = node.findPath(OPERATIONS);
+        final JsonNode patch;
+        if (patchHasDynamicTransformer(operations)) {
+            patch = operations;
+        } else {
+            patch = node;
+        }
 
-    private JsonNode transformJson(JsonNode patch, StringBuilder json) throws IOException, JsonPatchException {
-        JsonNode jsonNode = convertToJsonNode(json);
+        // one patch per operation, so that an operation on a missing field does not stop the others
+        final List<JsonPatch> patches = new ArrayList<JsonPatch>();
         for (JsonNode operation : patch) {
-            try {
-                final ArrayNode nodes = JsonNodeFactory.instance.arrayNode();
-                nodes.add(operation);
-                JsonPatch patchOperation = JsonPatch.fromJson(nodes);
-                jsonNode = patchOperation.apply(jsonNode);
-            } catch (JsonPatchException e) {
-                logger.log(Level.FINEST, "ignore field not found");
-            }
+            final ArrayNode nodes = JsonNodeFactory.instance.arrayNode();
+            nodes.add(operation);
+            patches.add(JsonPatch.fromJson(nodes));
         }
-        return jsonNode;
+        return new Transformation(patches, createDynamicTransformer(node));
     }
 
-    private JsonNode convertToJsonNode(StringBuilder json) throws IOException {
-        return JacksonUtils.getReader().readTree(json.toString());
+    private boolean patchHasDynamicTransformer(JsonNode operations) {
+        return !operations.isMissingNode();
     }
 
-    private StringBuilder convertToStringBuilder(JsonNode dynamicTransformedNode) {
-        return new StringBuilder(dynamicTransformedNode.toString());
+    JsonNode locateJsonPatch(String key) throws IOException {
+        final InputStream patch = getClass().getResourceAsStream(key + ".json");
+        if (patch == null) {
+            return null;
+        }
+        try {
+            return JacksonUtils.getReader().readTree(patch);
+        } finally {
+            patch.close();
+        }
     }
 
-    JsonNode applyDynamicTransformer(JsonNode json, JsonNode patch) throws IOException {
+    private JsonNode convertToJsonNode(byte[] json) throws IOException {
+        return JacksonUtils.getReader().readTree(new ByteArrayInputStream(json));
+    }
+
+    DynamicTransformer createDynamicTransformer(JsonNode patch) {
         String clazz = patch.findPath(TRANSFORMER).textValue();
         if (clazz != null) {
             try {
-                final DynamicTransformer dynamicTransformer = (DynamicTransformer) Class.forName(getClass().getPackage().getName() + ".transform." + clazz).newInstance();
-                return dynamicTransformer.transform(json);
+                return (DynamicTransformer) Class.forName(getClass().getPackage().getName() + ".transform." + clazz).newInstance();
             } catch (Exception e) {
                 throw new RuntimeException("error in json patch could not instantiate / find dynamic transformer", e);
             }
         }
-        return json;
+        return null;
+    }
+
+    /**
+     * Compiled patch file: the JSON patch operations, followed by the (optional) dynamic transformer
+     */
+    private final class Transformation {
+        private final List<JsonPatch> patches;
+        private final DynamicTransformer dynamicTransformer;
+
+        Transformation(List<JsonPatch> patches, DynamicTransformer dynamicTransformer) {
+            this.patches = Collections.unmodifiableList(patches);
+            this.dynamicTransformer = dynamicTransformer;
+        }
+
+        JsonNode apply(JsonNode jsonNode) throws IOException {
+            for (JsonPatch patch : patches) {
+                try {
+                    jsonNode = patch.apply(jsonNode);
+                } catch (JsonPatchException e) {
+                    logger.log(Level.FINEST, "ignore field not found");
+                }
+            }
+            if (dynamicTransformer != null) {
+                return dynamicTransformer.transform(jsonNode);
+            }
+            return jsonNode;
+        }
     }
 }
@@ -27,21 +27,22 @@ import javax.servlet.ServletResponse;
 import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 /**
  * This filter will change the older api versions to the current one using json diff transform.
  */
-@WebFilter(urlPatterns = "*")
+@WebFilter(urlPatterns = "*", asyncSupported = true)
 public class VersionFilter implements Filter {
 
     private static final String AEROGEAR_VERSION_PREFIX = "aerogear.v";
     public static final int VERSION_LENGTH = 3;
 
+    private static final int BUFFER_SIZE = 4096;
+
     @Inject
     private RequestTransformer requestTransformer;
 
@@ -70,18 +71,25 @@ public class VersionFilter implements Filter {
    }
 
     private class TransformHttpServletRequestWrapper extends HttpServletRequestWrapper {
-        private final StringBuilder jsonRequest = new StringBuilder();
+        private final byte[] jsonRequest;
         private final String path;
         private final String version;
+        private byte[] transformedRequest;
 
         public TransformHttpServletRequestWrapper(String version, HttpServletRequest httpRequest) throws IOException {
             super(httpRequest);
 
-            final BufferedReader reader = httpRequest.getReader();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonRequest.append(line);
+            // the body is kept as bytes, the JSON parser detects the encoding;
+            // the declared length only sizes small bodies, the buffer grows with what is actually read
+            final InputStream inputStream = httpRequest.getInputStream();
+            final int contentLength = httpRequest.getContentLength();
+            final ByteArrayOutputStream body = new ByteArrayOutputStream(contentLength > 0 ? Math.min(contentLength, BUFFER_SIZE) : BUFFER_SIZE);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
             }
+            jsonRequest = body.toByteArray();
 
             final String contextPath = httpRequest.getContextPath();
             this.path = httpRequest.getRequestURI().substring(contextPath.length());
@@ -90,15 +98,21 @@ public class VersionFilter implements Filter {
 
         @Override
         public ServletInputStream getInputStream() throws IOException {
-            StringBuilder data = requestTransformer.transform(path, version, jsonRequest);
-            final byte[] bytes = data.toString().getBytes();
+            if (transformedRequest == null) {
+                transformedRequest = requestTransformer.transform(path, version, jsonRequest);
+            }
             return new ServletInputStream() {
-                private InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(bytes));
+                private final InputStream inputStream = new ByteArrayInputStream(transformedRequest);
 
                 @Override
                 public int read() throws IOException {
                     return inputStream.read();
                 }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return inputStream.read(b, off, len);
+                }
             };
         }
 
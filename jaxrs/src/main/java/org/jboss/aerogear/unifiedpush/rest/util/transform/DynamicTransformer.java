@@ -23,6 +23,7 @@ import java.io.IOException;
 /**
  * DynamicTransformer can be declared in a api version json patch file and is invoked after the initial patch is executed.
  * To change keys and values that are not known ahead of time, but dynamically based on the content.
+ * One instance is shared by all requests of the api version, so implementations must be stateless.
  *
  * @see org.jboss.aerogear.unifiedpush.rest.util.transform.UserParams
  */
@@ -0,0 +1,194 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.registry.installations;
+
+import net.iharder.Base64;
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedVariantCache;
+import org.jboss.aerogear.unifiedpush.service.registration.InstallationRegistrationBuffer;
+import org.jboss.aerogear.unifiedpush.service.registration.RegistrationAdmissionControl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InstallationRegistrationEndpointTest {
+
+    private static final String ANDROID_TOKEN = "APA91bHpbMXepp4odlb20vYOv0gQyNIyFu2X3OXR3TjqR8qecgWivima_UiLPFgUBs_10Nys2TUwUyWlixrIta35NXW-5Z85OdXcbb_3s3p0qaa_a7NpFlaX9GpidK";
+
+    @Mock
+    private ClientInstallationService clientInstallationService;
+
+    @Mock
+    private AuthenticatedVariantCache variantCache;
+
+    @Mock
+    private RegistrationAdmissionControl admissionControl;
+
+    @Mock
+    private InstallationRegistrationBuffer registrationBuffer;
+
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private HttpServletRequest request;
+
+    @InjectMocks
+    private InstallationRegistrationEndpoint endpoint;
+
+    private Variant variant;
+
+    @Before
+    public void setUp() {
+        // read when the endpoint is created
+        System.setProperty(InstallationRegistrationEndpoint.AEROGEAR_REGISTRATION_BATCH_SIZE, "3");
+        MockitoAnnotations.initMocks(this);
+
+        variant = new AndroidVariant();
+        when(request.getHeader("Authorization")).thenReturn("Basic " + Base64.encodeBytes("variant:secret".getBytes()));
+        when(variantCache.findAuthenticated("variant", "secret")).thenReturn(variant);
+        when(validator.validate(any())).thenReturn(Collections.<ConstraintViolation<Object>>emptySet());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(InstallationRegistrationEndpoint.AEROGEAR_REGISTRATION_BATCH_SIZE);
+    }
+
+    @Test
+    public void shouldRejectBatchOverTheLimit() {
+        final List<Installation> installations = Arrays.asList(installation(ANDROID_TOKEN + "1"), installation(ANDROID_TOKEN + "2"),
+                installation(ANDROID_TOKEN + "3"), installation(ANDROID_TOKEN + "4"));
+
+        final Response response = endpoint.registerInstallations(installations, request);
+
+        assertThat(response.getStatus()).isEqualTo(413);
+        verify(clientInstallationService, never()).addOrUpdateInstallations(any(Variant.class), anyListOf(Installation.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldReportValidationResultPerInstallation() {
+        final Installation valid = installation(ANDROID_TOKEN);
+        final Installation invalidToken = installation("not a token");
+        final Installation violatingConstraints = installation(ANDROID_TOKEN + "2");
+
+        final ConstraintViolation<Installation> violation = mock(ConstraintViolation.class);
+        when(violation.getMessage()).thenReturn("some constraint violated");
+        when(validator.validate(violatingConstraints)).thenReturn(Collections.singleton(violation));
+
+        final Response response = endpoint.registerInstallations(Arrays.asList(valid, invalidToken, violatingConstraints), request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        final List<InstallationRegistrationResult> results = results(response);
+        assertThat(results).hasSize(3);
+        assertResult(results.get(0), ANDROID_TOKEN, 200, null);
+        assertResult(results.get(1), "not a token", 400, "Invalid device token");
+        assertResult(results.get(2), ANDROID_TOKEN + "2", 400, "some constraint violated");
+
+        // only the valid installation is stored
+        verify(clientInstallationService).addOrUpdateInstallations(eq(variant), argThat(new ContainsOnly(valid)));
+    }
+
+    @Test
+    public void shouldReportFailureForAllStoredInstallations() {
+        final List<Installation> installations = Arrays.asList(installation(ANDROID_TOKEN + "1"), installation(ANDROID_TOKEN + "2"));
+        doThrow(new RuntimeException("database down")).when(clientInstallationService).addOrUpdateInstallations(eq(variant), anyListOf(Installation.class));
+
+        final Response response = endpoint.registerInstallations(installations, request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        final List<InstallationRegistrationResult> results = results(response);
+        assertThat(results).hasSize(2);
+        assertResult(results.get(0), ANDROID_TOKEN + "1", 500, "The installation could not be stored");
+        assertResult(results.get(1), ANDROID_TOKEN + "2", 500, "The installation could not be stored");
+    }
+
+    @Test
+    public void shouldUnregisterDeviceThatIsNotStoredYet() {
+        when(registrationBuffer.remove(variant, ANDROID_TOKEN)).thenReturn(true);
+
+        final Response response = endpoint.unregisterInstallations(ANDROID_TOKEN, request);
+
+        assertThat(response.getStatus()).isEqualTo(204);
+        verify(clientInstallationService, never()).removeInstallation(any(Installation.class));
+    }
+
+    @Test
+    public void shouldReportUnknownDevice() {
+        final Response response = endpoint.unregisterInstallations(ANDROID_TOKEN, request);
+
+        assertThat(response.getStatus()).isEqualTo(404);
+    }
+
+    private static Installation installation(String deviceToken) {
+        final Installation installation = new Installation();
+        installation.setDeviceToken(deviceToken);
+        return installation;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<InstallationRegistrationResult> results(Response response) {
+        return (List<InstallationRegistrationResult>) response.getEntity();
+    }
+
+    private static void assertResult(InstallationRegistrationResult result, String deviceToken, int status, String reason) {
+        assertThat(result.getDeviceToken()).isEqualTo(deviceToken);
+        assertThat(result.getStatus()).isEqualTo(status);
+        assertThat(result.getReason()).isEqualTo(reason);
+    }
+
+    private static class ContainsOnly extends ArgumentMatcher<List<Installation>> {
+        private final Installation installation;
+
+        ContainsOnly(Installation installation) {
+            this.installation = installation;
+        }
+
+        @Override
+        public boolean matches(Object argument) {
+            final List<?> installations = (List<?>) argument;
+            return installations.size() == 1 && installations.get(0) == installation;
+        }
+    }
+}
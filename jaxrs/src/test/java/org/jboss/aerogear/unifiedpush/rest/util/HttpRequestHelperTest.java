@@ -21,6 +21,10 @@ import org.mockito.Mockito;
 
 import javax.servlet.http.HttpServletRequest;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class HttpRequestHelperTest {
@@ -141,6 +145,71 @@ public class HttpRequestHelperTest {
         assertThat(remoteAddress).isNull();
     }
 
+    @Test
+    public void extractXForwardForHeaderChain() {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader("x-forwarded-for")).thenReturn("203.0.113.7, 10.0.0.2,10.0.0.1");
+
+        assertThat(HttpRequestUtil.extractIPAddress(request)).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    public void extractXForwardForHeaderChainWithTrustedProxies() {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader("x-forwarded-for")).thenReturn("198.51.100.1, 203.0.113.7, 10.0.0.2");
+        Mockito.when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+        final Set<String> trustedProxies = new HashSet<String>(Arrays.asList("10.0.0.1", "10.0.0.2"));
+
+        // the first address not added by a trusted proxy, the left-most one can be spoofed by the client
+        assertThat(HttpRequestUtil.extractIPAddress(request, trustedProxies)).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    public void ignoreXForwardForHeaderOfUntrustedRemoteAddress() {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader("x-forwarded-for")).thenReturn("198.51.100.1");
+        Mockito.when(request.getHeader("Proxy-Client-IP")).thenReturn("198.51.100.2");
+        Mockito.when(request.getRemoteAddr()).thenReturn("203.0.113.7");
+        final Set<String> trustedProxies = new HashSet<String>(Arrays.asList("10.0.0.1", "10.0.0.2"));
+
+        // the request did not pass a trusted proxy, the headers are set by the client itself
+        assertThat(HttpRequestUtil.extractIPAddress(request, trustedProxies)).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    public void extractXForwardForHeaderWithHostName() {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader("x-forwarded-for")).thenReturn("unknown, proxy.example.com");
+        Mockito.when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+
+        assertThat(HttpRequestUtil.extractIPAddress(request)).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    public void extractIPv6XForwardForHeader() {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader("x-forwarded-for")).thenReturn("2001:db8::8a2e:370:7334");
+
+        assertThat(HttpRequestUtil.extractIPAddress(request)).isEqualTo("2001:db8::8a2e:370:7334");
+    }
+
+    @Test
+    public void validateIPAddressLiterals() {
+        assertThat(HttpRequestUtil.isIPAddressLiteral("255.255.255.255")).isTrue();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("::")).isTrue();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("fe80::1%eth0")).isTrue();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("::ffff:192.0.2.1")).isTrue();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("1:2:3:4:5:6:7:8")).isTrue();
+
+        assertThat(HttpRequestUtil.isIPAddressLiteral("1.2.3")).isFalse();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("1.2.3.4.")).isFalse();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("localhost")).isFalse();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("1:2:3:4:5:6:7:8:9")).isFalse();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("1::2::3")).isFalse();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("12345::1")).isFalse();
+        assertThat(HttpRequestUtil.isIPAddressLiteral("1:2:")).isFalse();
+    }
+
     @Test
     public void  extractAeroGearSenderHeader() {
         final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
@@ -21,10 +21,15 @@ import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.fge.jackson.JacksonUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
+import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  */
@@ -35,16 +40,45 @@ public class RequestTransformerTest {
     public void shouldTransformSenderRequest() throws IOException {
         //given
         ObjectReader reader = JacksonUtils.getReader();
-        final String json = IOUtils.toString(getClass().getResourceAsStream("/message-format-100.json"));
-        StringBuilder current = new StringBuilder(json);
+        final byte[] json = IOUtils.toByteArray(getClass().getResourceAsStream("/message-format-100.json"));
 
         //when
-        final StringBuilder patched = requestTransformer.transform("/rest/sender", "100", current);
+        final byte[] patched = requestTransformer.transform("/rest/sender", "100", json);
 
         //then
-        final JsonNode patchedNode = reader.readTree(patched.toString());
+        final JsonNode patchedNode = reader.readTree(new ByteArrayInputStream(patched));
         JsonNode newNode = reader.readTree(getClass().getResourceAsStream("/new-message-format.json"));
 
         assertEquals(newNode, patchedNode);
     }
+
+    @Test
+    public void shouldTransformRepeatedlyWithCachedPatch() throws IOException {
+        //given
+        ObjectReader reader = JacksonUtils.getReader();
+        final byte[] json = IOUtils.toByteArray(getClass().getResourceAsStream("/message-format-100.json"));
+        JsonNode newNode = reader.readTree(getClass().getResourceAsStream("/new-message-format.json"));
+        final RequestTransformer transformer = Mockito.spy(new RequestTransformer());
+
+        //when
+        transformer.transform("/rest/sender", "100", json);
+        final byte[] patched = transformer.transform("/rest/sender", "100", json);
+
+        //then
+        assertEquals(newNode, reader.readTree(new ByteArrayInputStream(patched)));
+        // the patch file is only read for the first request
+        verify(transformer, times(1)).locateJsonPatch("/rest/sender/100");
+    }
+
+    @Test
+    public void shouldKeepRequestWithoutPatchFile() {
+        //given
+        final byte[] json = "{\"alert\":\"HELLO!\"}".getBytes();
+
+        //when
+        final byte[] patched = requestTransformer.transform("/rest/registry/device", "100", json);
+
+        //then
+        assertSame(json, patched);
+    }
 }
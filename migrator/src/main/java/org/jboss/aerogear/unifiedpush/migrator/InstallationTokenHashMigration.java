@@ -0,0 +1,183 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.migrator;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import org.jboss.aerogear.unifiedpush.utils.HashUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills the <code>token_hash</code> column (SHA-256, hex encoded) of all installations
+ * and removes duplicated device tokens within a variant, so that the unique (variant_id, token_hash) key can be added.
+ *
+ * The installations are read in pages of {@link #BATCH_SIZE}, keyed by id, instead of a single query over the whole table:
+ * MySQL Connector/J buffers the complete result unless it streams (<code>setFetchSize(Integer.MIN_VALUE)</code>),
+ * and a streaming result blocks any other statement on the same connection, which the updates need.
+ *
+ * Of several installations sharing a device token within a variant, the enabled one is kept. The installation table
+ * has no modification timestamp, so ties are broken by the lowest id, which keeps the cleanup deterministic
+ * across runs and nodes.
+ */
+public class InstallationTokenHashMigration implements CustomTaskChange {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private String confirmationMessage = "";
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection conn = ((JdbcConnection) (database.getConnection())).getWrappedConnection();
+
+        try {
+            conn.setAutoCommit(false);
+            final int hashed = hashDeviceTokens(conn);
+            final int removed = removeDuplicates(conn);
+            conn.commit();
+
+            confirmationMessage = String.format("hashed %d device tokens, removed %d duplicated installations", hashed, removed);
+        } catch (Exception e) {
+            throw new CustomChangeException("Failed to migrate installation token hashes", e);
+        }
+    }
+
+    private int hashDeviceTokens(Connection conn) throws Exception {
+        PreparedStatement query = conn.prepareStatement("SELECT id, device_token FROM installation WHERE id > ? ORDER BY id LIMIT " + BATCH_SIZE);
+        PreparedStatement update = conn.prepareStatement("UPDATE installation SET token_hash = ? WHERE id = ?");
+        query.setFetchSize(BATCH_SIZE);
+
+        int hashed = 0;
+        String lastId = "";
+        int page;
+        try {
+            do {
+                page = 0;
+                query.setString(1, lastId);
+                ResultSet resultSet = query.executeQuery();
+                try {
+                    while (resultSet.next()) {
+                        lastId = resultSet.getString("id");
+                        update.setString(1, HashUtils.sha256Hex(resultSet.getString("device_token")));
+                        update.setString(2, lastId);
+                        update.addBatch();
+                        page++;
+                    }
+                } finally {
+                    resultSet.close();
+                }
+                update.executeBatch();
+                hashed += page;
+            } while (page == BATCH_SIZE);
+        } finally {
+            query.close();
+            update.close();
+        }
+        return hashed;
+    }
+
+    private int removeDuplicates(Connection conn) throws Exception {
+        // duplicates are expected to be rare, only their keys are loaded
+        PreparedStatement groups = conn.prepareStatement("SELECT variant_id, token_hash FROM installation WHERE token_hash IS NOT NULL GROUP BY variant_id, token_hash HAVING COUNT(*) > 1");
+        PreparedStatement members = conn.prepareStatement("SELECT id FROM installation WHERE variant_id = ? AND token_hash = ? ORDER BY enabled DESC, id");
+        PreparedStatement deleteCategories = conn.prepareStatement("DELETE FROM installation_category WHERE installation_id = ?");
+        PreparedStatement delete = conn.prepareStatement("DELETE FROM installation WHERE id = ?");
+        groups.setFetchSize(BATCH_SIZE);
+
+        int removed = 0;
+        int pending = 0;
+        try {
+            final List<String[]> duplicates = new ArrayList<String[]>();
+            ResultSet resultSet = groups.executeQuery();
+            try {
+                while (resultSet.next()) {
+                    duplicates.add(new String[] {resultSet.getString("variant_id"), resultSet.getString("token_hash")});
+                }
+            } finally {
+                resultSet.close();
+            }
+
+            for (String[] duplicate : duplicates) {
+                members.setString(1, duplicate[0]);
+                members.setString(2, duplicate[1]);
+                resultSet = members.executeQuery();
+                try {
+                    // the first one is kept
+                    resultSet.next();
+                    while (resultSet.next()) {
+                        final String id = resultSet.getString("id");
+                        deleteCategories.setString(1, id);
+                        deleteCategories.addBatch();
+                        delete.setString(1, id);
+                        delete.addBatch();
+                        removed++;
+                        pending++;
+                    }
+                } finally {
+                    resultSet.close();
+                }
+
+                if (pending >= BATCH_SIZE) {
+                    executeBatches(deleteCategories, delete);
+                    pending = 0;
+                }
+            }
+            executeBatches(deleteCategories, delete);
+        } finally {
+            groups.close();
+            members.close();
+            deleteCategories.close();
+            delete.close();
+        }
+        return removed;
+    }
+
+    private void executeBatches(PreparedStatement deleteCategories, PreparedStatement delete) throws Exception {
+        deleteCategories.executeBatch();
+        delete.executeBatch();
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return confirmationMessage;
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return null;
+    }
+}
@@ -57,12 +57,13 @@ public class Category {
 
         Category category = (Category) o;
 
-        return name.equals(category.name);
+        // getter, since the other category may be a proxy
+        return getName().equals(category.getName());
     }
 
     @Override
     public int hashCode() {
-        return name.hashCode();
+        return getName().hashCode();
     }
 
     @Override
@@ -18,6 +18,7 @@ package org.jboss.aerogear.unifiedpush.api;
 
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.jboss.aerogear.unifiedpush.api.validation.DeviceTokenCheck;
+import org.jboss.aerogear.unifiedpush.utils.HashUtils;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -171,4 +172,18 @@ public class Installation extends BaseModel {
     public void setVariant(Variant variant) {
         this.variant = variant;
     }
+
+    /**
+     * SHA-256 hash (hex encoded) of the device token. Device tokens are too long to be indexed,
+     * the hash backs the unique key of the device tokens within a variant.
+     *
+     * @return the hash of the device token, or <code>null</code> if no device token is present
+     */
+    @JsonIgnore
+    public String getTokenHash() {
+        return HashUtils.sha256Hex(deviceToken);
+    }
+
+    // ugly way to make it a derived, read-only property
+    public void setTokenHash(String tokenHash) {}
 }
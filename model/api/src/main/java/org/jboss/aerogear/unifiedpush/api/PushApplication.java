@@ -16,6 +16,7 @@
  */
 package org.jboss.aerogear.unifiedpush.api;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.util.ArrayList;
@@ -49,6 +50,9 @@ public class PushApplication extends BaseModel {
 
     private List<Variant> variants = new ArrayList<Variant>();
 
+    @Min(0)
+    private Integer collapseWindow;
+
     /**
      * The name of the application.
      *
@@ -123,4 +127,18 @@ public class PushApplication extends BaseModel {
         this.developer = developer;
     }
 
+    /**
+     * The number of seconds that push messages to a single alias are held back, so that messages with the same
+     * consolidation key submitted within this window are collapsed into the latest one.
+     *
+     * @return the collapse window in seconds, or null if push messages are not collapsed
+     */
+    public Integer getCollapseWindow() {
+        return collapseWindow;
+    }
+
+    public void setCollapseWindow(Integer collapseWindow) {
+        this.collapseWindow = collapseWindow;
+    }
+
 }
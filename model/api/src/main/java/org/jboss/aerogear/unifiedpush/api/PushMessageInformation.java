@@ -35,6 +35,8 @@ public class PushMessageInformation extends BaseModel {
     private String rawJsonMessage;
     private String ipAddress;
     private String clientIdentifier;
+    private String idempotencyKey;
+    private String collapseKey;
 
     private Date submitDate = new Date();
     private Long totalReceivers = 0L;
@@ -46,6 +48,8 @@ public class PushMessageInformation extends BaseModel {
     private Integer servedVariants = 0;
     private Integer totalVariants = 0;
 
+    private PushMessageState state = PushMessageState.ACTIVE;
+
     private Set<VariantMetricInformation> variantInformations = new HashSet<VariantMetricInformation>();
 
     /**
@@ -122,6 +126,37 @@ public class PushMessageInformation extends BaseModel {
 
     public void setClientIdentifier(String clientIdentifier) { this.clientIdentifier = clientIdentifier; }
 
+    /**
+     * The key supplied by the sender to identify retries of the same push message request, unique per push application
+     *
+     * @return the idempotency key, or null if none was supplied
+     */
+    public String getIdempotencyKey() { return idempotencyKey; }
+
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    /**
+     * The alias and consolidation key of a push message that may be collapsed with newer push messages of the same key
+     *
+     * @return the collapse key, or null if the push message is not collapsible
+     */
+    public String getCollapseKey() { return collapseKey; }
+
+    public void setCollapseKey(String collapseKey) { this.collapseKey = collapseKey; }
+
+    /**
+     * Whether the push message is being delivered, or was paused or cancelled by the developer
+     *
+     * @return the delivery state
+     */
+    public PushMessageState getState() {
+        return state;
+    }
+
+    public void setState(PushMessageState state) {
+        this.state = state;
+    }
+
     /**
      * The number of active tokens, regardless from the variants, to which this Push Message was sent to
      *
@@ -0,0 +1,43 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.api;
+
+/**
+ * The delivery state of a submitted push message request.
+ */
+public enum PushMessageState {
+
+    /**
+     * The push message is being delivered (or was delivered completely).
+     */
+    ACTIVE,
+
+    /**
+     * No further device tokens are loaded for the push message, until it is resumed.
+     */
+    PAUSED,
+
+    /**
+     * The push message is not delivered any further, batches that are queued already are dropped.
+     */
+    CANCELLED,
+
+    /**
+     * The push message was not delivered, since a newer push message with the same collapse key replaced it.
+     */
+    COLLAPSED
+}
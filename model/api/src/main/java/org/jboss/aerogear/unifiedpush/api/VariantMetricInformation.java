@@ -31,6 +31,7 @@ public class VariantMetricInformation extends BaseModel {
     @NotNull
     private String variantID;
     private Long receivers = 0L;
+    private Long expiredReceivers = 0L;
     private Boolean deliveryStatus = Boolean.FALSE;
     private String reason;
     private Long variantOpenCounter = 0L;
@@ -69,6 +70,20 @@ public class VariantMetricInformation extends BaseModel {
         this.receivers = receivers;
     }
 
+    /**
+     * Number of receivers for this variant that the push message was not submitted to, since its time-to-live elapsed
+     * while it was waiting for delivery.
+     *
+     * @return number of receivers that were skipped
+     */
+    public Long getExpiredReceivers() {
+        return expiredReceivers;
+    }
+
+    public void setExpiredReceivers(Long expiredReceivers) {
+        this.expiredReceivers = expiredReceivers;
+    }
+
     /**
      * Indicator if the request to the actual push network, for the related variant, was successful or not.
      *
@@ -21,40 +21,43 @@ import org.jboss.aerogear.unifiedpush.api.Installation;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
-import java.util.regex.Pattern;
 
 /**
  * Validator that will validate if the device token matches to {@code VariantType} specific pattern.
+ *
+ * The patterns are checked by hand-written loops instead of regular expressions, since the check is done on every
+ * device registration; they accept exactly the same tokens as the regular expressions documented on the constants.
+ *
  * @see VariantType
  */
 public class DeviceTokenValidator implements ConstraintValidator<DeviceTokenCheck, Installation> {
     /**
-     * Pattern for iOS is pretty well defined as the library we use for sending assumes HEX.
+     * Pattern for iOS is pretty well defined as the library we use for sending assumes HEX: <code>(?i)[a-f0-9 -]{64,}</code>
      * @see <a href="https://github.com/notnoop/java-apns/blob/20c10ebd22e15a55c0c1c12695c535d37435dcfd/src/main/java/com/notnoop/apns/internal/Utilities.java#L114">notnoop apns</a>
      */
-    private static final Pattern IOS_DEVICE_TOKEN = Pattern.compile("(?i)[a-f0-9 -]{64,}");
+    private static final CharacterClass IOS_DEVICE_TOKEN = new CharacterClass("abcdefABCDEF0123456789 -", 64);
     /**
      * Pattern for android is harder to define that is why we kept it lenient it is at least 100 characters long and can
-     * consist of digits, alphas, - and _ all have one of these separators
+     * consist of digits, alphas, - and _ all have one of these separators: <code>(?i)[0-9a-z\-_:]{100,}</code>
      */
-    private static final Pattern ANDROID_DEVICE_TOKEN = Pattern.compile("(?i)[0-9a-z\\-_:]{100,}");
+    private static final CharacterClass ANDROID_DEVICE_TOKEN = new CharacterClass(CharacterClass.ALPHANUMERIC + "-_:", 100);
     /**
-     * Pattern for windows is a uri that can be 1024 characters long
+     * Pattern for windows is a uri that can be 1024 characters long: <code>https?://.{0,1024}</code>
      * @see <a href="http://blogs.windows.com/windows_phone/b/wpdev/archive/2013/10/22/recommended-practices-for-using-microsoft-push-notification-service-mpns.aspx?Redirected=true">Windows developer blog</a>
      */
-    private static final Pattern WINDOWS_DEVICE_TOKEN = Pattern.compile("https?://.{0,1024}");
+    private static final int WINDOWS_DEVICE_TOKEN_MAX_URI_LENGTH = 1024;
 
     /**
      * The SimplePush token is an URI. While we strongly recommend https, it is in theory possible that users of the
-     * AeroGear SimplePush Server do not protect the "update" endpoint via SSL.
+     * AeroGear SimplePush Server do not protect the "update" endpoint via SSL: <code>https?://.{0,2000}</code>
      */
-    private static final Pattern SIMPLE_PUSH_DEVICE_TOKEN = Pattern.compile("https?://.{0,2000}");
+    private static final int SIMPLE_PUSH_DEVICE_TOKEN_MAX_URI_LENGTH = 2000;
 
     /**
      * Pattern for Amazon is harder to define that is why we kept it lenient it is at least 100 characters long and can
-     * consist of digits, alphas, - , _ and . and all have one of these separators
+     * consist of digits, alphas, - , _ and . and all have one of these separators: <code>(?i)[0-9a-z\-_.]{100,}</code>
      */
-    private static final Pattern ADM_DEVICE_TOKEN = Pattern.compile("(?i)[0-9a-z\\-_.]{100,}");
+    private static final CharacterClass ADM_DEVICE_TOKEN = new CharacterClass(CharacterClass.ALPHANUMERIC + "-_.", 100);
 
     @Override
     public void initialize(DeviceTokenCheck constraintAnnotation) {
@@ -82,17 +85,90 @@ public class DeviceTokenValidator implements ConstraintValidator<DeviceTokenChec
     public static boolean isValidDeviceTokenForVariant(final String deviceToken, final VariantType type) {
         switch (type) {
             case IOS:
-                return IOS_DEVICE_TOKEN.matcher(deviceToken).matches();
+                return IOS_DEVICE_TOKEN.matches(deviceToken);
             case ANDROID:
-                return ANDROID_DEVICE_TOKEN.matcher(deviceToken).matches();
+                return ANDROID_DEVICE_TOKEN.matches(deviceToken);
             case WINDOWS_WNS:
             case WINDOWS_MPNS:
-                return WINDOWS_DEVICE_TOKEN.matcher(deviceToken).matches();
+                return isHttpUri(deviceToken, WINDOWS_DEVICE_TOKEN_MAX_URI_LENGTH);
             case SIMPLE_PUSH:
-                return SIMPLE_PUSH_DEVICE_TOKEN.matcher(deviceToken).matches();
+                return isHttpUri(deviceToken, SIMPLE_PUSH_DEVICE_TOKEN_MAX_URI_LENGTH);
             case ADM:
-                return ADM_DEVICE_TOKEN.matcher(deviceToken).matches();
+                return ADM_DEVICE_TOKEN.matches(deviceToken);
         }
         return false;
     }
+
+    /**
+     * Same as <code>https?://.{0,maxLength}</code>: the dot matches any code point but line terminators.
+     */
+    private static boolean isHttpUri(String deviceToken, int maxLength) {
+        final int start;
+        if (deviceToken.startsWith("http://")) {
+            start = 7;
+        } else if (deviceToken.startsWith("https://")) {
+            start = 8;
+        } else {
+            return false;
+        }
+        if (deviceToken.codePointCount(start, deviceToken.length()) > maxLength) {
+            return false;
+        }
+        for (int i = start; i < deviceToken.length(); i++) {
+            if (isLineTerminator(deviceToken.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Same as <code>[characters]{minLength,}</code>, for ASCII characters only
+     */
+    private static final class CharacterClass {
+
+        static final String ALPHANUMERIC = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+        // one bit per ASCII character
+        private final long lowerBits;
+        private final long upperBits;
+        private final int minLength;
+
+        CharacterClass(String characters, int minLength) {
+            long lower = 0;
+            long upper = 0;
+            for (int i = 0; i < characters.length(); i++) {
+                final char c = characters.charAt(i);
+                if (c < 64) {
+                    lower |= 1L << c;
+                } else {
+                    upper |= 1L << (c - 64);
+                }
+            }
+            this.lowerBits = lower;
+            this.upperBits = upper;
+            this.minLength = minLength;
+        }
+
+        boolean matches(String deviceToken) {
+            if (deviceToken.length() < minLength) {
+                return false;
+            }
+            for (int i = 0; i < deviceToken.length(); i++) {
+                final char c = deviceToken.charAt(i);
+                if (c < 64) {
+                    if ((lowerBits & (1L << c)) == 0) {
+                        return false;
+                    }
+                } else if (c >= 128 || (upperBits & (1L << (c - 64))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
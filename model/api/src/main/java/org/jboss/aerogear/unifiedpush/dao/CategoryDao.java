@@ -23,4 +23,6 @@ import java.util.List;
 public interface CategoryDao extends GenericBaseDao<Category,Integer> {
 
     List<Category> findByNames(List<String> names);
+
+    List<Category> findAll();
 }
@@ -17,8 +17,10 @@
 package org.jboss.aerogear.unifiedpush.dao;
 
 import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -44,6 +46,28 @@ public interface InstallationDao extends GenericBaseDao<Installation, String> {
      */
     List<Installation> findInstallationsForVariantByDeviceTokens(String variantID, Set<String> deviceTokens);
 
+    /**
+     * Returns those of the given device tokens that are already stored for the given Variant (enabled or not).
+     * The lookup is done through the (indexed) token hash, so it is cheap for chunks of a few thousand tokens.
+     *
+     * @param variantID the variantID for the filter
+     * @param deviceTokens the deviceTokens to look for
+     *
+     * @return the device tokens which exist
+     */
+    Set<String> findExistingDeviceTokensForVariant(String variantID, Collection<String> deviceTokens);
+
+    /**
+     * Inserts the given installations, or updates the enabled installations of the variant having the same device token.
+     * Where the database supports it, a native upsert statement (keyed by variant and token hash) is used and executed as JDBC batch.
+     *
+     * The category links of the inserted and updated installations are replaced by the given categories, which must be persistent.
+     *
+     * @param variant the variant of the installations
+     * @param installations installations to store, at most one per device token
+     */
+    void upsertInstallations(Variant variant, Collection<Installation> installations);
+
     /**
      * Sender API for installations:
      *
@@ -61,6 +85,22 @@ public interface InstallationDao extends GenericBaseDao<Installation, String> {
      */
     ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch, boolean oldGCM);
 
+    /**
+     * Same as {@link #findAllDeviceTokenForVariantIDByCriteria(String, List, List, List, int, String, boolean)},
+     * for categories that were already resolved to their IDs.
+     *
+     * @param variantID the variantID for the filter
+     * @param categoryIds IDs of the applied categories, null for no category filter; an empty list matches no installation
+     * @param aliases applied aliases for the filter
+     * @param deviceTypes applied deviceTypes for the filter
+     * @param maxResults number of maxResults for the filter
+     * @param lastTokenFromPreviousBatch identifier of the last fetched token
+     * @param oldGCM if true only old GCM tokens (not containing a :) are load
+     *
+     * @return list of device tokens that matches this filter
+     */
+    ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteriaAndCategoryIDs(String variantID, List<Long> categoryIds, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch, boolean oldGCM);
+
     Set<String> findAllDeviceTokenForVariantID(String variantID);
 
     /**
@@ -86,6 +126,18 @@ public interface InstallationDao extends GenericBaseDao<Installation, String> {
      */
     PageResult<Installation, Count> findInstallationsByVariant(String variantID, Integer page, Integer pageSize, String search);
 
+    /**
+     * Streams all installations (including their categories) of the variant specified, used for exporting them.
+     * The installations are read from a forward-only cursor and the persistence context is cleared periodically,
+     * so that the memory needed does not depend on the number of installations.
+     *
+     * @param variantID the id of the variant to find the installations for
+     * @param developer the developer, or <code>null</code> to not restrict the variants (used for admin role)
+     *
+     * @return builder for the stream of installations
+     */
+    ResultsStream.QueryBuilder<Installation> streamInstallationsByVariantForDeveloper(String variantID, String developer);
+
 
     /**
      * Counts the total number of registered devices/clients for the give List of variantIDs
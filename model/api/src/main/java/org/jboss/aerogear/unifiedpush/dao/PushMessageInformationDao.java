@@ -17,6 +17,7 @@
 package org.jboss.aerogear.unifiedpush.dao;
 
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.PushMessageState;
 import org.jboss.aerogear.unifiedpush.dto.MessageMetrics;
 
 import java.util.Date;
@@ -93,6 +94,56 @@ public interface PushMessageInformationDao extends GenericBaseDao<PushMessageInf
      */
     List<PushMessageInformation> findLatestActivity(String loginName, int maxResults);
 
+    /**
+     * Looks up the push message that was submitted with the given idempotency key for the given PushApplication.
+     *
+     * @param pushApplicationId ID of the PushApplication
+     * @param idempotencyKey the key supplied by the sender
+     *
+     * @return the ID of the push message info object, or null if there is none
+     */
+    String findIdByIdempotencyKey(String pushApplicationId, String idempotencyKey);
+
+    /**
+     * Looks up the latest push message that was submitted with the given collapse key for the given PushApplication.
+     *
+     * @param pushApplicationId ID of the PushApplication
+     * @param collapseKey the alias and consolidation key of the push message
+     *
+     * @return the ID of the latest push message info object, or null if there is none
+     */
+    String findLatestIdByCollapseKey(String pushApplicationId, String collapseKey);
+
+    /**
+     * Changes the delivery state of the given push message, without loading it.
+     *
+     * @param id ID of the push message info object
+     * @param state the new state
+     *
+     * @return true if the push message exists, false otherwise
+     */
+    boolean updateState(String id, PushMessageState state);
+
+    /**
+     * Loads the IDs of all push messages in the given delivery state.
+     *
+     * @param state the delivery state
+     *
+     * @return list of push message info IDs
+     */
+    List<String> findIdsInState(PushMessageState state);
+
+    /**
+     * Adds the given number of app opens to the counter of the given push message, without loading it.
+     * The first and last open dates are only moved backwards and forwards respectively, so concurrent updates of several nodes can be applied in any order.
+     *
+     * @param id ID of the push message info object
+     * @param opens the number of app opens to add
+     * @param firstOpenDate the date of the earliest of the app opens
+     * @param lastOpenDate the date of the latest of the app opens
+     */
+    void addAppOpens(String id, long opens, Date firstOpenDate, Date lastOpenDate);
+
     /**
      * Delete all Push Message Information entries that are older than the given date
      *
@@ -29,5 +29,14 @@ public interface VariantMetricInformationDao extends GenericBaseDao<VariantMetri
      */
     VariantMetricInformation findVariantMetricInformationByVariantID(String variantID, String pushMessageinformationId);
 
+    /**
+     * Adds the given number of app opens to the counter of the VariantMetricInformation instance, without loading it.
+     *
+     * @param variantID that is associated with the VariantMetricInformation instance
+     * @param pushMessageinformationId of the @link{{org.jboss.aerogear.unifiedpush.api.PushMessageInformation}} that owns this instance
+     * @param opens the number of app opens to add
+     */
+    void addVariantOpens(String variantID, String pushMessageinformationId, long opens);
+
 }
 
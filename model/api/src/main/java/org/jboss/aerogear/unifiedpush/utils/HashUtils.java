@@ -0,0 +1,71 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 hashing of device tokens and secrets, shared by the model, the services and the database migrator.
+ */
+public final class HashUtils {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private HashUtils() {
+        // no-op
+    }
+
+    /**
+     * Computes the SHA-256 hash of the UTF-8 bytes of the given value
+     *
+     * @param value the value to hash
+     *
+     * @return the hash, or <code>null</code> if the value is <code>null</code>
+     */
+    public static byte[] sha256(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 hash of the UTF-8 bytes of the given value, hex encoded in lower case
+     *
+     * @param value the value to hash
+     *
+     * @return the hex encoded hash (64 characters), or <code>null</code> if the value is <code>null</code>
+     */
+    public static String sha256Hex(String value) {
+        final byte[] digest = sha256(value);
+        if (digest == null) {
+            return null;
+        }
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.jboss.aerogear.unifiedpush.api;
 
+import org.jboss.aerogear.unifiedpush.utils.HashUtils;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -70,4 +71,13 @@ public class InstallationTest {
         deviceInstallation.setDeviceToken("http://server.com/update/21345321354");
         assertThat(deviceInstallation.getDeviceToken()).isEqualTo("http://server.com/update/21345321354");
     }
+
+    @Test
+    public void tokenHash() {
+        // SHA-256 of "1456782", hex encoded
+        assertThat(deviceInstallation.getTokenHash()).isEqualTo("893b70424df167faa506a0f286d63b5bb6228cb69bb0c4b7407d30da91149d51");
+
+        deviceInstallation.setDeviceToken("1456783");
+        assertThat(deviceInstallation.getTokenHash()).isEqualTo(HashUtils.sha256Hex("1456783"));
+    }
 }
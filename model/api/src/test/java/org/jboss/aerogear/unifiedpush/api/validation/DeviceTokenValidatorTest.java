@@ -19,6 +19,11 @@ package org.jboss.aerogear.unifiedpush.api.validation;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.junit.Test;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class DeviceTokenValidatorTest {
@@ -40,4 +45,57 @@ public class DeviceTokenValidatorTest {
         final VariantType andVariantType = VariantType.ANDROID;
         assertThat(DeviceTokenValidator.isValidDeviceTokenForVariant("some-bogus:token", andVariantType)).isFalse();
     }
+
+    @Test
+    public void testUpperCaseIosToken() {
+        assertThat(DeviceTokenValidator.isValidDeviceTokenForVariant("ABCDEF0123456789abcdef0123456789 ABCDEF0123456789-abcdef0123456789", VariantType.IOS)).isTrue();
+        assertThat(DeviceTokenValidator.isValidDeviceTokenForVariant("ABCDEF0123456789abcdef0123456789 ABCDEF0123456789-abcdef012345678g", VariantType.IOS)).isFalse();
+    }
+
+    @Test
+    public void testWindowsUri() {
+        assertThat(DeviceTokenValidator.isValidDeviceTokenForVariant("https://db3.notify.windows.com/?token=AwYAAAB", VariantType.WINDOWS_WNS)).isTrue();
+        assertThat(DeviceTokenValidator.isValidDeviceTokenForVariant("https://db3.notify.windows.com/\n", VariantType.WINDOWS_WNS)).isFalse();
+        assertThat(DeviceTokenValidator.isValidDeviceTokenForVariant("ftp://db3.notify.windows.com/", VariantType.WINDOWS_MPNS)).isFalse();
+    }
+
+    /**
+     * The validators must accept exactly the tokens matched by the regular expressions they replace,
+     * checked for random tokens around the length limits, built from valid, invalid, non ASCII and line terminator characters.
+     */
+    @Test
+    public void testSameResultsAsRegularExpressions() {
+        final Map<VariantType, Pattern> patterns = new EnumMap<VariantType, Pattern>(VariantType.class);
+        patterns.put(VariantType.IOS, Pattern.compile("(?i)[a-f0-9 -]{64,}"));
+        patterns.put(VariantType.ANDROID, Pattern.compile("(?i)[0-9a-z\\-_:]{100,}"));
+        patterns.put(VariantType.WINDOWS_WNS, Pattern.compile("https?://.{0,1024}"));
+        patterns.put(VariantType.WINDOWS_MPNS, Pattern.compile("https?://.{0,1024}"));
+        patterns.put(VariantType.SIMPLE_PUSH, Pattern.compile("https?://.{0,2000}"));
+        patterns.put(VariantType.ADM, Pattern.compile("(?i)[0-9a-z\\-_.]{100,}"));
+
+        final String[] prefixes = {"", "http://", "https://", "HTTP://", "http:/"};
+        final String characters = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ -_:./?=&%\n\r\t\u0085\u2028\u2029\u00e9\u212a\u017f\ud83d\ude00\ud83d";
+        final int[] lengths = {0, 1, 63, 64, 65, 99, 100, 101, 1023, 1024, 1025, 1999, 2000, 2001};
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder token = new StringBuilder(prefixes[random.nextInt(prefixes.length)]);
+            final int length = lengths[random.nextInt(lengths.length)];
+            // mostly valid characters, with an occasional odd one
+            final int alphabet = random.nextInt(4) == 0 ? characters.length() : 16;
+            for (int j = 0; j < length; j++) {
+                token.append(characters.charAt(random.nextInt(alphabet)));
+            }
+            if (random.nextInt(4) == 0 && token.length() > 0) {
+                token.setCharAt(random.nextInt(token.length()), characters.charAt(random.nextInt(characters.length())));
+            }
+
+            for (Map.Entry<VariantType, Pattern> entry : patterns.entrySet()) {
+                final String deviceToken = token.toString();
+                assertThat(DeviceTokenValidator.isValidDeviceTokenForVariant(deviceToken, entry.getKey()))
+                        .as(entry.getKey() + ": " + deviceToken)
+                        .isEqualTo(entry.getValue().matcher(deviceToken).matches());
+            }
+        }
+    }
 }
@@ -34,6 +34,11 @@ public class JPACategoryDao extends JPABaseDao<Category, Integer> implements Cat
         return categoryList;
     }
 
+    @Override
+    public List<Category> findAll() {
+        return entityManager.createQuery("select c from Category c", Category.class).getResultList();
+    }
+
     @Override
     public Class<Category> getType() {
         return Category.class;
@@ -19,36 +19,90 @@ package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
 import org.hibernate.Query;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL82Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.jdbc.Work;
+import org.jboss.aerogear.unifiedpush.api.Category;
 import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
 import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.dto.Count;
+import org.jboss.aerogear.unifiedpush.utils.HashUtils;
 
 import javax.persistence.TypedQuery;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 
 public class JPAInstallationDao extends JPABaseDao<Installation, String> implements InstallationDao {
 
-    private static final String FIND_ALL_DEVICES_FOR_VARIANT_QUERY = "select distinct installation.deviceToken"
-                    + " from Installation installation"
-                    + " left join installation.categories c "
-                    + " join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true";
+    // INSERT ... ON CONFLICT is available as of PostgreSQL 9.5
+    private static final int POSTGRESQL_UPSERT_MAJOR_VERSION = 9;
+    private static final int POSTGRESQL_UPSERT_MINOR_VERSION = 5;
 
-    private static final String FIND_ALL_DEVICES_FOR_VARIANT_QUERY_LEGACY = "select distinct installation.deviceToken"
+    // no join on categories here, the category criteria is applied as EXISTS semi-join, only when requested
+    private static final String FIND_ALL_DEVICES_FOR_VARIANT_QUERY = "select installation.deviceToken"
                     + " from Installation installation"
-                    + " left join installation.categories c "
-                    + " join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true AND locate(':', installation.deviceToken) = 0";
-
+                    + " join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true";
 
+    private static final String FIND_ALL_DEVICES_FOR_VARIANT_QUERY_LEGACY = FIND_ALL_DEVICES_FOR_VARIANT_QUERY
+                    + " AND locate(':', installation.deviceToken) = 0";
+
+    private static final String INSERT_INSTALLATION = "INSERT INTO installation"
+                    + " (id, alias, device_token, device_type, enabled, operating_system, os_version, platform, variant_id, token_hash)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // only enabled installations are updated; 'enabled' is assigned last, as MySQL evaluates the assignments from left to right
+    private static final String UPSERT_INSTALLATION_MYSQL = INSERT_INSTALLATION
+                    + " ON DUPLICATE KEY UPDATE"
+                    + " alias = IF(enabled, VALUES(alias), alias),"
+                    + " device_type = IF(enabled, VALUES(device_type), device_type),"
+                    + " operating_system = IF(enabled, VALUES(operating_system), operating_system),"
+                    + " os_version = IF(enabled, VALUES(os_version), os_version),"
+                    + " platform = IF(enabled, VALUES(platform), platform),"
+                    + " enabled = IF(enabled, VALUES(enabled), enabled)";
+
+    private static final String UPSERT_INSTALLATION_POSTGRESQL = INSERT_INSTALLATION
+                    + " ON CONFLICT (variant_id, token_hash) DO UPDATE SET"
+                    + " alias = EXCLUDED.alias,"
+                    + " device_type = EXCLUDED.device_type,"
+                    + " operating_system = EXCLUDED.operating_system,"
+                    + " os_version = EXCLUDED.os_version,"
+                    + " platform = EXCLUDED.platform,"
+                    + " enabled = EXCLUDED.enabled"
+                    + " WHERE installation.enabled = true";
+
+    private static final String DELETE_CATEGORY_LINKS = "DELETE FROM installation_category WHERE installation_id IN"
+                    + " (SELECT i.id FROM installation i WHERE i.variant_id = ? AND i.token_hash = ? AND i.enabled = ?)";
+
+    private static final String INSERT_CATEGORY_LINK = "INSERT INTO installation_category (installation_id, category_id)"
+                    + " SELECT i.id, ? FROM installation i WHERE i.variant_id = ? AND i.token_hash = ? AND i.enabled = ?";
+
+    // upper bound of aliases bound to one query, larger alias lists are evaluated in chunks
+    static final int ALIAS_CHUNK_SIZE = 1000;
+
+    // default number of exported installations fetched at once
+    private static final int EXPORT_FETCH_SIZE = 1000;
 
     private static final String FIND_INSTALLATIONS = "FROM Installation installation"
                     + " JOIN installation.variant v"
@@ -95,6 +149,40 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
         return findInstallationsByVariantForDeveloper(variantID, null, page, pageSize, search);
     }
 
+    @Override
+    public ResultsStream.QueryBuilder<Installation> streamInstallationsByVariantForDeveloper(final String variantID, final String developer) {
+        // the categories are fetched with the installation; a collection fetch requires the rows to be ordered by the installation
+        final StringBuilder hql = new StringBuilder("SELECT installation FROM Installation installation"
+                + " LEFT JOIN FETCH installation.categories"
+                + " JOIN installation.variant v"
+                + " WHERE v.variantID = :variantID");
+        if (developer != null) {
+            hql.append(" AND v.developer = :developer");
+        }
+        hql.append(" ORDER BY installation.id");
+
+        return new ResultsStream.QueryBuilder<Installation>() {
+            private int fetchSize = EXPORT_FETCH_SIZE;
+            @Override
+            public ResultsStream.QueryBuilder<Installation> fetchSize(int fetchSize) {
+                this.fetchSize = fetchSize;
+                return this;
+            }
+            @Override
+            public ResultsStream<Installation> executeQuery() {
+                final Session session = (Session) entityManager.getDelegate();
+                final Query query = session.createQuery(hql.toString())
+                        .setParameter("variantID", variantID)
+                        .setReadOnly(true)
+                        .setFetchSize(fetchSize);
+                if (developer != null) {
+                    query.setParameter("developer", developer);
+                }
+                return new InstallationStream(session, query.scroll(ScrollMode.FORWARD_ONLY));
+            }
+        };
+    }
+
 
     @Override
     public Installation findInstallationForVariantByDeviceToken(String variantID, String deviceToken) {
@@ -125,6 +213,246 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
     }
 
 
+    @Override
+    public Set<String> findExistingDeviceTokensForVariant(String variantID, Collection<String> deviceTokens) {
+        if (deviceTokens == null || deviceTokens.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> tokenHashes = new HashSet<>();
+        for (String deviceToken : deviceTokens) {
+            tokenHashes.add(HashUtils.sha256Hex(deviceToken));
+        }
+
+        return new HashSet<>(createQuery("select installation.deviceToken from Installation installation " +
+                " join installation.variant abstractVariant " +
+                " where abstractVariant.variantID = :variantID" +
+                " and installation.tokenHash IN :tokenHashes", String.class)
+                .setParameter("variantID", variantID)
+                .setParameter("tokenHashes", tokenHashes)
+                .getResultList());
+    }
+
+    @Override
+    public void upsertInstallations(Variant variant, Collection<Installation> installations) {
+        if (installations == null || installations.isEmpty()) {
+            return;
+        }
+
+        final Session session = (Session) entityManager.getDelegate();
+        final String upsertStatement = upsertStatementFor(session, ((SessionFactoryImplementor) session.getSessionFactory()).getDialect());
+        if (upsertStatement == null) {
+            upsertWithEntityManager(variant, installations);
+            return;
+        }
+
+        // new categories have to be in the database, before we link them
+        entityManager.flush();
+        session.doWork(new UpsertWork(upsertStatement, variant.getId(), installations));
+    }
+
+    /**
+     * Returns the native upsert statement for MySQL and PostgreSQL 9.5 or later, or null for other databases
+     */
+    private String upsertStatementFor(Session session, Dialect dialect) {
+        if (dialect instanceof MySQLDialect) {
+            return UPSERT_INSTALLATION_MYSQL;
+        } else if (dialect instanceof PostgreSQL82Dialect && supportsOnConflict(session)) {
+            return UPSERT_INSTALLATION_POSTGRESQL;
+        }
+        return null;
+    }
+
+    /**
+     * The PostgreSQL dialects of Hibernate don't tell the server version, so it is read from the JDBC metadata
+     */
+    private boolean supportsOnConflict(Session session) {
+        return session.doReturningWork(new ReturningWork<Boolean>() {
+            @Override
+            public Boolean execute(Connection connection) throws SQLException {
+                final DatabaseMetaData metaData = connection.getMetaData();
+                final int majorVersion = metaData.getDatabaseMajorVersion();
+                return majorVersion > POSTGRESQL_UPSERT_MAJOR_VERSION
+                        || (majorVersion == POSTGRESQL_UPSERT_MAJOR_VERSION && metaData.getDatabaseMinorVersion() >= POSTGRESQL_UPSERT_MINOR_VERSION);
+            }
+        });
+    }
+
+    /**
+     * Fallback for databases without native upsert: loads the existing installations with one query,
+     * updates the enabled ones and persists the others.
+     */
+    private void upsertWithEntityManager(Variant variant, Collection<Installation> installations) {
+        attachCategories(installations);
+
+        final Map<String, Installation> postedInstallations = new LinkedHashMap<>();
+        for (Installation installation : installations) {
+            postedInstallations.put(installation.getDeviceToken(), installation);
+        }
+
+        for (Installation existing : findInstallationsForVariantByDeviceTokens(variant.getVariantID(), postedInstallations.keySet())) {
+            final Installation posted = postedInstallations.remove(existing.getDeviceToken());
+            if (posted != null && existing.isEnabled()) {
+                existing.setCategories(posted.getCategories());
+                existing.setAlias(posted.getAlias());
+                existing.setDeviceType(posted.getDeviceType());
+                existing.setOperatingSystem(posted.getOperatingSystem());
+                existing.setOsVersion(posted.getOsVersion());
+                existing.setEnabled(posted.isEnabled());
+                existing.setPlatform(posted.getPlatform());
+            }
+        }
+
+        for (Installation installation : postedInstallations.values()) {
+            installation.setVariant(variant);
+            create(installation);
+        }
+    }
+
+    @Override
+    public void create(Installation installation) {
+        attachCategories(Collections.singletonList(installation));
+        super.create(installation);
+    }
+
+    @Override
+    public void update(Installation installation) {
+        attachCategories(Collections.singletonList(installation));
+        super.update(installation);
+    }
+
+    /**
+     * Streams installations from a scroll, detaching each installation once the next one is requested.
+     * The persistence context is not cleared as a whole: with the categories fetched, the installation that follows
+     * is already partially loaded when the previous one is handed out.
+     *
+     * On MySQL the scroll only streams if the data source enables server side cursors (<code>useCursorFetch=true</code>),
+     * otherwise the driver reads the whole result into memory, regardless of the fetch size.
+     */
+    private static class InstallationStream implements ResultsStream<Installation>, Closeable {
+        private final Session session;
+        private final ScrollableResults results;
+        private Installation current;
+
+        InstallationStream(Session session, ScrollableResults results) {
+            this.session = session;
+            this.results = results;
+        }
+
+        @Override
+        public boolean next() throws ResultStreamException {
+            // the installation handed out before is not needed any more
+            if (current != null) {
+                session.evict(current);
+                current = null;
+            }
+            return results.next();
+        }
+
+        @Override
+        public Installation get() throws ResultStreamException {
+            current = (Installation) results.get()[0];
+            return current;
+        }
+
+        @Override
+        public void close() {
+            results.close();
+        }
+    }
+
+    /**
+     * Categories that are already stored (e.g. resolved by a dictionary of a previous transaction) are replaced by
+     * references of the persistence context, so that they are neither loaded nor cascaded as detached entities.
+     */
+    private void attachCategories(Collection<Installation> installations) {
+        final Map<Long, Category> attached = new HashMap<>();
+
+        for (Installation installation : installations) {
+            if (installation.getCategories() == null) {
+                continue;
+            }
+            final Set<Category> categories = new HashSet<>();
+            for (Category category : installation.getCategories()) {
+                if (category.getId() == null || entityManager.contains(category)) {
+                    categories.add(category);
+                    continue;
+                }
+                Category managed = attached.get(category.getId());
+                if (managed == null) {
+                    managed = entityManager.getReference(Category.class, category.getId());
+                    attached.put(category.getId(), managed);
+                }
+                categories.add(managed);
+            }
+            installation.setCategories(categories);
+        }
+    }
+
+    /**
+     * Executes the upsert statement and reconciles the category links, each as one JDBC batch
+     */
+    private static class UpsertWork implements Work {
+        private final String upsertStatement;
+        private final String variantId;
+        private final Collection<Installation> installations;
+
+        UpsertWork(String upsertStatement, String variantId, Collection<Installation> installations) {
+            this.upsertStatement = upsertStatement;
+            this.variantId = variantId;
+            this.installations = installations;
+        }
+
+        @Override
+        public void execute(Connection connection) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(upsertStatement)) {
+                for (Installation installation : installations) {
+                    statement.setString(1, installation.getId());
+                    statement.setString(2, installation.getAlias());
+                    statement.setString(3, installation.getDeviceToken());
+                    statement.setString(4, installation.getDeviceType());
+                    statement.setBoolean(5, installation.isEnabled());
+                    statement.setString(6, installation.getOperatingSystem());
+                    statement.setString(7, installation.getOsVersion());
+                    statement.setString(8, installation.getPlatform());
+                    statement.setString(9, variantId);
+                    statement.setString(10, installation.getTokenHash());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_CATEGORY_LINKS)) {
+                for (Installation installation : installations) {
+                    statement.setString(1, variantId);
+                    statement.setString(2, installation.getTokenHash());
+                    statement.setBoolean(3, true);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_CATEGORY_LINK)) {
+                boolean linksPresent = false;
+                for (Installation installation : installations) {
+                    if (installation.getCategories() == null) {
+                        continue;
+                    }
+                    for (Category category : installation.getCategories()) {
+                        statement.setLong(1, category.getId());
+                        statement.setString(2, variantId);
+                        statement.setString(3, installation.getTokenHash());
+                        statement.setBoolean(4, true);
+                        statement.addBatch();
+                        linksPresent = true;
+                    }
+                }
+                if (linksPresent) {
+                    statement.executeBatch();
+                }
+            }
+        }
+    }
 
     @Override
     public Set<String> findAllDeviceTokenForVariantID(String variantID) {
@@ -135,14 +463,25 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
 
     @Override
     public ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, final int maxResults, String lastTokenFromPreviousBatch, boolean oldGCM) {
-        // the required part: Join + all tokens for variantID;
+        // categories are resolved to their IDs up front
+        final List<Long> categoryIds = isListEmpty(categories) ? findCategoryIdsByNames(categories) : null;
+        return findAllDeviceTokenForVariantIDByCriteriaAndCategoryIDs(variantID, categoryIds, aliases, deviceTypes, maxResults, lastTokenFromPreviousBatch, oldGCM);
+    }
 
+    @Override
+    public ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteriaAndCategoryIDs(String variantID, List<Long> categoryIds, List<String> aliases, List<String> deviceTypes, final int maxResults, String lastTokenFromPreviousBatch, boolean oldGCM) {
+        // unknown categories can't match any installation
+        if (categoryIds != null && categoryIds.isEmpty()) {
+            return emptyQueryBuilder();
+        }
+
+        // the required part: Join + all tokens for variantID;
         final StringBuilder jpqlString = oldGCM ? new StringBuilder(FIND_ALL_DEVICES_FOR_VARIANT_QUERY_LEGACY) : new StringBuilder(FIND_ALL_DEVICES_FOR_VARIANT_QUERY);
         final Map<String, Object> parameters = new LinkedHashMap<>();
         parameters.put("variantID", variantID);
 
         // apend query conditions based on specified message parameters
-        appendDynamicQuery(jpqlString, parameters, categories, aliases, deviceTypes);
+        appendDynamicQuery(jpqlString, parameters, categoryIds, aliases, deviceTypes);
 
         // sort on ids so that we can handle paging properly
         if (lastTokenFromPreviousBatch != null) {
@@ -161,22 +500,13 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
             }
             @Override
             public ResultsStream<String> executeQuery() {
-                Query hibernateQuery = JPAInstallationDao.this.createHibernateQuery(jpqlString.toString());
-                hibernateQuery.setMaxResults(maxResults);
-                for (Entry<String, Object> parameter : parameters.entrySet()) {
-                    Object value = parameter.getValue();
-                    if (value instanceof Collection<?>) {
-                        hibernateQuery.setParameterList(parameter.getKey(), (Collection<?>) parameter.getValue());
-                    } else {
-                        hibernateQuery.setParameter(parameter.getKey(), parameter.getValue());
-                    }
-
-                }
-                hibernateQuery.setReadOnly(true);
-                if (fetchSize != null) {
-                    hibernateQuery.setFetchSize(fetchSize);
+                @SuppressWarnings("unchecked")
+                final List<String> aliases = (List<String>) parameters.get("aliases");
+                if (aliases != null && aliases.size() > ALIAS_CHUNK_SIZE) {
+                    return executeChunkedQuery(jpqlString.toString(), parameters, aliases, maxResults, fetchSize);
                 }
-                final ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+
+                final ScrollableResults results = scrollTokens(jpqlString.toString(), parameters, maxResults, fetchSize);
                 return new ResultsStream<String>() {
                     @Override
                     public boolean next() throws ResultStreamException {
@@ -192,6 +522,102 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
         };
     }
 
+    /**
+     * Evaluates the token query for huge alias lists in chunks of {@link #ALIAS_CHUNK_SIZE} aliases, so that database limits
+     * for the number of bound parameters are not hit and each chunk can be resolved using the (variant_id, alias) index.
+     *
+     * The chunk results are merged in token order and only the lowest <code>maxResults</code> distinct tokens are kept,
+     * so the returned stream fulfills the same paging contract as the single query.
+     */
+    private ResultsStream<String> executeChunkedQuery(String jpql, Map<String, Object> parameters, List<String> aliases, int maxResults, Integer fetchSize) {
+        final TreeSet<String> tokens = new TreeSet<>();
+        final Map<String, Object> chunkParameters = new LinkedHashMap<>(parameters);
+
+        for (int from = 0; from < aliases.size(); from += ALIAS_CHUNK_SIZE) {
+            chunkParameters.put("aliases", aliases.subList(from, Math.min(from + ALIAS_CHUNK_SIZE, aliases.size())));
+            final ScrollableResults results = scrollTokens(jpql, chunkParameters, maxResults, fetchSize);
+            try {
+                while (results.next()) {
+                    final String token = (String) results.get()[0];
+                    // tokens of a chunk are sorted, the rest of the chunk can't get into the lowest maxResults tokens
+                    if (tokens.size() >= maxResults && token.compareTo(tokens.last()) >= 0) {
+                        break;
+                    }
+                    tokens.add(token);
+                    if (tokens.size() > maxResults) {
+                        tokens.pollLast();
+                    }
+                }
+            } finally {
+                results.close();
+            }
+        }
+
+        final Iterator<String> iterator = tokens.iterator();
+        return new ResultsStream<String>() {
+            private String current;
+            @Override
+            public boolean next() throws ResultStreamException {
+                if (iterator.hasNext()) {
+                    current = iterator.next();
+                    return true;
+                }
+                return false;
+            }
+            @Override
+            public String get() throws ResultStreamException {
+                return current;
+            }
+        };
+    }
+
+    private List<Long> findCategoryIdsByNames(List<String> categories) {
+        return createQuery("select c.id from Category c where c.name in :categories", Long.class)
+                .setParameter("categories", categories)
+                .getResultList();
+    }
+
+    private ResultsStream.QueryBuilder<String> emptyQueryBuilder() {
+        return new ResultsStream.QueryBuilder<String>() {
+            @Override
+            public ResultsStream.QueryBuilder<String> fetchSize(int fetchSize) {
+                return this;
+            }
+            @Override
+            public ResultsStream<String> executeQuery() {
+                return new ResultsStream<String>() {
+                    @Override
+                    public boolean next() throws ResultStreamException {
+                        return false;
+                    }
+                    @Override
+                    public String get() throws ResultStreamException {
+                        throw new ResultStreamException("The result stream is empty");
+                    }
+                };
+            }
+        };
+    }
+
+    private ScrollableResults scrollTokens(String jpql, Map<String, Object> parameters, int maxResults, Integer fetchSize) {
+        Query hibernateQuery = createHibernateQuery(jpql);
+        hibernateQuery.setMaxResults(maxResults);
+        for (Entry<String, Object> parameter : parameters.entrySet()) {
+            Object value = parameter.getValue();
+            if (value instanceof Collection<?>) {
+                hibernateQuery.setParameterList(parameter.getKey(), (Collection<?>) parameter.getValue());
+            } else {
+                hibernateQuery.setParameter(parameter.getKey(), parameter.getValue());
+            }
+
+        }
+        hibernateQuery.setReadOnly(true);
+        if (fetchSize != null) {
+            hibernateQuery.setFetchSize(fetchSize);
+        }
+        return hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+    }
+
     @Override
     public long getNumberOfDevicesForLoginName(String loginName) {
         return createQuery("select count(installation) from Installation installation join installation.variant abstractVariant where abstractVariant.variantID IN (select t.variantID from Variant t where t.developer = :developer) ", Long.class)
@@ -226,7 +652,7 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
      *
      * TODO: perhaps moving to Criteria API for this later
      */
-    private void appendDynamicQuery(final StringBuilder jpqlString, final Map<String, Object> parameters, List<String> categories, List<String> aliases, List<String> deviceTypes) {
+    private void appendDynamicQuery(final StringBuilder jpqlString, final Map<String, Object> parameters, List<Long> categoryIds, List<String> aliases, List<String> deviceTypes) {
 
         // OPTIONAL query arguments, as provided.....
         // are aliases present ??
@@ -246,9 +672,10 @@ public class JPAInstallationDao extends JPABaseDao<Installation, String> impleme
         }
 
         // is a category present ?
-        if (isListEmpty(categories)) {
-            jpqlString.append(" AND ( c.name in (:categories))");
-            parameters.put("categories", categories);
+        if (isListEmpty(categoryIds)) {
+            // correlated on the outer installation, so that only the join table is probed
+            jpqlString.append(" AND EXISTS (select c.id from installation.categories c where c.id in (:categoryIds))");
+            parameters.put("categoryIds", categoryIds);
         }
     }
     /**
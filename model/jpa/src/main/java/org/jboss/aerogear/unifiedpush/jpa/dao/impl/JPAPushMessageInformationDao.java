@@ -21,9 +21,11 @@ import java.util.Date;
 import java.util.List;
 
 import javax.persistence.Query;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.PushMessageState;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
 import org.jboss.aerogear.unifiedpush.dto.MessageMetrics;
@@ -109,6 +111,56 @@ public class JPAPushMessageInformationDao extends JPABaseDao<PushMessageInformat
                 .getResultList();
     }
 
+    @Override
+    public String findIdByIdempotencyKey(String pushApplicationId, String idempotencyKey) {
+        final List<String> ids = createQuery("select pmi.id from PushMessageInformation pmi" +
+                " where pmi.pushApplicationId = :pushApplicationId and pmi.idempotencyKey = :idempotencyKey", String.class)
+                .setParameter("pushApplicationId", pushApplicationId)
+                .setParameter("idempotencyKey", idempotencyKey)
+                .getResultList();
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    @Override
+    public String findLatestIdByCollapseKey(String pushApplicationId, String collapseKey) {
+        final List<String> ids = createQuery("select pmi.id from PushMessageInformation pmi" +
+                " where pmi.pushApplicationId = :pushApplicationId and pmi.collapseKey = :collapseKey" +
+                " ORDER BY pmi.submitDate " + DESC + ", pmi.id " + DESC, String.class)
+                .setParameter("pushApplicationId", pushApplicationId)
+                .setParameter("collapseKey", collapseKey)
+                .setMaxResults(1)
+                .getResultList();
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    @Override
+    public boolean updateState(String id, PushMessageState state) {
+        return entityManager.createQuery("update PushMessageInformation pmi set pmi.state = :state where pmi.id = :id")
+                .setParameter("state", state)
+                .setParameter("id", id)
+                .executeUpdate() > 0;
+    }
+
+    @Override
+    public List<String> findIdsInState(PushMessageState state) {
+        return createQuery("select pmi.id from PushMessageInformation pmi where pmi.state = :state", String.class)
+                .setParameter("state", state)
+                .getResultList();
+    }
+
+    @Override
+    public void addAppOpens(String id, long opens, Date firstOpenDate, Date lastOpenDate) {
+        entityManager.createQuery("update PushMessageInformation pmi set pmi.appOpenCounter = coalesce(pmi.appOpenCounter, 0) + :opens," +
+                " pmi.firstOpenDate = case when pmi.firstOpenDate is null or pmi.firstOpenDate > :firstOpenDate then :firstOpenDate else pmi.firstOpenDate end," +
+                " pmi.lastOpenDate = case when pmi.lastOpenDate is null or pmi.lastOpenDate < :lastOpenDate then :lastOpenDate else pmi.lastOpenDate end" +
+                " where pmi.id = :id")
+                .setParameter("opens", opens)
+                .setParameter("firstOpenDate", firstOpenDate, TemporalType.TIMESTAMP)
+                .setParameter("lastOpenDate", lastOpenDate, TemporalType.TIMESTAMP)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
     @Override
     public void deletePushInformationOlderThan(Date oldest) {
         // TODO: use criteria API...
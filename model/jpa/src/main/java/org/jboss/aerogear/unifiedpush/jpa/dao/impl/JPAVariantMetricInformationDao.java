@@ -32,6 +32,16 @@ public class JPAVariantMetricInformationDao extends JPABaseDao<VariantMetricInfo
 
     }
 
+    @Override
+    public void addVariantOpens(String variantID, String pushmessageinformationId, long opens) {
+        entityManager.createQuery("update VariantMetricInformation vmi set vmi.variantOpenCounter = coalesce(vmi.variantOpenCounter, 0) + :opens" +
+                " where vmi.variantID = :variantId and vmi.pushMessageInformation.id = :pushmessageinformationId")
+                .setParameter("opens", opens)
+                .setParameter("variantId", variantID)
+                .setParameter("pushmessageinformationId", pushmessageinformationId)
+                .executeUpdate();
+    }
+
     @Override
     public Class<VariantMetricInformation> getType() {
         return VariantMetricInformation.class;
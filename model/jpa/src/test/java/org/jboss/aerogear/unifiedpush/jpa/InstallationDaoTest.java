@@ -48,6 +48,7 @@ import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAInstallationDao;
 import org.jboss.aerogear.unifiedpush.utils.DaoDeployment;
+import org.jboss.aerogear.unifiedpush.utils.SqlStatementRecorder;
 import org.jboss.aerogear.unifiedpush.utils.TestUtils;
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.junit.Arquillian;
@@ -142,6 +143,39 @@ public class InstallationDaoTest {
         assertThat(tokens).containsOnly(DEVICE_TOKEN_1, DEVICE_TOKEN_2, DEVICE_TOKEN_3, DEVICE_TOKEN_4);
     }
 
+    @Test
+    public void findDeviceTokensForHugeAliasList() {
+        List<String> aliases = new ArrayList<String>();
+        for (int i = 0; i < 2500; i++) {
+            aliases.add("user-" + i + "@example.com");
+        }
+        aliases.add(2400, "foo@bar.org");
+
+        List<String> tokens = findAllDeviceTokenForVariantIDByCriteria(androidVariantID, null, aliases, null);
+        assertThat(tokens).containsExactly(DEVICE_TOKEN_1, DEVICE_TOKEN_4, DEVICE_TOKEN_3, DEVICE_TOKEN_2);
+    }
+
+    @Test
+    public void pageDeviceTokensForHugeAliasList() throws ResultStreamException {
+        List<String> aliases = new ArrayList<String>();
+        for (int i = 0; i < 2500; i++) {
+            aliases.add("user-" + i + "@example.com");
+        }
+        aliases.add(10, "foo@bar.org");
+
+        ResultsStream<String> firstPage = installationDao.findAllDeviceTokenForVariantIDByCriteria(androidVariantID, null, aliases, null, 3, null, false).executeQuery();
+        List<String> tokens = new ArrayList<String>();
+        while (firstPage.next()) {
+            tokens.add(firstPage.get());
+        }
+        assertThat(tokens).containsExactly(DEVICE_TOKEN_1, DEVICE_TOKEN_4, DEVICE_TOKEN_3);
+
+        ResultsStream<String> secondPage = installationDao.findAllDeviceTokenForVariantIDByCriteria(androidVariantID, null, aliases, null, 3, DEVICE_TOKEN_3, false).executeQuery();
+        assertThat(secondPage.next()).isTrue();
+        assertThat(secondPage.get()).isEqualTo(DEVICE_TOKEN_2);
+        assertThat(secondPage.next()).isFalse();
+    }
+
     @Test
     public void findNoDeviceTokensForAliasOfVariant() {
         String[] alias = { "bar@foo.org" };
@@ -201,6 +235,29 @@ public class InstallationDaoTest {
         assertThat(tokens).hasSize(2);
     }
 
+    @Test
+    public void findNoDeviceTokensForUnknownCategory() {
+        List<String> tokens = findAllDeviceTokenForVariantIDByCriteria(androidVariantID, Arrays.asList("not-a-category"), null, null);
+        assertThat(tokens).isEmpty();
+    }
+
+    @Test
+    public void findDeviceTokensForCategoriesWithoutSelfJoin() {
+        SqlStatementRecorder.clear();
+        String[] cats = { "soccer", "news", "weather" };
+        findAllDeviceTokenForVariantIDByCriteria(androidVariantID, Arrays.asList(cats), null, null);
+
+        String tokenQuery = null;
+        for (String sql : SqlStatementRecorder.getStatements()) {
+            if (sql.toLowerCase().contains("installation_category")) {
+                tokenQuery = sql.toLowerCase();
+            }
+        }
+        // the category criteria is correlated on the outer installation, not on a second scan of the table
+        assertThat(tokenQuery).isNotNull();
+        assertThat(tokenQuery.split("installation installation").length - 1).isEqualTo(1);
+    }
+
     @Test
     public void findAndDeleteOneInstallation() {
         final Set<String> tokenz = new HashSet<String>();
@@ -581,6 +638,22 @@ public class InstallationDaoTest {
         assertThat(pageResult.getAggregate().getCount()).isEqualTo(6);
     }
 
+    @Test
+    public void shouldStreamInstallationsByVariantForDeveloper() throws ResultStreamException {
+        //when
+        final ResultsStream<Installation> stream = installationDao.streamInstallationsByVariantForDeveloper(androidVariantID, "me").fetchSize(2).executeQuery();
+
+        //then
+        final Set<String> ids = new HashSet<String>();
+        while (stream.next()) {
+            ids.add(stream.get().getId());
+        }
+        assertThat(ids).hasSize(6);
+
+        // other developer
+        assertThat(installationDao.streamInstallationsByVariantForDeveloper(androidVariantID, "someone else").executeQuery().next()).isFalse();
+    }
+
     @Test
     public void shouldSelectInstallationsByDeviceTokenSearch() {
         //when
@@ -19,6 +19,7 @@ package org.jboss.aerogear.unifiedpush.jpa;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
 
+import java.util.Date;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -28,6 +29,7 @@ import javax.persistence.PersistenceException;
 import net.jakubholy.dbunitexpress.EmbeddedDbTesterRule;
 
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.PushMessageState;
 import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
@@ -123,6 +125,71 @@ public class PushMessageInformationDaoTest {
         assertThat(pushMessageInformation.getSubmitDate()).isNotNull();
     }
 
+    @Test
+    public void findByIdempotencyKey() {
+        PushMessageInformation pushMessageInformation = pushMessageInformationDao.find(pushMessageInformationID);
+        pushMessageInformation.setIdempotencyKey("retry-key");
+        pushMessageInformationDao.update(pushMessageInformation);
+
+        flushAndClear();
+
+        assertThat(pushMessageInformationDao.findIdByIdempotencyKey("231231231", "retry-key")).isEqualTo(pushMessageInformationID);
+        assertThat(pushMessageInformationDao.findIdByIdempotencyKey("231231232", "retry-key")).isNull();
+        assertThat(pushMessageInformationDao.findIdByIdempotencyKey("231231231", "other-key")).isNull();
+    }
+
+    @Test
+    public void findLatestByCollapseKey() {
+        PushMessageInformation older = pushMessageInformationDao.find(pushMessageInformationID);
+        older.setCollapseKey("mike/score");
+        older.setSubmitDate(new Date(1000L));
+        pushMessageInformationDao.update(older);
+
+        PushMessageInformation latest = new PushMessageInformation();
+        latest.setPushApplicationId("231231231");
+        latest.setCollapseKey("mike/score");
+        latest.setSubmitDate(new Date(2000L));
+        pushMessageInformationDao.create(latest);
+
+        flushAndClear();
+
+        assertThat(pushMessageInformationDao.findLatestIdByCollapseKey("231231231", "mike/score")).isEqualTo(latest.getId());
+        assertThat(pushMessageInformationDao.findLatestIdByCollapseKey("231231232", "mike/score")).isNull();
+        assertThat(pushMessageInformationDao.findLatestIdByCollapseKey("231231231", "mike/news")).isNull();
+    }
+
+    @Test
+    public void updateState() {
+        assertThat(pushMessageInformationDao.findIdsInState(PushMessageState.CANCELLED)).isEmpty();
+
+        assertThat(pushMessageInformationDao.updateState(pushMessageInformationID, PushMessageState.CANCELLED)).isTrue();
+        assertThat(pushMessageInformationDao.updateState("unknown", PushMessageState.CANCELLED)).isFalse();
+
+        flushAndClear();
+
+        assertThat(pushMessageInformationDao.find(pushMessageInformationID).getState()).isEqualTo(PushMessageState.CANCELLED);
+        assertThat(pushMessageInformationDao.findIdsInState(PushMessageState.CANCELLED)).containsOnly(pushMessageInformationID);
+    }
+
+    @Test
+    public void addAppOpens() {
+        final Date firstOpen = new Date(1000000L);
+        final Date lastOpen = new Date(2000000L);
+
+        pushMessageInformationDao.addAppOpens(pushMessageInformationID, 3, lastOpen, lastOpen);
+        pushMessageInformationDao.addAppOpens(pushMessageInformationID, 2, firstOpen, firstOpen);
+        variantMetricInformationDao.addVariantOpens("213", pushMessageInformationID, 3);
+        variantMetricInformationDao.addVariantOpens("213", pushMessageInformationID, 2);
+
+        flushAndClear();
+
+        final PushMessageInformation pushMessageInformation = pushMessageInformationDao.find(pushMessageInformationID);
+        assertThat(pushMessageInformation.getAppOpenCounter()).isEqualTo(5);
+        assertThat(pushMessageInformation.getFirstOpenDate().getTime()).isEqualTo(firstOpen.getTime());
+        assertThat(pushMessageInformation.getLastOpenDate().getTime()).isEqualTo(lastOpen.getTime());
+        assertThat(variantMetricInformationDao.findVariantMetricInformationByVariantID("213", pushMessageInformationID).getVariantOpenCounter()).isEqualTo(5);
+    }
+
     @Test
     public void addVariantInfoToPushMessageInformation() {
         PushMessageInformation pushMessageInformation = pushMessageInformationDao.find("2");
@@ -0,0 +1,45 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.utils;
+
+import org.hibernate.EmptyInterceptor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the SQL statements prepared by Hibernate, so that tests can check the shape of the generated queries.
+ * Registered by the test persistence unit.
+ */
+public class SqlStatementRecorder extends EmptyInterceptor {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<String>();
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        STATEMENTS.add(sql);
+        return super.onPrepareStatement(sql);
+    }
+
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+
+    public static List<String> getStatements() {
+        return STATEMENTS;
+    }
+}
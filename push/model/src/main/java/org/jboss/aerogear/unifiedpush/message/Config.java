@@ -17,8 +17,13 @@
 package org.jboss.aerogear.unifiedpush.message;
 
 import java.io.Serializable;
+import java.util.Date;
+
+import javax.validation.constraints.Future;
+import javax.validation.constraints.Min;
 
 import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
 
 /**
  * Configuration options of the UnifiedPush Message.
@@ -30,6 +35,16 @@ public class Config implements Serializable {
     @JsonProperty("ttl")
     private int timeToLive = -1;
 
+    @JsonProperty("send-time")
+    @JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+    @Future(message = "Send time must be in the future")
+    private Date sendTime;
+
+    @JsonProperty("spread-window")
+    @JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+    @Min(value = 1, message = "Spread window must be at least one second")
+    private Integer spreadWindow;
+
     /**
      * Returns the value of the 'ttl' key from the submitted payload.
      * This key is recognized for the Android and iOS Push Notification Service.
@@ -44,10 +59,39 @@ public class Config implements Serializable {
         this.timeToLive = timeToLive;
     }
 
+    /**
+     * Returns the value of the 'send-time' key from the submitted payload: the time when the delivery of the push message starts.
+     *
+     * If the 'send-time' key has not been specified on the submitted payload, this method will return null and the message is delivered immediately.
+     */
+    public Date getSendTime() {
+        return sendTime;
+    }
+
+    public void setSendTime(Date sendTime) {
+        this.sendTime = sendTime;
+    }
+
+    /**
+     * Returns the value of the 'spread-window' key from the submitted payload: the number of seconds, starting at the send time,
+     * that the delivery of the device token batches is spread across.
+     *
+     * If the 'spread-window' key has not been specified on the submitted payload, this method will return null and all batches are delivered as fast as possible.
+     */
+    public Integer getSpreadWindow() {
+        return spreadWindow;
+    }
+
+    public void setSpreadWindow(Integer spreadWindow) {
+        this.spreadWindow = spreadWindow;
+    }
+
     @Override
     public String toString() {
         return "Config{" +
                 "timeToLive=" + timeToLive +
+                ", sendTime=" + sendTime +
+                ", spreadWindow=" + spreadWindow +
                 '}';
     }
 }
@@ -25,6 +25,8 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 
+import javax.validation.Valid;
+
 /**
  * Contains the data of the JSON payload that has been sent to the
  * RESTful Sender endpoint.
@@ -71,7 +73,9 @@ import java.util.LinkedHashMap;
  *         "variants": [ "someVariantIDs" ]
  *     },
  *    "config": {
- *         "ttl": 3600
+ *         "ttl": 3600,
+ *         "send-time": "2016-03-10T09:00:00.000+0000",
+ *         "spread-window": 1800
  *     }
  * }
  * </pre>
@@ -85,6 +89,7 @@ public class UnifiedPushMessage implements Serializable {
     private Message message = new Message();
 
     private Criteria criteria = new Criteria();
+    @Valid
     private Config config = new Config();
 
     /**
@@ -102,6 +102,24 @@ public class UnifiedPushMessageTest {
         assertEquals(Priority.HIGH, message.getPriority());
     }
     
+    @Test
+    public void scheduledMessage() throws IOException {
+        final Map<String, Object> container = new LinkedHashMap<String, Object>();
+        final Map<String, Object> messageObject = new LinkedHashMap<String, Object>();
+        messageObject.put("alert", "Howdy");
+        container.put("message", messageObject);
+
+        final Map<String, Object> config = new LinkedHashMap<String, Object>();
+        config.put("send-time", "2016-03-10T09:00:00.000+0000");
+        config.put("spread-window", 1800);
+        container.put("config", config);
+
+        final UnifiedPushMessage unifiedPushMessage = parsePushMessage(container);
+
+        assertEquals(1457600400000L, unifiedPushMessage.getConfig().getSendTime().getTime());
+        assertEquals(Integer.valueOf(1800), unifiedPushMessage.getConfig().getSpreadWindow());
+    }
+
     @Test
     public void createBroadcastMessage() throws IOException {
 
@@ -129,6 +147,10 @@ public class UnifiedPushMessageTest {
         // no TTL:
         assertEquals(-1, unifiedPushMessage.getConfig().getTimeToLive());
 
+        // not scheduled:
+        assertNull(unifiedPushMessage.getConfig().getSendTime());
+        assertNull(unifiedPushMessage.getConfig().getSpreadWindow());
+
         // multiple access?
         assertEquals("Howdy", unifiedPushMessage.getMessage().getAlert());
         assertEquals("someValue", unifiedPushMessage.getMessage().getUserData().get("someKey"));
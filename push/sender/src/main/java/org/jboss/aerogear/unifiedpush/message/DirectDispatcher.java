@@ -0,0 +1,231 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
+import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
+import org.jboss.aerogear.unifiedpush.message.event.DirectDispatchEvent;
+import org.jboss.aerogear.unifiedpush.message.event.PushMessageCompletedEvent;
+import org.jboss.aerogear.unifiedpush.message.event.VariantCompletedEvent;
+import org.jboss.aerogear.unifiedpush.message.sender.NotificationSenderCallback;
+import org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender;
+import org.jboss.aerogear.unifiedpush.message.sender.SenderTypeLiteral;
+import org.jboss.aerogear.unifiedpush.message.sender.SinkPushNotificationSender;
+import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Fast path for push messages that target a handful of devices (e.g. a message sent to one alias).
+ *
+ * Instead of passing the message through the {@link TokenLoader} and {@link NotificationDispatcher} queues,
+ * the tokens are resolved by the (indexed) alias lookup in the transaction of the {@link NotificationRouter}, and handed to the
+ * {@link PushNotificationSender} directly once that transaction committed (see {@link DirectDispatchEvent}), so that no device is notified
+ * of a request that was rolled back. The metrics are recorded in a new transaction, so that the {@link MetricsCollector} does not need to be involved.
+ *
+ * The maximum number of tokens that is delivered directly can be configured by the
+ * {@link #AEROGEAR_DIRECT_SEND_THRESHOLD} system property; setting it to 0 disables the fast path.
+ *
+ * In the sink mode (see {@link SenderConfiguration#sink()}), the tokens are handed to a {@link SinkPushNotificationSender} instead.
+ */
+@Stateless
+public class DirectDispatcher {
+
+    // system property name used to configure the maximum number of tokens which are sent without queueing
+    public static final String AEROGEAR_DIRECT_SEND_THRESHOLD = "aerogear.direct.send.threshold";
+
+    private static final int DEFAULT_DIRECT_SEND_THRESHOLD = 10;
+
+    private static final int threshold = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_DIRECT_SEND_THRESHOLD, DEFAULT_DIRECT_SEND_THRESHOLD);
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(DirectDispatcher.class);
+
+    @Inject
+    private ClientInstallationService clientInstallationService;
+
+    @Inject
+    private PushMessageMetricsService metricsService;
+
+    @Inject
+    @Any
+    private Instance<PushNotificationSender> senders;
+
+    @Inject
+    @Any
+    private Instance<SenderConfiguration> senderConfiguration;
+
+    @Inject
+    private Event<VariantCompletedEvent> variantCompleted;
+
+    @Inject
+    private Event<PushMessageCompletedEvent> pushMessageCompleted;
+
+    /**
+     * The fast path is only considered for messages addressing aliases, since only those can be resolved
+     * to a small set of tokens cheaply. Broadcasts and category (GCM topic) requests always go through the queues,
+     * as well as messages with a send time in the future, which are scheduled by the queues.
+     *
+     * @param message the message to be sent
+     * @return true if the message may be delivered directly, false otherwise
+     */
+    public boolean isApplicable(InternalUnifiedPushMessage message) {
+        final List<String> aliases = message.getCriteria().getAliases();
+        final Date sendTime = message.getConfig().getSendTime();
+        return threshold > 0 && aliases != null && !aliases.isEmpty() && (sendTime == null || sendTime.getTime() <= System.currentTimeMillis());
+    }
+
+    /**
+     * Loads the device tokens matching the criteria of the given message for all the given variants, up to the configured threshold.
+     *
+     * @param variants the variants that the message is addressed to
+     * @param message the message to be sent
+     * @return tokens per variant, or null when the message addresses more devices than the threshold allows
+     */
+    public Map<Variant, Set<String>> loadTokens(Collection<Variant> variants, InternalUnifiedPushMessage message) {
+        final Criteria criteria = message.getCriteria();
+        final Map<Variant, Set<String>> tokensPerVariant = new LinkedHashMap<Variant, Set<String>>();
+        int tokensLoaded = 0;
+
+        for (Variant variant : variants) {
+            final Set<String> tokens = new TreeSet<String>();
+            try {
+                // load one token more than allowed, so that we can detect the threshold was exceeded
+                final ResultsStream<String> tokenStream = clientInstallationService.findAllDeviceTokenForVariantIDByCriteria(
+                        variant.getVariantID(), criteria.getCategories(), criteria.getAliases(), criteria.getDeviceTypes(), threshold - tokensLoaded + 1, null)
+                        .executeQuery();
+                while (tokenStream.next()) {
+                    tokens.add(tokenStream.get());
+                }
+            } catch (ResultStreamException e) {
+                logger.severe("Failed to load tokens for direct delivery, falling back to queued delivery", e);
+                return null;
+            }
+
+            tokensLoaded += tokens.size();
+            if (tokensLoaded > threshold) {
+                logger.fine(String.format("Message addresses more than %d devices, it will be queued", threshold));
+                return null;
+            }
+            tokensPerVariant.put(variant, tokens);
+        }
+        return tokensPerVariant;
+    }
+
+    /**
+     * Submits the message to the push networks for the tokens loaded by {@link #loadTokens(Collection, InternalUnifiedPushMessage)},
+     * once the push message request was recorded, and records the outcome in its {@link PushMessageInformation}.
+     *
+     * @param event the push message request, fired by {@link NotificationRouter}
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void dispatch(@Observes(during = TransactionPhase.AFTER_SUCCESS) DirectDispatchEvent event) {
+        final PushMessageInformation pushMessageInformation = event.getPushMessageInformation();
+        final InternalUnifiedPushMessage message = event.getMessage();
+        final Map<Variant, Set<String>> tokensPerVariant = event.getTokensPerVariant();
+        long totalReceivers = 0;
+
+        for (Entry<Variant, Set<String>> entry : tokensPerVariant.entrySet()) {
+            final Variant variant = entry.getKey();
+            final Set<String> tokens = entry.getValue();
+
+            final VariantMetricInformation variantMetricInformation = new VariantMetricInformation();
+            variantMetricInformation.setVariantID(variant.getVariantID());
+            variantMetricInformation.setReceivers((long) tokens.size());
+            variantMetricInformation.setServedBatches(1);
+            variantMetricInformation.setTotalBatches(1);
+
+            if (tokens.isEmpty()) {
+                logger.warning("Check your push query: Not a single token was loaded from the DB!");
+                variantMetricInformation.setDeliveryStatus(Boolean.TRUE);
+            } else {
+                logger.info(String.format("Direct delivery of push message to %d devices of the %s variant (%s)", tokens.size(), variant.getType().getTypeName(), variant.getVariantID()));
+                senderFor(variant.getType())
+                        .sendPushMessage(variant, tokens, message, pushMessageInformation.getId(), new DirectSenderCallback(variantMetricInformation));
+            }
+
+            pushMessageInformation.addVariantInformations(variantMetricInformation);
+            totalReceivers += tokens.size();
+        }
+
+        pushMessageInformation.setTotalReceivers(totalReceivers);
+        pushMessageInformation.setServedVariants(tokensPerVariant.size());
+        metricsService.updatePushMessageInformation(pushMessageInformation);
+
+        for (Variant variant : tokensPerVariant.keySet()) {
+            variantCompleted.fire(new VariantCompletedEvent(pushMessageInformation.getId(), variant.getVariantID()));
+        }
+        pushMessageCompleted.fire(new PushMessageCompletedEvent(pushMessageInformation.getId()));
+    }
+
+    private PushNotificationSender senderFor(VariantType variantType) {
+        final SenderConfiguration configuration = senderConfiguration.select(new SenderTypeLiteral(variantType)).get();
+        if (configuration.sink()) {
+            return new SinkPushNotificationSender(configuration);
+        }
+        return senders.select(new SenderTypeLiteral(variantType)).get();
+    }
+
+    /**
+     * Records the delivery status directly in the {@link VariantMetricInformation}, since there is no metrics queue involved
+     */
+    private class DirectSenderCallback implements NotificationSenderCallback {
+        private final VariantMetricInformation variantMetricInformation;
+
+        DirectSenderCallback(VariantMetricInformation variantMetricInformation) {
+            this.variantMetricInformation = variantMetricInformation;
+        }
+
+        @Override
+        public void onSuccess() {
+            logger.fine(String.format("Sent message directly to '%d' devices", variantMetricInformation.getReceivers()));
+            variantMetricInformation.setDeliveryStatus(Boolean.TRUE);
+        }
+
+        @Override
+        public void onError(String reason) {
+            logger.warning(String.format("Error on direct delivery for variant %s", variantMetricInformation.getVariantID()));
+            variantMetricInformation.setDeliveryStatus(Boolean.FALSE);
+            variantMetricInformation.setReason(reason);
+        }
+    }
+}
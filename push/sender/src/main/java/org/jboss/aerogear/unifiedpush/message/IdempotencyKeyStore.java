@@ -0,0 +1,119 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the push message requests that were submitted with an idempotency key, so that retries of a request
+ * (e.g. after a timeout) are not dispatched again.
+ *
+ * Recently used keys are kept in memory, bounded by the {@link #AEROGEAR_IDEMPOTENCY_CACHE_SIZE} system property and
+ * expiring after {@link #AEROGEAR_IDEMPOTENCY_CACHE_TTL} seconds. Keys that are not in memory (e.g. submitted on another node)
+ * are looked up in the database, where the push message information stores the key.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class IdempotencyKeyStore {
+
+    // system property names used to configure the number of keys kept in memory and how long they are kept (in seconds)
+    public static final String AEROGEAR_IDEMPOTENCY_CACHE_SIZE = "aerogear.idempotency.cache.size";
+    public static final String AEROGEAR_IDEMPOTENCY_CACHE_TTL = "aerogear.idempotency.cache.ttl";
+
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final int DEFAULT_CACHE_TTL = 3600;
+
+    private final int maxKeys = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_IDEMPOTENCY_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+    private final long ttl = TimeUnit.SECONDS.toMillis(ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_IDEMPOTENCY_CACHE_TTL, DEFAULT_CACHE_TTL));
+
+    private final Map<String, Entry> keys = new LinkedHashMap<String, Entry>() {
+        private static final long serialVersionUID = 2873652193580373472L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxKeys;
+        }
+    };
+
+    @Inject
+    private PushMessageMetricsService metricsService;
+
+    /**
+     * Looks up the push message request that was submitted with the given key.
+     *
+     * @param pushApplicationID the push application the request was submitted for
+     * @param idempotencyKey the key supplied by the sender
+     * @return the ID of the push message information of the original request, or null if there was none
+     */
+    public String find(String pushApplicationID, String idempotencyKey) {
+        final String key = key(pushApplicationID, idempotencyKey);
+        final long now = System.currentTimeMillis();
+        synchronized (keys) {
+            final Entry entry = keys.get(key);
+            if (entry != null) {
+                if (entry.expires > now) {
+                    return entry.pushMessageInformationID;
+                }
+                keys.remove(key);
+            }
+        }
+
+        final String pushMessageInformationID = metricsService.findIdByIdempotencyKey(pushApplicationID, idempotencyKey);
+        if (pushMessageInformationID != null) {
+            put(pushApplicationID, idempotencyKey, pushMessageInformationID);
+        }
+        return pushMessageInformationID;
+    }
+
+    /**
+     * Remembers the push message request that was submitted with the given key, once it is committed.
+     *
+     * @param pushApplicationID the push application the request was submitted for
+     * @param idempotencyKey the key supplied by the sender
+     * @param pushMessageInformationID the ID of the push message information of the request
+     */
+    public void put(String pushApplicationID, String idempotencyKey, String pushMessageInformationID) {
+        final Entry entry = new Entry(pushMessageInformationID, System.currentTimeMillis() + ttl);
+        synchronized (keys) {
+            keys.put(key(pushApplicationID, idempotencyKey), entry);
+        }
+    }
+
+    private static String key(String pushApplicationID, String idempotencyKey) {
+        return pushApplicationID + '/' + idempotencyKey;
+    }
+
+    private static class Entry {
+        private final String pushMessageInformationID;
+        private final long expires;
+
+        Entry(String pushMessageInformationID, long expires) {
+            this.pushMessageInformationID = pushMessageInformationID;
+            this.expires = expires;
+        }
+    }
+}
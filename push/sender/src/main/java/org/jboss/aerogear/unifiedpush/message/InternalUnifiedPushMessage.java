@@ -29,6 +29,7 @@ public class InternalUnifiedPushMessage extends UnifiedPushMessage {
 
     private String ipAddress;
     private String clientIdentifier;
+    private String idempotencyKey;
 
     /**
      * The IP address from the agent that did issue the push message request.
@@ -55,4 +56,17 @@ public class InternalUnifiedPushMessage extends UnifiedPushMessage {
     public void setClientIdentifier(String clientIdentifier) {
         this.clientIdentifier = clientIdentifier;
     }
+
+    /**
+     * The key supplied by the sender to identify retries of the same push message request.
+     *
+     * @return the idempotency key, or null if none was supplied
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
 }
@@ -64,6 +64,9 @@ public class MetricsCollector {
     @Inject
     private JmsClient jmsClient;
 
+    @Inject
+    private PipelineTimings pipelineTimings;
+
     /**
      * Receives variant metrics and update the push message information in a database.
      *
@@ -77,6 +80,7 @@ public class MetricsCollector {
      * @throws JMSException when JMS provider fails to dequeue messages that {@link MetricsCollector} pulls
      */
     public void collectMetrics(@Observes @Dequeue TriggerMetricCollectionEvent event) throws JMSException {
+        final long start = System.currentTimeMillis();
         final String pushMessageInformationId = event.getPushMessageInformationId();
         final PushMessageInformation pushMessageInformation = metricsService.getPushMessageInformation(pushMessageInformationId);
         metricsService.lock(pushMessageInformation);
@@ -98,6 +102,7 @@ public class MetricsCollector {
         }
 
         metricsService.updatePushMessageInformation(pushMessageInformation);
+        pipelineTimings.record(PipelineTimings.Stage.METRICS_COLLECTION, System.currentTimeMillis() - start);
     }
 
     private void receiveVariantMetricsRemainingInQueues(PushMessageInformation pushMessageInformation) throws JMSException {
@@ -154,6 +159,7 @@ public class MetricsCollector {
 
     private void updateExistingMetric(VariantMetricInformation existing, VariantMetricInformation update) {
         existing.setReceivers(existing.getReceivers() + update.getReceivers());
+        existing.setExpiredReceivers(existing.getExpiredReceivers() + update.getExpiredReceivers());
         existing.setServedBatches(existing.getServedBatches() + update.getServedBatches());
         existing.setTotalBatches(existing.getTotalBatches() + update.getTotalBatches());
         if (existing.getDeliveryStatus() == null) {
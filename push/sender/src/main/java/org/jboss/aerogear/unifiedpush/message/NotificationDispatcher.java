@@ -17,7 +17,10 @@
 package org.jboss.aerogear.unifiedpush.message;
 
 import java.util.Collection;
+import java.util.Date;
 
+import javax.annotation.Resource;
+import javax.ejb.EJBContext;
 import javax.ejb.Stateless;
 import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
@@ -28,14 +31,19 @@ import javax.inject.Inject;
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
 import org.jboss.aerogear.unifiedpush.message.event.TriggerVariantMetricCollectionEvent;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
 import org.jboss.aerogear.unifiedpush.message.jms.Dequeue;
 import org.jboss.aerogear.unifiedpush.message.jms.DispatchToQueue;
 import org.jboss.aerogear.unifiedpush.message.sender.NotificationSenderCallback;
 import org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender;
 import org.jboss.aerogear.unifiedpush.message.sender.SenderTypeLiteral;
+import org.jboss.aerogear.unifiedpush.message.sender.SinkPushNotificationSender;
 import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageStateRegistry;
 import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
 
 /**
@@ -52,6 +60,16 @@ public class NotificationDispatcher {
     @Any
     private Instance<PushNotificationSender> senders;
 
+    @Inject
+    @Any
+    private Instance<SenderConfiguration> senderConfiguration;
+
+    @Inject
+    private PushMessageStateRegistry stateRegistry;
+
+    @Inject
+    private PipelineTimings pipelineTimings;
+
     @Inject
     @DispatchToQueue
     private Event<VariantMetricInformation> dispatchVariantMetricEvent;
@@ -60,12 +78,21 @@ public class NotificationDispatcher {
     @DispatchToQueue
     private Event<TriggerVariantMetricCollectionEvent> triggerVariantMetricCollection;
 
+    @Resource
+    private EJBContext context;
+
     /**
      * Receives a {@link UnifiedPushMessage} and list of device tokens that the message should be sent to, selects appropriate sender implementation that
      * the push notifications are submitted to.
      *
      * Once the sending process finishes, generates message for {@link MetricsCollector} with information how much devices was the notification submitted to.
      *
+     * Batches of a paused push message are rolled back, so that they are redelivered until the push message is resumed.
+     * Batches of a cancelled push message are not submitted; they are only counted as served, so that the metrics collection completes.
+     * The same applies to batches whose time-to-live elapsed while they were queued, their devices are recorded as expired receivers only.
+     *
+     * In the sink mode (see {@link SenderConfiguration#sink()}), the batches are submitted to a {@link SinkPushNotificationSender} instead.
+     *
      * @param msg object containing details about the payload and the related device tokens
      */
     public void sendMessagesToPushNetwork(@Observes @Dequeue MessageHolderWithTokens msg) {
@@ -73,9 +100,31 @@ public class NotificationDispatcher {
         final UnifiedPushMessage unifiedPushMessage = msg.getUnifiedPushMessage();
         final Collection<String> deviceTokens = msg.getDeviceTokens();
 
+        if (stateRegistry.isPaused(msg.getPushMessageInformation().getId())) {
+            logger.fine(String.format("Delivery of push message %s is paused, the batch for %s variant (%s) will be retried", msg.getPushMessageInformation().getId(), variant.getType().getTypeName(), variant.getVariantID()));
+            context.setRollbackOnly();
+            return;
+        }
+        if (stateRegistry.isCancelled(msg.getPushMessageInformation().getId())) {
+            logger.fine(String.format("Dropping batch of %d tokens for %s variant (%s), the push message was cancelled", deviceTokens.size(), variant.getType().getTypeName(), variant.getVariantID()));
+            updateStatusOfPushMessageInformation(msg.getPushMessageInformation(), variant.getVariantID(), 0, Boolean.FALSE, PushMessageStateRegistry.CANCELLED_REASON);
+            return;
+        }
+        if (msg.isExpired()) {
+            logger.fine(String.format("Dropping batch of %d tokens for %s variant (%s), the time-to-live of the push message elapsed", deviceTokens.size(), variant.getType().getTypeName(), variant.getVariantID()));
+            updateStatusOfPushMessageInformation(msg.getPushMessageInformation(), variant.getVariantID(), 0, deviceTokens.size(), Boolean.FALSE, MessageHolderWithVariants.EXPIRED_REASON);
+            return;
+        }
+
         logger.info(String.format("Received UnifiedPushMessage from JMS queue, will now trigger the Push Notification delivery for the %s variant (%s)", variant.getType().getTypeName(), variant.getVariantID()));
 
-        senders.select(new SenderTypeLiteral(variant.getType())).get()
+        final long start = System.currentTimeMillis();
+        final Date submitDate = msg.getPushMessageInformation().getSubmitDate();
+        if (submitDate != null) {
+            pipelineTimings.record(PipelineTimings.Stage.END_TO_END, start - submitDate.getTime());
+        }
+
+        senderFor(variant.getType())
                             .sendPushMessage(variant, deviceTokens, unifiedPushMessage, msg.getPushMessageInformation().getId(),
                                     new SenderServiceCallback(
                                             variant,
@@ -83,6 +132,15 @@ public class NotificationDispatcher {
                                             msg.getPushMessageInformation()
                                     )
                             );
+        pipelineTimings.record(PipelineTimings.Stage.DISPATCH, System.currentTimeMillis() - start);
+    }
+
+    private PushNotificationSender senderFor(VariantType variantType) {
+        final SenderConfiguration configuration = senderConfiguration.select(new SenderTypeLiteral(variantType)).get();
+        if (configuration.sink()) {
+            return new SinkPushNotificationSender(configuration);
+        }
+        return senders.select(new SenderTypeLiteral(variantType)).get();
     }
 
     private class SenderServiceCallback implements NotificationSenderCallback {
@@ -117,10 +175,15 @@ public class NotificationDispatcher {
     }
 
     private void updateStatusOfPushMessageInformation(final PushMessageInformation pushMessageInformation, final String variantID, final int receivers, final Boolean deliveryStatus, final String reason) {
+        this.updateStatusOfPushMessageInformation(pushMessageInformation, variantID, receivers, 0, deliveryStatus, reason);
+    }
+
+    private void updateStatusOfPushMessageInformation(final PushMessageInformation pushMessageInformation, final String variantID, final int receivers, final int expiredReceivers, final Boolean deliveryStatus, final String reason) {
         final VariantMetricInformation variantMetricInformation = new VariantMetricInformation();
         variantMetricInformation.setPushMessageInformation(pushMessageInformation);
         variantMetricInformation.setVariantID(variantID);
         variantMetricInformation.setReceivers(Long.valueOf(receivers));
+        variantMetricInformation.setExpiredReceivers(Long.valueOf(expiredReceivers));
         variantMetricInformation.setDeliveryStatus(deliveryStatus);
         variantMetricInformation.setReason(reason);
         variantMetricInformation.setServedBatches(1);
@@ -20,9 +20,11 @@ import org.jboss.aerogear.unifiedpush.api.PushApplication;
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.message.event.DirectDispatchEvent;
 import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
 import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHoldersWithVariants;
 import org.jboss.aerogear.unifiedpush.message.jms.DispatchToQueue;
 import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
 import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
@@ -36,9 +38,15 @@ import javax.inject.Inject;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Takes a request for sending {@link UnifiedPushMessage} and submits it to messaging subsystem for further processing.
@@ -50,21 +58,41 @@ import java.util.Map.Entry;
  * The transactional behavior makes sure the request for sending notification is recorded and then asynchronously processed.
  *
  * The further processing of the push message happens in {@link TokenLoader}.
+ *
+ * Messages that address only a few devices by their alias are delivered without queueing by {@link DirectDispatcher},
+ * once the transaction that recorded them committed.
+ *
+ * Several messages of one push application can be submitted at once; their metadata is inserted in one flush
+ * and all messages of a variant type are queued over a single JMS session.
+ *
+ * When the push application has a collapse window, messages to a single alias with a consolidation key are held back
+ * for the window, so that {@link TokenLoader} delivers only the latest message of the same alias and consolidation key.
  */
 @Stateless
 public class NotificationRouter {
 
+    // length of the collapse_key column
+    private static final int MAX_COLLAPSE_KEY_LENGTH = 255;
+
     private final AeroGearLogger logger = AeroGearLogger.getInstance(NotificationRouter.class);
 
     @Inject
     private Instance<GenericVariantService> genericVariantService;
     @Inject
     private PushMessageMetricsService metricsService;
+    @Inject
+    private DirectDispatcher directDispatcher;
+    @Inject
+    private Event<DirectDispatchEvent> directDispatch;
 
     @Inject
     @DispatchToQueue
     private Event<MessageHolderWithVariants> dispatchVariantMessageEvent;
 
+    @Inject
+    @DispatchToQueue
+    private Event<MessageHoldersWithVariants> dispatchVariantMessagesEvent;
+
     /**
      * Receives a request for sending a {@link UnifiedPushMessage} and queues one message per variant type, both in one transaction.
      *
@@ -72,32 +100,112 @@ public class NotificationRouter {
      *
      * @param pushApplication the push application
      * @param message the message
+     * @return the ID of the recorded push message information
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public String submit(PushApplication pushApplication, InternalUnifiedPushMessage message) {
+        final Submission submission = prepare(pushApplication, message);
+
+        final PushMessageInformation pushMessageInformation =
+                metricsService.newRequestFrom(
+                        pushApplication.getPushApplicationID(),
+                        submission.jsonMessageContent,
+                        message.getIpAddress(),
+                        message.getClientIdentifier(),
+                        submission.variants.getVariantCount()
+                        );
+        // a concurrent request with the same key violates the unique key and is rolled back
+        pushMessageInformation.setIdempotencyKey(message.getIdempotencyKey());
+        pushMessageInformation.setCollapseKey(submission.collapseKey);
+        metricsService.storeNewRequests(Collections.singletonList(pushMessageInformation));
+
+        if (submission.directTokens != null) {
+            directDispatch.fire(new DirectDispatchEvent(pushMessageInformation, message, submission.directTokens));
+            return pushMessageInformation.getId();
+        }
+
+        // we split the variants per type since each type may have its own configuration (e.g. batch size)
+        for (final Entry<VariantType, List<Variant>> entry : submission.variants.entrySet()) {
+            logger.info(String.format("Internal dispatching of push message for one %s variant", entry.getKey().getTypeName()));
+            dispatchVariantMessageEvent.fire(createHolder(pushApplication, submission, pushMessageInformation, entry.getKey(), entry.getValue()));
+        }
+        return pushMessageInformation.getId();
+    }
+
+    /**
+     * Receives a request for sending several {@link UnifiedPushMessage}s of the same push application, all in one transaction.
+     *
+     * The metadata of all the messages is inserted at once, and the messages are queued with one JMS send per variant type.
+     *
+     * @param pushApplication the push application
+     * @param messages the messages
+     * @return the IDs of the recorded push message information, in the order of the given messages
      */
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
-    public void submit(PushApplication pushApplication, InternalUnifiedPushMessage message) {
+    public List<String> submit(PushApplication pushApplication, List<InternalUnifiedPushMessage> messages) {
+        logger.fine(String.format("Processing batch send request with %d messages", messages.size()));
+
+        final List<Submission> submissions = new ArrayList<Submission>(messages.size());
+        final List<PushMessageInformation> pushMessageInformations = new ArrayList<PushMessageInformation>(messages.size());
+        for (InternalUnifiedPushMessage message : messages) {
+            final Submission submission = prepare(pushApplication, message);
+            submission.pushMessageInformation = metricsService.newRequestFrom(
+                    pushApplication.getPushApplicationID(),
+                    submission.jsonMessageContent,
+                    message.getIpAddress(),
+                    message.getClientIdentifier(),
+                    submission.variants.getVariantCount()
+                    );
+            submission.pushMessageInformation.setCollapseKey(submission.collapseKey);
+            submissions.add(submission);
+            pushMessageInformations.add(submission.pushMessageInformation);
+        }
+        metricsService.storeNewRequests(pushMessageInformations);
+
+        final Map<VariantType, MessageHoldersWithVariants> holdersPerType = new EnumMap<VariantType, MessageHoldersWithVariants>(VariantType.class);
+        final List<String> pushMessageInformationIDs = new ArrayList<String>(submissions.size());
+        for (Submission submission : submissions) {
+            pushMessageInformationIDs.add(submission.pushMessageInformation.getId());
+
+            if (submission.directTokens != null) {
+                directDispatch.fire(new DirectDispatchEvent(submission.pushMessageInformation, submission.message, submission.directTokens));
+                continue;
+            }
+            for (final Entry<VariantType, List<Variant>> entry : submission.variants.entrySet()) {
+                MessageHoldersWithVariants holders = holdersPerType.get(entry.getKey());
+                if (holders == null) {
+                    holders = new MessageHoldersWithVariants(entry.getKey());
+                    holdersPerType.put(entry.getKey(), holders);
+                }
+                holders.add(createHolder(pushApplication, submission, submission.pushMessageInformation, entry.getKey(), entry.getValue()));
+            }
+        }
+
+        for (MessageHoldersWithVariants holders : holdersPerType.values()) {
+            logger.info(String.format("Internal dispatching of %d push messages for %s variants", holders.getHolders().size(), holders.getVariantType().getTypeName()));
+            dispatchVariantMessagesEvent.fire(holders);
+        }
+        return pushMessageInformationIDs;
+    }
+
+    /**
+     * Resolves the variants and the stored JSON content of the given message, and loads its tokens when it can be delivered directly
+     */
+    private Submission prepare(PushApplication pushApplication, InternalUnifiedPushMessage message) {
         logger.fine("Processing send request with '" + message.getMessage().toString() + "' payload");
 
-        // collections for all the different variants:
-        final VariantMap variants = new VariantMap();
+        final Submission submission = new Submission(message);
 
         final List<String> variantIDs = message.getCriteria().getVariants();
 
         // if the criteria payload did specify the "variants" field,
         // we look up each of those mentioned variants, by their "variantID":
         if (variantIDs != null) {
-
-            for (String variantID : variantIDs) {
-                Variant variant = genericVariantService.get().findByVariantID(variantID);
-
-                // does the variant exist ?
-                if (variant != null) {
-                    variants.add(variant);
-                }
-            }
+            submission.variants.addAll(findVariantsByIDs(pushApplication, variantIDs));
         } else {
             // No specific variants have been requested,
             // we get all the variants, from the given PushApplicationEntity:
-            variants.addAll(pushApplication.getVariants());
+            submission.variants.addAll(pushApplication.getVariants());
         }
 
         // TODO: Not sure the transformation should be done here...
@@ -106,20 +214,84 @@ public class NotificationRouter {
         if (jsonMessageContent != null && jsonMessageContent.length() >= 4500) {
             jsonMessageContent = message.toMinimizedJsonString();
         }
+        submission.jsonMessageContent = jsonMessageContent;
 
-        final PushMessageInformation pushMessageInformation =
-                metricsService.storeNewRequestFrom(
-                        pushApplication.getPushApplicationID(),
-                        jsonMessageContent,
-                        message.getIpAddress(),
-                        message.getClientIdentifier(),
-                        variants.getVariantCount()
-                        );
+        submission.collapseKey = collapseKeyOf(pushApplication, message);
 
-        // we split the variants per type since each type may have its own configuration (e.g. batch size)
-        for (final Entry<VariantType, List<Variant>> entry : variants.entrySet()) {
-            logger.info(String.format("Internal dispatching of push message for one %s variant", entry.getKey().getTypeName()));
-            dispatchVariantMessageEvent.fire(new MessageHolderWithVariants(pushMessageInformation, message, entry.getKey(), entry.getValue()));
+        // small alias-targeted messages are delivered right away, skipping the queues, unless they may be collapsed
+        if (submission.collapseKey == null && directDispatcher.isApplicable(message)) {
+            submission.directTokens = directDispatcher.loadTokens(submission.variants.getAllVariants(), message);
+        }
+        return submission;
+    }
+
+    /**
+     * Only messages to a single alias, with a consolidation key and without a send time are collapsed
+     *
+     * @return the collapse key of the message, or null if the message is not collapsible
+     */
+    private String collapseKeyOf(PushApplication pushApplication, InternalUnifiedPushMessage message) {
+        final Integer collapseWindow = pushApplication.getCollapseWindow();
+        final List<String> aliases = message.getCriteria().getAliases();
+        final String consolidationKey = message.getMessage().getConsolidationKey();
+        if (collapseWindow == null || collapseWindow <= 0 || aliases == null || aliases.size() != 1 || consolidationKey == null
+                || message.getConfig().getSendTime() != null) {
+            return null;
+        }
+        final String collapseKey = aliases.get(0) + '/' + consolidationKey;
+        return collapseKey.length() <= MAX_COLLAPSE_KEY_LENGTH ? collapseKey : null;
+    }
+
+    /**
+     * Collapsible messages are queued with a delay of the collapse window of the push application
+     */
+    private MessageHolderWithVariants createHolder(PushApplication pushApplication, Submission submission, PushMessageInformation pushMessageInformation, VariantType variantType, List<Variant> variants) {
+        if (submission.collapseKey == null) {
+            return new MessageHolderWithVariants(pushMessageInformation, submission.message, variantType, variants);
+        }
+        final long deliveryTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(pushApplication.getCollapseWindow());
+        return new MessageHolderWithVariants(pushMessageInformation, submission.message, variantType, variants, MessageHolderWithVariants.INITIAL_SERIAL_ID, null,
+                MessageHolderWithVariants.expiryTimeOf(submission.message), 0, deliveryTime);
+    }
+
+    /**
+     * Resolves the requested variants from the variants of the given application, which are already loaded;
+     * the remaining ones (if any) are looked up with a single query.
+     */
+    private Collection<Variant> findVariantsByIDs(PushApplication pushApplication, List<String> variantIDs) {
+        final Map<String, Variant> found = new LinkedHashMap<String, Variant>();
+        for (Variant variant : pushApplication.getVariants()) {
+            found.put(variant.getVariantID(), variant);
+        }
+        found.keySet().retainAll(variantIDs);
+
+        final List<String> missingVariantIDs = new ArrayList<String>();
+        for (String variantID : new LinkedHashSet<String>(variantIDs)) {
+            if (!found.containsKey(variantID)) {
+                missingVariantIDs.add(variantID);
+            }
+        }
+        if (!missingVariantIDs.isEmpty()) {
+            for (Variant variant : genericVariantService.get().findAllVariantsByIDs(missingVariantIDs)) {
+                found.put(variant.getVariantID(), variant);
+            }
+        }
+        return found.values();
+    }
+
+    /**
+     * A message being submitted, with the variants it addresses
+     */
+    private static class Submission {
+        private final InternalUnifiedPushMessage message;
+        private final VariantMap variants = new VariantMap();
+        private String jsonMessageContent;
+        private Map<Variant, Set<String>> directTokens;
+        private PushMessageInformation pushMessageInformation;
+        private String collapseKey;
+
+        Submission(InternalUnifiedPushMessage message) {
+            this.message = message;
         }
     }
 
@@ -144,6 +316,13 @@ public class NotificationRouter {
                 this.add(variant);
             }
         }
+        List<Variant> getAllVariants() {
+            final List<Variant> all = new ArrayList<Variant>();
+            for (Collection<Variant> variants : values()) {
+                all.addAll(variants);
+            }
+            return all;
+        }
         int getVariantCount() {
             int count = 0;
             for (Collection<Variant> variants : values()) {
@@ -0,0 +1,258 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.service.impl.health.HealthDetails;
+import org.jboss.aerogear.unifiedpush.service.impl.health.Status;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Submits push message requests to the {@link NotificationRouter} from the threads of a dedicated managed executor
+ * (see {@link NotificationSubmissionWorker}), so that the HTTP worker threads are not blocked by the database and JMS
+ * latency of the submission.
+ *
+ * The number of pending (queued or running) submissions is bounded by the {@link #AEROGEAR_SENDER_SUBMIT_QUEUE} system property;
+ * requests exceeding it are rejected, so that they can be answered with <code>503 Service Unavailable</code>.
+ * A submission that did not start within {@link #MAX_QUEUE_TIME} is dropped (see {@link SubmissionCallback#onExpired()}),
+ * so that it is not sent after its request timed out.
+ *
+ * A message carrying an idempotency key is only submitted if no request with the same key was submitted before
+ * (see {@link IdempotencyKeyStore}); otherwise the ID of the original request is reported.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class NotificationSubmissionExecutor {
+
+    // system property name used to configure the number of pending submissions
+    public static final String AEROGEAR_SENDER_SUBMIT_QUEUE = "aerogear.sender.submit.queue";
+
+    private static final int DEFAULT_QUEUE = 1000;
+
+    /**
+     * Milliseconds a submission may wait for a thread; below the time the sender endpoint waits for the submission
+     */
+    public static final long MAX_QUEUE_TIME = 20000L;
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(NotificationSubmissionExecutor.class);
+
+    private final int queueSize = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_SENDER_SUBMIT_QUEUE, DEFAULT_QUEUE);
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // not final, so that tests can expire the submissions
+    long maxQueueTime = MAX_QUEUE_TIME;
+
+    @Inject
+    private NotificationSubmissionWorker worker;
+
+    @Inject
+    private NotificationRouter notificationRouter;
+
+    @Inject
+    private IdempotencyKeyStore idempotencyKeyStore;
+
+    @Inject
+    private PipelineTimings pipelineTimings;
+
+    /**
+     * Queues the given message for being submitted to the {@link NotificationRouter}.
+     *
+     * @param pushApplication the push application
+     * @param message the message
+     * @param callback notified once the message was submitted, or the submission failed
+     * @return false if the queue is full and the message was not accepted, true otherwise
+     */
+    public boolean submit(final PushApplication pushApplication, final InternalUnifiedPushMessage message, final SubmissionCallback callback) {
+        return execute(new Submission(callback) {
+            @Override
+            List<String> submit() {
+                return Collections.singletonList(submitOnce(pushApplication, message));
+            }
+        });
+    }
+
+    /**
+     * Queues the given messages for being submitted to the {@link NotificationRouter} at once.
+     *
+     * @param pushApplication the push application
+     * @param messages the messages
+     * @param callback notified once the messages were submitted, or the submission failed
+     * @return false if the queue is full and the messages were not accepted, true otherwise
+     */
+    public boolean submit(final PushApplication pushApplication, final List<InternalUnifiedPushMessage> messages, final SubmissionCallback callback) {
+        return execute(new Submission(callback) {
+            @Override
+            List<String> submit() {
+                return notificationRouter.submit(pushApplication, messages);
+            }
+        });
+    }
+
+    /**
+     * Submits the message, unless a request with the same idempotency key was submitted already
+     */
+    private String submitOnce(PushApplication pushApplication, InternalUnifiedPushMessage message) {
+        final String idempotencyKey = message.getIdempotencyKey();
+        if (idempotencyKey == null) {
+            return notificationRouter.submit(pushApplication, message);
+        }
+
+        final String pushApplicationID = pushApplication.getPushApplicationID();
+        String pushMessageInformationID = idempotencyKeyStore.find(pushApplicationID, idempotencyKey);
+        if (pushMessageInformationID != null) {
+            logger.fine(String.format("Push message request with idempotency key '%s' was submitted already", idempotencyKey));
+            return pushMessageInformationID;
+        }
+
+        try {
+            // the transaction of the router is committed once it returns
+            pushMessageInformationID = notificationRouter.submit(pushApplication, message);
+        } catch (RuntimeException e) {
+            // the same key may have been submitted concurrently (e.g. on another node), violating the unique key
+            pushMessageInformationID = idempotencyKeyStore.find(pushApplicationID, idempotencyKey);
+            if (pushMessageInformationID == null) {
+                throw e;
+            }
+            logger.fine(String.format("Push message request with idempotency key '%s' was submitted concurrently", idempotencyKey));
+            return pushMessageInformationID;
+        }
+        idempotencyKeyStore.put(pushApplicationID, idempotencyKey, pushMessageInformationID);
+        return pushMessageInformationID;
+    }
+
+    private boolean execute(Submission submission) {
+        if (pending.incrementAndGet() > queueSize) {
+            pending.decrementAndGet();
+            logger.fine("Submission queue is full, rejecting push message request");
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            worker.run(submission);
+            return true;
+        } catch (EJBException e) {
+            pending.decrementAndGet();
+            logger.warning("Could not queue push message request: " + e.getMessage());
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Reports the queue depth and the number of rejected submissions; the status is WARN once the queue is full.
+     *
+     * @return the health details of the submission queue
+     */
+    public HealthDetails status() {
+        final HealthDetails details = new HealthDetails();
+        details.setDescription("Push message submission");
+        final int pendingSubmissions = pending.get();
+        details.setTestStatus(pendingSubmissions >= queueSize ? Status.WARN : Status.OK);
+        details.setResult(String.format("%d pending, %d submitted, %d rejected, %d expired, %d failed",
+                pendingSubmissions, submitted.get(), rejected.get(), expired.get(), failed.get()));
+        return details;
+    }
+
+    /**
+     * Receives the outcome of a submission, on the submission thread
+     */
+    public interface SubmissionCallback {
+
+        /**
+         * Called once the messages are recorded and queued for delivery
+         *
+         * @param pushMessageInformationIDs the IDs of the recorded push message information, in the order of the messages
+         */
+        void onSubmitted(List<String> pushMessageInformationIDs);
+
+        /**
+         * Called when the message could not be submitted
+         *
+         * @param e the cause of the failure
+         */
+        void onFailure(Exception e);
+
+        /**
+         * Called when the submission waited longer than {@link #MAX_QUEUE_TIME} for a thread, and was dropped without being submitted
+         */
+        void onExpired();
+    }
+
+    /**
+     * Runs a submission on a submission thread and notifies its callback
+     */
+    private abstract class Submission implements Runnable {
+        private final SubmissionCallback callback;
+        private final long queuedAt = System.currentTimeMillis();
+
+        Submission(SubmissionCallback callback) {
+            this.callback = callback;
+        }
+
+        abstract List<String> submit();
+
+        @Override
+        public void run() {
+            try {
+                runOrExpire();
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+
+        private void runOrExpire() {
+            if (System.currentTimeMillis() - queuedAt > maxQueueTime) {
+                logger.fine("Push message request waited too long for being submitted, dropping it");
+                expired.incrementAndGet();
+                callback.onExpired();
+                return;
+            }
+
+            final List<String> pushMessageInformationIDs;
+            try {
+                final long start = System.currentTimeMillis();
+                pushMessageInformationIDs = submit();
+                pipelineTimings.record(PipelineTimings.Stage.ROUTING, System.currentTimeMillis() - start);
+                submitted.incrementAndGet();
+            } catch (RuntimeException e) {
+                logger.severe("Failed to submit push message request", e);
+                failed.incrementAndGet();
+                callback.onFailure(e);
+                return;
+            }
+            callback.onSubmitted(pushMessageInformationIDs);
+        }
+    }
+}
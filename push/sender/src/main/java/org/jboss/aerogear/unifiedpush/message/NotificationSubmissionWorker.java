@@ -0,0 +1,52 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs the submissions of the {@link NotificationSubmissionExecutor} on a managed executor of its own,
+ * so that they don't compete with other asynchronous work of the container for threads.
+ *
+ * The executor is defined by the server configuration (see <code>configuration/jms-setup-wildfly.cli</code>),
+ * which sets its core and maximum number of threads and the length of its queue.
+ */
+@Stateless
+public class NotificationSubmissionWorker {
+
+    public static final String SUBMISSION_EXECUTOR = "java:jboss/ee/concurrency/executor/aerogear-submission";
+
+    // a javax.enterprise.concurrent.ManagedExecutorService, which is an ExecutorService
+    @Resource(lookup = SUBMISSION_EXECUTOR)
+    private ExecutorService executor;
+
+    /**
+     * Queues the given submission; it runs outside of a transaction, as the {@link NotificationRouter} manages its own.
+     * A full executor rejects the submission, which the container reports as {@link javax.ejb.EJBException}.
+     *
+     * @param submission the submission to run
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void run(Runnable submission) {
+        executor.execute(submission);
+    }
+}
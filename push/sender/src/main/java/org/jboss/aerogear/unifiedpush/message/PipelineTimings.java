@@ -0,0 +1,140 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
+import org.jboss.aerogear.unifiedpush.service.impl.health.HealthDetails;
+import org.jboss.aerogear.unifiedpush.service.impl.health.Status;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long the stages of the messaging pipeline take on this node, so that the capacity of each stage can be measured
+ * (e.g. while the Push Networks are replaced by a sink, see {@link org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration#sink()}).
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PipelineTimings {
+
+    /**
+     * The stages of the messaging pipeline
+     */
+    public enum Stage {
+        /** submission of a push message request by the {@link NotificationRouter}, including its transaction */
+        ROUTING("routing"),
+        /** loading of the device tokens by the {@link TokenLoader}, per transaction */
+        TOKEN_LOADING("token loading"),
+        /** submission of a batch to the push network by the {@link NotificationDispatcher} */
+        DISPATCH("dispatch"),
+        /** collection of the metrics by the {@link MetricsCollector}, per transaction */
+        METRICS_COLLECTION("metrics collection"),
+        /** time from the submission of a push message until one of its batches is dispatched */
+        END_TO_END("end-to-end");
+
+        private final String description;
+
+        Stage(String description) {
+            this.description = description;
+        }
+    }
+
+    private final Map<Stage, StageTiming> timings = new EnumMap<Stage, StageTiming>(Stage.class);
+
+    public PipelineTimings() {
+        for (Stage stage : Stage.values()) {
+            timings.put(stage, new StageTiming());
+        }
+    }
+
+    /**
+     * Records one execution of the given stage
+     *
+     * @param stage the stage of the pipeline
+     * @param millis the duration of the execution in milliseconds
+     */
+    public void record(Stage stage, long millis) {
+        timings.get(stage).record(millis);
+    }
+
+    /**
+     * @param stage the stage of the pipeline
+     * @return the number of recorded executions of the stage
+     */
+    public long getCount(Stage stage) {
+        return timings.get(stage).count.get();
+    }
+
+    /**
+     * @param stage the stage of the pipeline
+     * @return the average duration of the stage in milliseconds, 0 if no execution was recorded
+     */
+    public long getAverage(Stage stage) {
+        final StageTiming timing = timings.get(stage);
+        final long count = timing.count.get();
+        return count == 0 ? 0 : timing.total.get() / count;
+    }
+
+    /**
+     * @param stage the stage of the pipeline
+     * @return the longest duration of the stage in milliseconds
+     */
+    public long getMax(Stage stage) {
+        return timings.get(stage).max.get();
+    }
+
+    /**
+     * Reports the number of executions, the average and the maximum duration of every stage.
+     *
+     * @return the health details of the messaging pipeline
+     */
+    public HealthDetails status() {
+        final HealthDetails details = new HealthDetails();
+        details.setDescription("Messaging pipeline");
+        details.setTestStatus(Status.OK);
+        final StringBuilder result = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(String.format("%s: %d times, avg %d ms, max %d ms", stage.description, getCount(stage), getAverage(stage), getMax(stage)));
+        }
+        details.setResult(result.toString());
+        details.setRuntime(getAverage(Stage.END_TO_END));
+        return details;
+    }
+
+    private static class StageTiming {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long millis) {
+            count.incrementAndGet();
+            total.addAndGet(millis);
+            long currentMax = max.get();
+            while (millis > currentMax && !max.compareAndSet(currentMax, millis)) {
+                currentMax = max.get();
+            }
+        }
+    }
+}
@@ -33,6 +33,9 @@ public class SenderConfiguration {
 
     private int batchesToLoad;
     private int batchSize;
+    private boolean sink;
+    private int sinkLatency;
+    private int sinkErrorRate;
 
     public SenderConfiguration() {
     }
@@ -48,6 +51,22 @@ public class SenderConfiguration {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Creates a new configuration with the configuration values provided, including the configuration of the sink mode
+     *
+     * @param batchesToLoad specifies how many batches should be loaded in one transaction (see {@link #batchesToLoad()}
+     * @param batchSize specifies how many devices will be loaded and delivered in one batch (see {@link #batchSize()}
+     * @param sink specifies whether batches are delivered to a sink instead of the Push Network (see {@link #sink()}
+     * @param sinkLatency the synthetic latency of the sink in milliseconds (see {@link #sinkLatency()}
+     * @param sinkErrorRate the percentage of batches failed by the sink (see {@link #sinkErrorRate()}
+     */
+    public SenderConfiguration(int batchesToLoad, int batchSize, boolean sink, int sinkLatency, int sinkErrorRate) {
+        this(batchesToLoad, batchSize);
+        this.sink = sink;
+        this.sinkLatency = sinkLatency;
+        this.sinkErrorRate = sinkErrorRate;
+    }
+
     /**
      * Specifies how many batches should be loaded in one token-loading transaction.
      *
@@ -97,4 +116,44 @@ public class SenderConfiguration {
     public int tokensToLoad() {
         return batchesToLoad * batchSize;
     }
+
+    /**
+     * Sink mode replaces the Push Network by a sink that discards the batches, so that the capacity of the messaging pipeline
+     * (routing, token loading, JMS, dispatching and metrics collection) can be measured without sending real notifications.
+     *
+     * @return true if batches are delivered to the sink, false if they are delivered to the Push Network
+     */
+    public boolean sink() {
+        return sink;
+    }
+
+    void setSink(boolean sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * The synthetic latency of the sink, emulating the time the Push Network takes to accept a batch.
+     *
+     * @return the number of milliseconds the sink takes to deliver one batch
+     */
+    public int sinkLatency() {
+        return sinkLatency;
+    }
+
+    void setSinkLatency(int sinkLatency) {
+        this.sinkLatency = sinkLatency;
+    }
+
+    /**
+     * The synthetic error rate of the sink, emulating batches rejected by the Push Network.
+     *
+     * @return the percentage (0 - 100) of batches the sink reports as failed
+     */
+    public int sinkErrorRate() {
+        return sinkErrorRate;
+    }
+
+    void setSinkErrorRate(int sinkErrorRate) {
+        this.sinkErrorRate = sinkErrorRate;
+    }
 }
@@ -36,12 +36,18 @@ import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
  *
  * The name of the network (<tt>aerogear.&lt;network&gt;.&lt;property&gt;</tt>) is specified by {@link VariantType#getTypeName()}.
  *
+ * The sink mode (see {@link SenderConfiguration#sink()}) can be enabled for all Push Networks at once by providing
+ * <tt>-Daerogear.sender.sink=true</tt>; the <tt>aerogear.sender.&lt;property&gt;</tt> values are the defaults of the network specific ones.
+ *
  * Look at {@link SenderConfiguration} for more details about available configurations.
  *
  * @see SenderConfiguration
  */
 public class SenderConfigurationProvider {
 
+    // prefix of the system property names used to configure all the Push Networks at once
+    public static final String AEROGEAR_SENDER_PREFIX = "aerogear.sender";
+
     private final AeroGearLogger logger = AeroGearLogger.getInstance(SenderConfigurationProvider.class);
 
     @Produces @ApplicationScoped @SenderType(VariantType.ANDROID)
@@ -77,7 +83,10 @@ public class SenderConfigurationProvider {
     private SenderConfiguration loadConfigurationFor(VariantType type, SenderConfiguration defaultConfiguration) {
         return validateAndSanitizeConfiguration(type, new SenderConfiguration(
                 getProperty(type, ConfigurationProperty.batchesToLoad, defaultConfiguration.batchesToLoad(), Integer.class),
-                getProperty(type, ConfigurationProperty.batchSize, defaultConfiguration.batchSize(), Integer.class)
+                getProperty(type, ConfigurationProperty.batchSize, defaultConfiguration.batchSize(), Integer.class),
+                getProperty(type, ConfigurationProperty.sink, getGlobalProperty(ConfigurationProperty.sink, defaultConfiguration.sink(), Boolean.class), Boolean.class),
+                getProperty(type, ConfigurationProperty.sinkLatency, getGlobalProperty(ConfigurationProperty.sinkLatency, defaultConfiguration.sinkLatency(), Integer.class), Integer.class),
+                getProperty(type, ConfigurationProperty.sinkErrorRate, getGlobalProperty(ConfigurationProperty.sinkErrorRate, defaultConfiguration.sinkErrorRate(), Integer.class), Integer.class)
             ));
     }
 
@@ -97,16 +106,34 @@ public class SenderConfigurationProvider {
             default:
                 break;
         }
+        if (configuration.sinkErrorRate() < 0 || configuration.sinkErrorRate() > 100) {
+            logger.warning(String
+                    .format("Sender configuration -D%s=%s is invalid: the error rate is a percentage between 0 and 100",
+                            getSystemPropertyName(type, ConfigurationProperty.sinkErrorRate), configuration.sinkErrorRate()));
+            configuration.setSinkErrorRate(Math.min(100, Math.max(0, configuration.sinkErrorRate())));
+        }
+        if (configuration.sink()) {
+            logger.warning(String.format("Sink mode is enabled for %s variants, push notifications will not be delivered to the Push Network", type.getTypeName()));
+        }
         return configuration;
     }
 
-    @SuppressWarnings("unchecked")
     private <T> T getProperty(VariantType type, ConfigurationProperty property, T defaultValue, Class<T> expectedType) {
-        String systemPropertyName = getSystemPropertyName(type, property);
+        return getProperty(getSystemPropertyName(type, property), defaultValue, expectedType);
+    }
+
+    private <T> T getGlobalProperty(ConfigurationProperty property, T defaultValue, Class<T> expectedType) {
+        return getProperty(String.format("%s.%s", AEROGEAR_SENDER_PREFIX, property.toString()), defaultValue, expectedType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getProperty(String systemPropertyName, T defaultValue, Class<T> expectedType) {
         if (expectedType == String.class) {
             return (T) ConfigurationUtils.tryGetProperty(systemPropertyName, (String) defaultValue);
         } else if (expectedType == Integer.class) {
             return (T) ConfigurationUtils.tryGetIntegerProperty(systemPropertyName, (Integer) defaultValue);
+        } else if (expectedType == Boolean.class) {
+            return (T) Boolean.valueOf(ConfigurationUtils.tryGetProperty(systemPropertyName, String.valueOf(defaultValue)));
         } else {
             throw new IllegalStateException("Unexpected type: " + expectedType);
         }
@@ -122,6 +149,9 @@ public class SenderConfigurationProvider {
      */
     private static enum ConfigurationProperty {
         batchesToLoad,
-        batchSize;
+        batchSize,
+        sink,
+        sinkLatency,
+        sinkErrorRate;
     }
 }
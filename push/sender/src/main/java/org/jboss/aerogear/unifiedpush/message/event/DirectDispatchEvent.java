@@ -0,0 +1,55 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.event;
+
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.message.DirectDispatcher;
+import org.jboss.aerogear.unifiedpush.message.InternalUnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.NotificationRouter;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Event fired by {@link NotificationRouter} for a push message that is delivered by {@link DirectDispatcher},
+ * once the transaction that recorded the push message committed
+ */
+public class DirectDispatchEvent {
+
+    private final PushMessageInformation pushMessageInformation;
+    private final InternalUnifiedPushMessage message;
+    private final Map<Variant, Set<String>> tokensPerVariant;
+
+    public DirectDispatchEvent(PushMessageInformation pushMessageInformation, InternalUnifiedPushMessage message, Map<Variant, Set<String>> tokensPerVariant) {
+        this.pushMessageInformation = pushMessageInformation;
+        this.message = message;
+        this.tokensPerVariant = tokensPerVariant;
+    }
+
+    public PushMessageInformation getPushMessageInformation() {
+        return pushMessageInformation;
+    }
+
+    public InternalUnifiedPushMessage getMessage() {
+        return message;
+    }
+
+    public Map<Variant, Set<String>> getTokensPerVariant() {
+        return tokensPerVariant;
+    }
+}
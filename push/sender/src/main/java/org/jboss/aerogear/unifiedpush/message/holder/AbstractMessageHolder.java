@@ -28,12 +28,62 @@ public abstract class AbstractMessageHolder implements Serializable {
 
     private static final long serialVersionUID = 8204829162844896312L;
 
+    /**
+     * The expiry time of a push message without (positive) time-to-live
+     */
+    public static final long NO_EXPIRY = 0;
+
+    /**
+     * The delivery time of a holder that is queued without delay
+     */
+    public static final long IMMEDIATE_DELIVERY = 0;
+
     private PushMessageInformation pushMessageInformation;
     private UnifiedPushMessage unifiedPushMessage;
+    private long expiryTime;
+    private long deliveryTime;
 
     public AbstractMessageHolder(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage) {
+        this(pushMessageInformation, unifiedPushMessage, expiryTimeOf(unifiedPushMessage), deliveryTimeOf(unifiedPushMessage));
+    }
+
+    public AbstractMessageHolder(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, long expiryTime) {
+        this(pushMessageInformation, unifiedPushMessage, expiryTime, IMMEDIATE_DELIVERY);
+    }
+
+    public AbstractMessageHolder(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, long expiryTime, long deliveryTime) {
         this.pushMessageInformation = pushMessageInformation;
         this.unifiedPushMessage = unifiedPushMessage;
+        this.expiryTime = expiryTime;
+        this.deliveryTime = deliveryTime;
+    }
+
+    /**
+     * Computes the absolute expiry time of the given push message from its time-to-live, starting at its send time (or now).
+     *
+     * A time-to-live of 0 is left to the push networks (it means "now or never" there), so that queueing does not drop such messages.
+     *
+     * @param unifiedPushMessage the push message
+     * @return the expiry time in milliseconds since the epoch, or {@link #NO_EXPIRY}
+     */
+    public static long expiryTimeOf(UnifiedPushMessage unifiedPushMessage) {
+        if (unifiedPushMessage == null || unifiedPushMessage.getConfig() == null || unifiedPushMessage.getConfig().getTimeToLive() <= 0) {
+            return NO_EXPIRY;
+        }
+        return Math.max(System.currentTimeMillis(), deliveryTimeOf(unifiedPushMessage)) + unifiedPushMessage.getConfig().getTimeToLive() * 1000L;
+    }
+
+    /**
+     * Returns the send time of the given push message.
+     *
+     * @param unifiedPushMessage the push message
+     * @return the send time in milliseconds since the epoch, or {@link #IMMEDIATE_DELIVERY}
+     */
+    public static long deliveryTimeOf(UnifiedPushMessage unifiedPushMessage) {
+        if (unifiedPushMessage == null || unifiedPushMessage.getConfig() == null || unifiedPushMessage.getConfig().getSendTime() == null) {
+            return IMMEDIATE_DELIVERY;
+        }
+        return unifiedPushMessage.getConfig().getSendTime().getTime();
     }
 
     public PushMessageInformation getPushMessageInformation() {
@@ -44,4 +94,36 @@ public abstract class AbstractMessageHolder implements Serializable {
         return unifiedPushMessage;
     }
 
+    /**
+     * The absolute time when the time-to-live of the push message elapses
+     *
+     * @return the expiry time in milliseconds since the epoch, or {@link #NO_EXPIRY}
+     */
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    /**
+     * The absolute time when the holder should be delivered from the queue
+     *
+     * @return the delivery time in milliseconds since the epoch, or {@link #IMMEDIATE_DELIVERY}
+     */
+    public long getDeliveryTime() {
+        return deliveryTime;
+    }
+
+    /**
+     * @return the number of milliseconds that the queueing of this holder should be delayed by, 0 if it should be delivered immediately
+     */
+    public long getDeliveryDelay() {
+        return Math.max(0, deliveryTime - System.currentTimeMillis());
+    }
+
+    /**
+     * @return true if the time-to-live of the push message has elapsed, so that the push message must not be delivered anymore
+     */
+    public boolean isExpired() {
+        return expiryTime != NO_EXPIRY && System.currentTimeMillis() > expiryTime;
+    }
+
 }
\ No newline at end of file
@@ -37,7 +37,15 @@ public class MessageHolderWithTokens extends AbstractMessageHolder implements Se
     private Collection<String> deviceTokens;
 
     public MessageHolderWithTokens(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, Variant variant, Collection<String> deviceTokens, int serialId) {
-        super(pushMessageInformation, unifiedPushMessage);
+        this(pushMessageInformation, unifiedPushMessage, variant, deviceTokens, serialId, expiryTimeOf(unifiedPushMessage));
+    }
+
+    public MessageHolderWithTokens(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, Variant variant, Collection<String> deviceTokens, int serialId, long expiryTime) {
+        this(pushMessageInformation, unifiedPushMessage, variant, deviceTokens, serialId, expiryTime, IMMEDIATE_DELIVERY);
+    }
+
+    public MessageHolderWithTokens(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, Variant variant, Collection<String> deviceTokens, int serialId, long expiryTime, long deliveryTime) {
+        super(pushMessageInformation, unifiedPushMessage, expiryTime, deliveryTime);
         if (!(deviceTokens instanceof Serializable)) {
             throw new IllegalArgumentException("deviceTokens must be a serializable collection");
         }
@@ -39,10 +39,16 @@ public class MessageHolderWithVariants extends AbstractMessageHolder implements
      */
     public static final int INITIAL_SERIAL_ID = 0;
 
+    /**
+     * The reason recorded in the variant metrics for devices that were skipped, since the time-to-live of the push message elapsed
+     */
+    public static final String EXPIRED_REASON = "Time-to-live of the push message elapsed before delivery";
+
     private VariantType variantType;
     private Collection<Variant> variants;
     private int lastSerialId;
     private String lastTokenFromPreviousBatch;
+    private long batchInterval;
 
     /**
      * Constructs holder that denotes first request for processing.
@@ -55,7 +61,8 @@ public class MessageHolderWithVariants extends AbstractMessageHolder implements
      * @param variants list of effected variants
      */
     public MessageHolderWithVariants(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, VariantType variantType, Collection<Variant> variants) {
-        this(pushMessageInformation, unifiedPushMessage, variantType, variants, INITIAL_SERIAL_ID, null);
+        this(pushMessageInformation, unifiedPushMessage, variantType, variants, INITIAL_SERIAL_ID, null,
+                expiryTimeOf(unifiedPushMessage), 0, deliveryTimeOf(unifiedPushMessage));
     }
 
     /**
@@ -69,7 +76,40 @@ public class MessageHolderWithVariants extends AbstractMessageHolder implements
      * @param lastTokenFromPreviousBatch last token from previous stream
      */
     public MessageHolderWithVariants(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, VariantType variantType, Collection<Variant> variants, int lastSerialId, String lastTokenFromPreviousBatch) {
-        super(pushMessageInformation, unifiedPushMessage);
+        this(pushMessageInformation, unifiedPushMessage, variantType, variants, lastSerialId, lastTokenFromPreviousBatch, expiryTimeOf(unifiedPushMessage));
+    }
+
+    /**
+     * Constructs holder that denotes subsequent request for processing given push message, keeping the expiry time of the original request.
+     *
+     * @param pushMessageInformation the push message info object
+     * @param unifiedPushMessage the push message
+     * @param variantType variant type info
+     * @param variants list of effected variants
+     * @param lastSerialId last id from previous batch
+     * @param lastTokenFromPreviousBatch last token from previous stream
+     * @param expiryTime the absolute expiry time of the push message
+     */
+    public MessageHolderWithVariants(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, VariantType variantType, Collection<Variant> variants, int lastSerialId, String lastTokenFromPreviousBatch, long expiryTime) {
+        this(pushMessageInformation, unifiedPushMessage, variantType, variants, lastSerialId, lastTokenFromPreviousBatch, expiryTime, 0, IMMEDIATE_DELIVERY);
+    }
+
+    /**
+     * Constructs holder that denotes subsequent request for processing given push message, whose batches are spread across the spread window of the push message.
+     *
+     * @param pushMessageInformation the push message info object
+     * @param unifiedPushMessage the push message
+     * @param variantType variant type info
+     * @param variants list of effected variants
+     * @param lastSerialId last id from previous batch
+     * @param lastTokenFromPreviousBatch last token from previous stream
+     * @param expiryTime the absolute expiry time of the push message
+     * @param batchInterval the number of milliseconds between the delivery of two batches, 0 if the batches are not spread
+     * @param deliveryTime the absolute time when the request should be processed
+     */
+    public MessageHolderWithVariants(PushMessageInformation pushMessageInformation, UnifiedPushMessage unifiedPushMessage, VariantType variantType, Collection<Variant> variants, int lastSerialId, String lastTokenFromPreviousBatch, long expiryTime, long batchInterval, long deliveryTime) {
+        super(pushMessageInformation, unifiedPushMessage, expiryTime, deliveryTime);
+        this.batchInterval = batchInterval;
         this.variantType = variantType;
         this.variants = new ArrayList<Variant>(variants);
         this.lastSerialId = lastSerialId;
@@ -91,4 +131,13 @@ public class MessageHolderWithVariants extends AbstractMessageHolder implements
     public String getLastTokenFromPreviousBatch() {
         return lastTokenFromPreviousBatch;
     }
+
+    /**
+     * The number of milliseconds between the delivery of two batches; it is computed when the first batch is loaded.
+     *
+     * @return the batch interval, 0 if the batches are not spread across a window
+     */
+    public long getBatchInterval() {
+        return batchInterval;
+    }
 }
@@ -0,0 +1,53 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.holder;
+
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds several {@link MessageHolderWithVariants} of the same variant type, so that they are queued for processing in one go.
+ */
+public class MessageHoldersWithVariants {
+
+    private final VariantType variantType;
+    private final List<MessageHolderWithVariants> holders = new ArrayList<MessageHolderWithVariants>();
+
+    /**
+     * @param variantType the variant type of all the holders
+     */
+    public MessageHoldersWithVariants(VariantType variantType) {
+        this.variantType = variantType;
+    }
+
+    /**
+     * @param holder the holder to queue, it must address variants of the type of this batch
+     */
+    public void add(MessageHolderWithVariants holder) {
+        holders.add(holder);
+    }
+
+    public VariantType getVariantType() {
+        return variantType;
+    }
+
+    public List<MessageHolderWithVariants> getHolders() {
+        return holders;
+    }
+}
@@ -27,6 +27,8 @@ import javax.jms.MessageProducer;
 import javax.jms.ObjectMessage;
 import javax.jms.Session;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Simplifies sending of messages to a destination
@@ -63,6 +65,18 @@ public abstract class AbstractJMSMessageProducer {
         send(destination, message, null, null, true);
     }
 
+    /**
+     * Sends all the messages to the destination in transactional manner, using one session.
+     *
+     * @param destination where to send
+     * @param messages what to send
+     *
+     * Since transacted session is used, the messages won't be committed until whole enclosing transaction ends
+     */
+    protected void sendAllTransacted(Destination destination, Collection<? extends Serializable> messages) {
+        send(destination, messages, null, null, true);
+    }
+
     /**
      * Sends message to destination with given JMS message property name and value in non-transactional manner.
      *
@@ -92,6 +106,10 @@ public abstract class AbstractJMSMessageProducer {
     }
 
     private void send(Destination destination, Serializable message, String propertyName, String propertValue, boolean transacted) {
+        send(destination, Collections.singletonList(message), propertyName, propertValue, transacted);
+    }
+
+    private void send(Destination destination, Collection<? extends Serializable> messages, String propertyName, String propertValue, boolean transacted) {
         Connection connection = null;
         try {
             if (transacted) {
@@ -102,11 +120,13 @@ public abstract class AbstractJMSMessageProducer {
             Session session = connection.createSession(transacted, Session.AUTO_ACKNOWLEDGE);
             MessageProducer messageProducer = session.createProducer(destination);
             connection.start();
-            ObjectMessage objectMessage = session.createObjectMessage(message);
-            if (propertyName != null) {
-                objectMessage.setStringProperty(propertyName, propertValue);
+            for (Serializable message : messages) {
+                ObjectMessage objectMessage = session.createObjectMessage(message);
+                if (propertyName != null) {
+                    objectMessage.setStringProperty(propertyName, propertValue);
+                }
+                messageProducer.send(objectMessage);
             }
-            messageProducer.send(objectMessage);
         } catch (JMSException e) {
             throw new MessageDeliveryException("Failed to queue push message for further processing", e);
         } finally {
@@ -0,0 +1,45 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.jms;
+
+import org.jboss.aerogear.unifiedpush.service.cache.CategoriesCreatedEvent;
+import org.jboss.aerogear.unifiedpush.service.cache.CategoryDictionary;
+
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.MessageDriven;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+@MessageDriven(name = "CategoriesCreatedConsumer", activationConfig = {
+        @ActivationConfigProperty(propertyName = "destination", propertyValue = "topic/CategoriesCreatedTopic"),
+        @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
+        @ActivationConfigProperty(propertyName = "acknowledgeMode", propertyValue = "Auto-acknowledge") })
+public class CategoriesCreatedConsumer extends AbstractJMSMessageListener<CategoriesCreatedEvent> {
+
+    @Inject
+    private CategoryDictionary categoryDictionary;
+
+    /**
+     * Receives CategoriesCreatedEvent from the JMS topic and makes the dictionary of this node reload the categories.
+     */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void onMessage(CategoriesCreatedEvent message) {
+        categoryDictionary.invalidate(message.getNames());
+    }
+}
@@ -18,6 +18,7 @@ package org.jboss.aerogear.unifiedpush.message.jms;
 
 import javax.annotation.Resource;
 import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
 import javax.inject.Inject;
 import javax.jms.Queue;
 import javax.jms.Topic;
@@ -29,6 +30,10 @@ import org.jboss.aerogear.unifiedpush.message.event.MetricsProcessingStartedEven
 import org.jboss.aerogear.unifiedpush.message.event.TriggerMetricCollectionEvent;
 import org.jboss.aerogear.unifiedpush.message.event.TriggerVariantMetricCollectionEvent;
 import org.jboss.aerogear.unifiedpush.message.util.JmsClient;
+import org.jboss.aerogear.unifiedpush.service.cache.CategoriesCreatedEvent;
+import org.jboss.aerogear.unifiedpush.service.cache.PushApplicationChangedEvent;
+import org.jboss.aerogear.unifiedpush.service.cache.VariantChangedEvent;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageStateChangedEvent;
 
 /**
  * A CDI-to-JMS bridge takes selected CDI events with {@link DispatchToQueue} stereotype and passes them to JMS queue or topic so that they can be handled asynchronously.
@@ -53,6 +58,18 @@ public class CdiJmsBridge {
     @Resource(mappedName = "java:/topic/MetricsProcessingStartedTopic")
     private Topic metricsProcessingStartedTopic;
 
+    @Resource(mappedName = "java:/topic/VariantChangedTopic")
+    private Topic variantChangedTopic;
+
+    @Resource(mappedName = "java:/topic/PushApplicationChangedTopic")
+    private Topic pushApplicationChangedTopic;
+
+    @Resource(mappedName = "java:/topic/CategoriesCreatedTopic")
+    private Topic categoriesCreatedTopic;
+
+    @Resource(mappedName = "java:/topic/PushMessageStateChangedTopic")
+    private Topic pushMessageStateChangedTopic;
+
     @Inject
     private JmsClient jmsClient;
 
@@ -116,4 +133,48 @@ public class CdiJmsBridge {
         jmsClient.send(event)
             .to(metricsProcessingStartedTopic);
     }
+
+    /**
+     * Listens to {@link VariantChangedEvent} once the change was committed and delivers it to the JMS topic,
+     * so that all nodes of the cluster drop their cached copy of the variant.
+     *
+     * @param event indicates that a variant was updated or removed
+     */
+    public void broadcastMessage(@Observes(during = TransactionPhase.AFTER_SUCCESS) VariantChangedEvent event) {
+        jmsClient.send(event)
+            .to(variantChangedTopic);
+    }
+
+    /**
+     * Listens to {@link PushApplicationChangedEvent} once the change was committed and delivers it to the JMS topic,
+     * so that all nodes of the cluster drop their cached copy of the push application.
+     *
+     * @param event indicates that a push application was updated or removed
+     */
+    public void broadcastMessage(@Observes(during = TransactionPhase.AFTER_SUCCESS) PushApplicationChangedEvent event) {
+        jmsClient.send(event)
+            .to(pushApplicationChangedTopic);
+    }
+
+    /**
+     * Listens to {@link CategoriesCreatedEvent} once the categories were committed and delivers it to the JMS topic,
+     * so that all nodes of the cluster reload them into their category dictionary.
+     *
+     * @param event indicates that categories were stored
+     */
+    public void broadcastMessage(@Observes(during = TransactionPhase.AFTER_SUCCESS) CategoriesCreatedEvent event) {
+        jmsClient.send(event)
+            .to(categoriesCreatedTopic);
+    }
+
+    /**
+     * Listens to {@link PushMessageStateChangedEvent} once the change was committed and delivers it to the JMS topic,
+     * so that all nodes of the cluster pause, resume or cancel the delivery of the push message.
+     *
+     * @param event indicates that the delivery state of a push message was changed
+     */
+    public void broadcastMessage(@Observes(during = TransactionPhase.AFTER_SUCCESS) PushMessageStateChangedEvent event) {
+        jmsClient.send(event)
+            .to(pushMessageStateChangedTopic);
+    }
 }
@@ -55,7 +55,12 @@ public class MessageHolderWithTokensProducer extends AbstractJMSMessageProducer
 
     public void queueMessageVariantForProcessing(@Observes @DispatchToQueue MessageHolderWithTokens msg) {
         String deduplicationId = String.format("%s-%s", msg.getPushMessageInformation().getId(), msg.getSerialId());
-        jmsClient.send(msg).withDuplicateDetectionId(deduplicationId).to(selectQueue(msg.getVariant().getType()));
+        JmsClient.JmsSender sender = jmsClient.send(msg).withDuplicateDetectionId(deduplicationId);
+        // batches of a push message with spread window are scheduled by the broker
+        if (msg.getDeliveryDelay() > 0) {
+            sender.withDelayedDelivery(msg.getDeliveryDelay());
+        }
+        sender.to(selectQueue(msg.getVariant().getType()));
     }
 
     private Queue selectQueue(VariantType variantType) {
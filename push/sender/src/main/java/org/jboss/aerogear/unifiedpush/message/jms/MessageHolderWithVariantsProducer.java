@@ -19,11 +19,17 @@ package org.jboss.aerogear.unifiedpush.message.jms;
 import javax.annotation.Resource;
 import javax.ejb.Stateless;
 import javax.enterprise.event.Observes;
+import javax.inject.Inject;
 import javax.jms.ConnectionFactory;
 import javax.jms.Queue;
 
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHoldersWithVariants;
+import org.jboss.aerogear.unifiedpush.message.util.JmsClient;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Receives CDI event with {@link MessageHolderWithVariants} payload and dispatches this payload to JMS queue selected by a type of the variant specified in payload.
@@ -36,6 +42,9 @@ public class MessageHolderWithVariantsProducer extends AbstractJMSMessageProduce
     @Resource(mappedName = "java:/ConnectionFactory")
     private ConnectionFactory connectionFactory;
 
+    @Inject
+    private JmsClient jmsClient;
+
     @Resource(mappedName = "java:/queue/AdmPushMessageQueue")
     private Queue admPushMessageQueue;
 
@@ -55,7 +64,33 @@ public class MessageHolderWithVariantsProducer extends AbstractJMSMessageProduce
     private Queue wnsPushMessageQueue;
 
     public void queueMessageVariantForProcessing(@Observes @DispatchToQueue MessageHolderWithVariants msg) {
-        sendTransacted(selectQueue(msg.getVariantType()), msg);
+        if (msg.getDeliveryDelay() > 0) {
+            sendScheduled(selectQueue(msg.getVariantType()), msg);
+        } else {
+            sendTransacted(selectQueue(msg.getVariantType()), msg);
+        }
+    }
+
+    public void queueMessagesVariantForProcessing(@Observes @DispatchToQueue MessageHoldersWithVariants msgs) {
+        final Queue queue = selectQueue(msgs.getVariantType());
+        final List<MessageHolderWithVariants> immediate = new ArrayList<MessageHolderWithVariants>(msgs.getHolders().size());
+        for (MessageHolderWithVariants msg : msgs.getHolders()) {
+            if (msg.getDeliveryDelay() > 0) {
+                sendScheduled(queue, msg);
+            } else {
+                immediate.add(msg);
+            }
+        }
+        if (!immediate.isEmpty()) {
+            sendAllTransacted(queue, immediate);
+        }
+    }
+
+    /**
+     * Requests with a send time in the future (or the continuation of a request whose batches are spread) are scheduled by the broker
+     */
+    private void sendScheduled(Queue queue, MessageHolderWithVariants msg) {
+        jmsClient.send(msg).inTransaction().withDelayedDelivery(msg.getDeliveryDelay()).to(queue);
     }
 
     private Queue selectQueue(VariantType variantType) {
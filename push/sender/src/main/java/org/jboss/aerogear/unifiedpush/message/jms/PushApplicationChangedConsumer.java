@@ -0,0 +1,45 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.jms;
+
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedPushApplicationCache;
+import org.jboss.aerogear.unifiedpush.service.cache.PushApplicationChangedEvent;
+
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.MessageDriven;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+@MessageDriven(name = "PushApplicationChangedConsumer", activationConfig = {
+        @ActivationConfigProperty(propertyName = "destination", propertyValue = "topic/PushApplicationChangedTopic"),
+        @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
+        @ActivationConfigProperty(propertyName = "acknowledgeMode", propertyValue = "Auto-acknowledge") })
+public class PushApplicationChangedConsumer extends AbstractJMSMessageListener<PushApplicationChangedEvent> {
+
+    @Inject
+    private AuthenticatedPushApplicationCache pushApplicationCache;
+
+    /**
+     * Receives PushApplicationChangedEvent from the JMS topic and drops the cached copy of the application on this node.
+     */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void onMessage(PushApplicationChangedEvent message) {
+        pushApplicationCache.invalidate(message.getPushApplicationID());
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.jms;
+
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedPushApplicationCache;
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedVariantCache;
+import org.jboss.aerogear.unifiedpush.service.cache.VariantChangedEvent;
+
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.MessageDriven;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+@MessageDriven(name = "VariantChangedConsumer", activationConfig = {
+        @ActivationConfigProperty(propertyName = "destination", propertyValue = "topic/VariantChangedTopic"),
+        @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
+        @ActivationConfigProperty(propertyName = "acknowledgeMode", propertyValue = "Auto-acknowledge") })
+public class VariantChangedConsumer extends AbstractJMSMessageListener<VariantChangedEvent> {
+
+    @Inject
+    private AuthenticatedVariantCache variantCache;
+
+    @Inject
+    private AuthenticatedPushApplicationCache pushApplicationCache;
+
+    /**
+     * Receives VariantChangedEvent from the JMS topic and drops the cached copies of the variant (and its application) on this node.
+     */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void onMessage(VariantChangedEvent message) {
+        variantCache.invalidate(message.getVariantID());
+        pushApplicationCache.invalidateVariant(message.getVariantID());
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender;
+
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sender used in the sink mode (see {@link SenderConfiguration#sink()}): instead of submitting the notifications to the Push Network,
+ * the batch is discarded after the configured synthetic latency, and the configured share of batches is reported as failed.
+ *
+ * This allows to load-test the messaging pipeline in isolation.
+ */
+public class SinkPushNotificationSender implements PushNotificationSender {
+
+    static final String SYNTHETIC_ERROR = "Synthetic error of the sink sender";
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(SinkPushNotificationSender.class);
+
+    private final SenderConfiguration configuration;
+
+    public SinkPushNotificationSender(SenderConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    @Override
+    public void sendPushMessage(Variant variant, Collection<String> clientIdentifiers, UnifiedPushMessage pushMessage, String pushMessageInformationId, NotificationSenderCallback senderCallback) {
+        if (configuration.sinkLatency() > 0) {
+            try {
+                Thread.sleep(configuration.sinkLatency());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (ThreadLocalRandom.current().nextInt(100) < configuration.sinkErrorRate()) {
+            senderCallback.onError(SYNTHETIC_ERROR);
+        } else {
+            logger.fine(String.format("Discarded batch of %d tokens for variant %s", clientIdentifiers.size(), variant.getVariantID()));
+            senderCallback.onSuccess();
+        }
+    }
+}
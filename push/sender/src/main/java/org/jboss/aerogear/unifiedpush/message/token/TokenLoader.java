@@ -25,18 +25,22 @@ import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.message.Criteria;
 import org.jboss.aerogear.unifiedpush.message.MetricsCollector;
 import org.jboss.aerogear.unifiedpush.message.NotificationRouter;
+import org.jboss.aerogear.unifiedpush.message.PipelineTimings;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
 import org.jboss.aerogear.unifiedpush.message.event.AllBatchesLoadedEvent;
 import org.jboss.aerogear.unifiedpush.message.event.BatchLoadedEvent;
 import org.jboss.aerogear.unifiedpush.message.event.TriggerVariantMetricCollectionEvent;
 import org.jboss.aerogear.unifiedpush.message.exception.MessageDeliveryException;
+import org.jboss.aerogear.unifiedpush.message.holder.AbstractMessageHolder;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
 import org.jboss.aerogear.unifiedpush.message.jms.Dequeue;
 import org.jboss.aerogear.unifiedpush.message.jms.DispatchToQueue;
 import org.jboss.aerogear.unifiedpush.message.sender.SenderTypeLiteral;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageStateRegistry;
 import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
 
 import javax.annotation.Resource;
@@ -53,6 +57,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Receives a request for sending a push message to given variants from {@link NotificationRouter}.
@@ -64,11 +69,19 @@ import java.util.TreeSet;
 @Stateless
 public class TokenLoader {
 
+    private static final String COLLAPSED_REASON = "Push message was collapsed into push message %s";
+
     private final AeroGearLogger logger = AeroGearLogger.getInstance(TokenLoader.class);
 
     @Inject
     private ClientInstallationService clientInstallationService;
 
+    @Inject
+    private PushMessageStateRegistry stateRegistry;
+
+    @Inject
+    private PushMessageMetricsService metricsService;
+
     @Inject
     @DispatchToQueue
     private Event<MessageHolderWithTokens> dispatchTokensEvent;
@@ -96,6 +109,9 @@ public class TokenLoader {
     @Inject @Any
     private Instance<SenderConfiguration> senderConfiguration;
 
+    @Inject
+    private PipelineTimings pipelineTimings;
+
     @Resource
     private EJBContext context;
 
@@ -109,6 +125,15 @@ public class TokenLoader {
      * Additionally it fires {@link BatchLoadedEvent} as CDI event (that is translated to JMS event) that helps {@link MetricsCollector} to track how many batches were loaded.
      * When all batches were loaded for the given variant, it fires  {@link AllBatchesLoadedEvent}.
      *
+     * Token loading of a paused push message is rolled back, so that the request is redelivered after the redelivery delay of the queue;
+     * token loading of a cancelled push message, or of a push message whose time-to-live elapsed, stops and the remaining devices are recorded as not served.
+     *
+     * A push message that was collapsed into a newer push message (see {@link NotificationRouter}) is not delivered; it is recorded in the
+     * {@link org.jboss.aerogear.unifiedpush.api.PushMessageState#COLLAPSED} state and its variants are completed without receivers, not as failed deliveries.
+     *
+     * When the push message specifies a spread window (see {@link org.jboss.aerogear.unifiedpush.message.Config#getSpreadWindow()}), the batches are scheduled
+     * for delivery in even intervals across the window, and the next request for loading tokens is scheduled for the time of its first batch.
+     *
      * @param msg holder object containing the payload and info about the effected variants
      */
     public void loadAndQueueTokenBatch(@Observes @Dequeue MessageHolderWithVariants msg) throws IllegalStateException {
@@ -122,11 +147,40 @@ public class TokenLoader {
 
         logger.fine("Received message from queue: " + message.getMessage().getAlert());
 
+        if (stateRegistry.isPaused(pushMessageInformation.getId())) {
+            logger.fine(String.format("Delivery of push message %s is paused, token loading will be retried", pushMessageInformation.getId()));
+            context.setRollbackOnly();
+            return;
+        }
+        if (stateRegistry.isCancelled(pushMessageInformation.getId())) {
+            logger.info(String.format("Delivery of push message %s was cancelled, no more tokens are loaded", pushMessageInformation.getId()));
+            skipVariants(msg, Boolean.FALSE, PushMessageStateRegistry.CANCELLED_REASON);
+            return;
+        }
+        if (msg.isExpired()) {
+            logger.info(String.format("Time-to-live of push message %s elapsed, no more tokens are loaded", pushMessageInformation.getId()));
+            skipVariants(msg, Boolean.FALSE, MessageHolderWithVariants.EXPIRED_REASON);
+            return;
+        }
+        if (serialId == MessageHolderWithVariants.INITIAL_SERIAL_ID && pushMessageInformation.getCollapseKey() != null) {
+            final String latestId = metricsService.findLatestIdByCollapseKey(pushMessageInformation.getPushApplicationId(), pushMessageInformation.getCollapseKey());
+            if (latestId != null && !latestId.equals(pushMessageInformation.getId())) {
+                logger.fine(String.format("Push message %s was collapsed into push message %s", pushMessageInformation.getId(), latestId));
+                metricsService.markCollapsed(pushMessageInformation.getId());
+                skipVariants(msg, Boolean.TRUE, String.format(COLLAPSED_REASON, latestId));
+                return;
+            }
+        }
+
         final Criteria criteria = message.getCriteria();
         final List<String> categories = criteria.getCategories();
         final List<String> aliases = criteria.getAliases();
         final List<String> deviceTypes = criteria.getDeviceTypes();
 
+        final long batchInterval = serialId == MessageHolderWithVariants.INITIAL_SERIAL_ID ? computeBatchInterval(message, variants, configuration) : msg.getBatchInterval();
+        final long windowStart = spreadWindowStart(msg);
+
+        final long start = System.currentTimeMillis();
         logger.info(String.format("Preparing message delivery and loading tokens for the %s 3rd-party Push Network (for %d variants)", variantType, variants.size()));
         for (Variant variant : variants) {
 
@@ -189,7 +243,8 @@ public class TokenLoader {
                     }
 
                     if (tokens.size() > 0) {
-                        if (tryToDispatchTokens(new MessageHolderWithTokens(msg.getPushMessageInformation(), message, variant, tokens, serialId))) {
+                        if (tryToDispatchTokens(new MessageHolderWithTokens(msg.getPushMessageInformation(), message, variant, tokens, serialId, msg.getExpiryTime(),
+                                batchInterval > 0 ? windowStart + (serialId - 1) * batchInterval : AbstractMessageHolder.IMMEDIATE_DELIVERY))) {
                             logger.info(String.format("Loaded batch #%s, containing %d tokens, for %s variant (%s)", serialId, tokens.size() ,variant.getType().getTypeName(), variant.getVariantID()));
                         } else {
                             logger.fine(String.format("Failing token loading transaction for batch token #%s for %s variant (%s), since queue is full, will retry...", serialId, variant.getType().getTypeName(), variant.getVariantID()));
@@ -211,7 +266,8 @@ public class TokenLoader {
                 // should we trigger next transaction?
                 if (tokensLoaded >= configuration.tokensToLoad()) {
                     logger.fine(String.format("Ending token loading transaction for %s variant (%s)", variant.getType().getTypeName(), variant.getVariantID()));
-                    nextBatchEvent.fire(new MessageHolderWithVariants(msg.getPushMessageInformation(), message, msg.getVariantType(), variants, serialId, lastTokenInBatch));
+                    nextBatchEvent.fire(new MessageHolderWithVariants(msg.getPushMessageInformation(), message, msg.getVariantType(), variants, serialId, lastTokenInBatch, msg.getExpiryTime(),
+                            batchInterval, batchInterval > 0 ? windowStart + serialId * batchInterval : AbstractMessageHolder.IMMEDIATE_DELIVERY));
                 } else {
                     logger.fine(String.format("All batches for %s variant were loaded (%s)", variant.getType().getTypeName(), pushMessageInformation.getId()));
 
@@ -238,6 +294,56 @@ public class TokenLoader {
                 logger.severe("Failed to load batch of tokens", e);
             }
         }
+        pipelineTimings.record(PipelineTimings.Stage.TOKEN_LOADING, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Splits the spread window of the push message into even intervals, one per expected batch.
+     *
+     * The number of batches is estimated from all devices of the variants, so that the delivery of a push message with narrowing criteria ends before the window does.
+     *
+     * @return the number of milliseconds between two batches, 0 if the push message does not specify a spread window
+     */
+    private long computeBatchInterval(UnifiedPushMessage message, Collection<Variant> variants, SenderConfiguration configuration) {
+        final Integer spreadWindow = message.getConfig().getSpreadWindow();
+        if (spreadWindow == null || spreadWindow <= 0) {
+            return 0;
+        }
+        long devices = 0;
+        for (Variant variant : variants) {
+            devices += clientInstallationService.countDevicesForVariantID(variant.getVariantID());
+        }
+        final long batches = Math.max(1, (devices + configuration.batchSize() - 1) / configuration.batchSize());
+        return TimeUnit.SECONDS.toMillis(spreadWindow) / batches;
+    }
+
+    /**
+     * The spread window starts at the send time of the push message, or when the push message was submitted
+     */
+    private long spreadWindowStart(MessageHolderWithVariants msg) {
+        final long sendTime = AbstractMessageHolder.deliveryTimeOf(msg.getUnifiedPushMessage());
+        if (sendTime != AbstractMessageHolder.IMMEDIATE_DELIVERY) {
+            return sendTime;
+        }
+        return msg.getPushMessageInformation().getSubmitDate().getTime();
+    }
+
+    /**
+     * Marks token loading of all variants of the given request as finished, recording the given delivery status and reason for the variants
+     */
+    private void skipVariants(MessageHolderWithVariants msg, Boolean deliveryStatus, String reason) {
+        final PushMessageInformation pushMessageInformation = msg.getPushMessageInformation();
+        for (Variant variant : msg.getVariants()) {
+            allBatchesLoaded.fire(new AllBatchesLoadedEvent(variant.getVariantID()+":"+pushMessageInformation.getId()));
+            triggerVariantMetricCollection.fire(new TriggerVariantMetricCollectionEvent(pushMessageInformation, variant));
+
+            VariantMetricInformation variantMetricInformation = new VariantMetricInformation();
+            variantMetricInformation.setPushMessageInformation(pushMessageInformation);
+            variantMetricInformation.setVariantID(variant.getVariantID());
+            variantMetricInformation.setDeliveryStatus(deliveryStatus);
+            variantMetricInformation.setReason(reason);
+            dispatchVariantMetricEvent.fire(variantMetricInformation);
+        }
     }
 
     /**
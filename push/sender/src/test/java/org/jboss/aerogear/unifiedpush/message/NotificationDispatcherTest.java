@@ -0,0 +1,140 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
+import org.jboss.aerogear.unifiedpush.message.event.TriggerVariantMetricCollectionEvent;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageStateRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.ejb.EJBContext;
+import javax.enterprise.event.Event;
+import javax.enterprise.inject.Instance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class NotificationDispatcherTest {
+
+    @Mock
+    private Instance<PushNotificationSender> senders;
+
+    @Mock
+    private Instance<SenderConfiguration> senderConfiguration;
+
+    @Mock
+    private PushMessageStateRegistry stateRegistry;
+
+    @Mock
+    private PipelineTimings pipelineTimings;
+
+    @Mock
+    private Event<VariantMetricInformation> dispatchVariantMetricEvent;
+
+    @Mock
+    private Event<TriggerVariantMetricCollectionEvent> triggerVariantMetricCollection;
+
+    @Mock
+    private EJBContext context;
+
+    @InjectMocks
+    private NotificationDispatcher dispatcher;
+
+    private MessageHolderWithTokens msg;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        final PushMessageInformation pushMessageInformation = new PushMessageInformation();
+        pushMessageInformation.setId("pmi");
+
+        final AndroidVariant variant = new AndroidVariant();
+        variant.setVariantID("variant");
+
+        msg = new MessageHolderWithTokens(pushMessageInformation, new UnifiedPushMessage(), variant, new ArrayList<String>(Arrays.asList("token1", "token2")), 1);
+    }
+
+    @Test
+    public void rollsBackBatchOfPausedPushMessage() {
+        when(stateRegistry.isPaused("pmi")).thenReturn(true);
+
+        dispatcher.sendMessagesToPushNetwork(msg);
+
+        // redelivered once the push message is resumed, nothing is sent or counted meanwhile
+        verify(context).setRollbackOnly();
+        verifyZeroInteractions(senders, senderConfiguration, dispatchVariantMetricEvent, triggerVariantMetricCollection);
+    }
+
+    @Test
+    public void dropsBatchOfCancelledPushMessage() {
+        when(stateRegistry.isCancelled("pmi")).thenReturn(true);
+
+        dispatcher.sendMessagesToPushNetwork(msg);
+
+        // no sender is even looked up
+        verifyZeroInteractions(senders, senderConfiguration);
+
+        final ArgumentCaptor<VariantMetricInformation> captor = ArgumentCaptor.forClass(VariantMetricInformation.class);
+        verify(dispatchVariantMetricEvent).fire(captor.capture());
+        final VariantMetricInformation variantMetric = captor.getValue();
+        assertThat(variantMetric.getVariantID()).isEqualTo("variant");
+        assertThat(variantMetric.getReceivers()).isEqualTo(0L);
+        assertThat(variantMetric.getDeliveryStatus()).isFalse();
+        assertThat(variantMetric.getReason()).isEqualTo(PushMessageStateRegistry.CANCELLED_REASON);
+        // still counted as served, so that the metrics collection completes
+        assertThat(variantMetric.getServedBatches()).isEqualTo(1);
+        verify(triggerVariantMetricCollection).fire(any(TriggerVariantMetricCollectionEvent.class));
+    }
+
+    @Test
+    public void dropsExpiredBatch() {
+        final MessageHolderWithTokens expiredMsg = new MessageHolderWithTokens(msg.getPushMessageInformation(), msg.getUnifiedPushMessage(), msg.getVariant(),
+                msg.getDeviceTokens(), 1, System.currentTimeMillis() - 1);
+
+        dispatcher.sendMessagesToPushNetwork(expiredMsg);
+
+        verifyZeroInteractions(senders, senderConfiguration);
+
+        final ArgumentCaptor<VariantMetricInformation> captor = ArgumentCaptor.forClass(VariantMetricInformation.class);
+        verify(dispatchVariantMetricEvent).fire(captor.capture());
+        final VariantMetricInformation variantMetric = captor.getValue();
+        // the skipped devices are only counted as expired, not as receivers
+        assertThat(variantMetric.getReceivers()).isEqualTo(0L);
+        assertThat(variantMetric.getExpiredReceivers()).isEqualTo(2L);
+        assertThat(variantMetric.getDeliveryStatus()).isFalse();
+        assertThat(variantMetric.getReason()).isEqualTo(MessageHolderWithVariants.EXPIRED_REASON);
+        assertThat(variantMetric.getServedBatches()).isEqualTo(1);
+    }
+}
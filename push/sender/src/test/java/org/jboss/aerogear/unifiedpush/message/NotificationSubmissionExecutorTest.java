@@ -0,0 +1,160 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.message.NotificationSubmissionExecutor.SubmissionCallback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NotificationSubmissionExecutorTest {
+
+    @Mock
+    private NotificationSubmissionWorker worker;
+
+    @Mock
+    private NotificationRouter notificationRouter;
+
+    @Mock
+    private IdempotencyKeyStore idempotencyKeyStore;
+
+    @Mock
+    private PipelineTimings pipelineTimings;
+
+    @InjectMocks
+    private NotificationSubmissionExecutor executor;
+
+    private PushApplication pushApplication;
+    private InternalUnifiedPushMessage message;
+
+    @Before
+    public void setUp() {
+        // read when the executor is created
+        System.setProperty(NotificationSubmissionExecutor.AEROGEAR_SENDER_SUBMIT_QUEUE, "1");
+        MockitoAnnotations.initMocks(this);
+
+        pushApplication = new PushApplication();
+        message = new InternalUnifiedPushMessage();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(NotificationSubmissionExecutor.AEROGEAR_SENDER_SUBMIT_QUEUE);
+    }
+
+    @Test
+    public void submitsMessageAndReportsItsID() {
+        runSubmissionsImmediately();
+        when(notificationRouter.submit(pushApplication, message)).thenReturn("pmi-1");
+        final SubmissionCallback callback = mock(SubmissionCallback.class);
+
+        assertThat(executor.submit(pushApplication, message, callback)).isTrue();
+
+        verify(callback).onSubmitted(Collections.singletonList("pmi-1"));
+    }
+
+    @Test
+    public void submitsMessageWithSameIdempotencyKeyOnce() {
+        runSubmissionsImmediately();
+        rememberIdempotencyKeys();
+        pushApplication.setPushApplicationID("app");
+        message.setIdempotencyKey("retry-key");
+        when(notificationRouter.submit(pushApplication, message)).thenReturn("pmi-1");
+        final SubmissionCallback first = mock(SubmissionCallback.class);
+        final SubmissionCallback retry = mock(SubmissionCallback.class);
+
+        executor.submit(pushApplication, message, first);
+        executor.submit(pushApplication, message, retry);
+
+        // a single push message information, reported to both requests
+        verify(notificationRouter, times(1)).submit(pushApplication, message);
+        verify(first).onSubmitted(Collections.singletonList("pmi-1"));
+        verify(retry).onSubmitted(Collections.singletonList("pmi-1"));
+    }
+
+    @Test
+    public void dropsSubmissionThatWaitedTooLong() {
+        runSubmissionsImmediately();
+        executor.maxQueueTime = -1;
+        final SubmissionCallback callback = mock(SubmissionCallback.class);
+
+        assertThat(executor.submit(pushApplication, message, callback)).isTrue();
+
+        // the request was answered already, the message must not be sent
+        verify(callback).onExpired();
+        verify(notificationRouter, never()).submit(pushApplication, message);
+        assertThat(executor.status().getResult()).contains("0 pending").contains("1 expired");
+    }
+
+    @Test
+    public void rejectsSubmissionsBeyondTheQueue() {
+        // the first submission stays pending
+        assertThat(executor.submit(pushApplication, message, mock(SubmissionCallback.class))).isTrue();
+
+        assertThat(executor.submit(pushApplication, message, mock(SubmissionCallback.class))).isFalse();
+        assertThat(executor.status().getResult()).contains("1 pending").contains("1 rejected");
+    }
+
+    private void rememberIdempotencyKeys() {
+        final Map<String, String> keys = new HashMap<String, String>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                final Object[] arguments = invocation.getArguments();
+                keys.put(arguments[0] + "/" + arguments[1], (String) arguments[2]);
+                return null;
+            }
+        }).when(idempotencyKeyStore).put(anyString(), anyString(), anyString());
+        when(idempotencyKeyStore.find(anyString(), anyString())).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                final Object[] arguments = invocation.getArguments();
+                return keys.get(arguments[0] + "/" + arguments[1]);
+            }
+        });
+    }
+
+    private void runSubmissionsImmediately() {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(worker).run(any(Runnable.class));
+    }
+}
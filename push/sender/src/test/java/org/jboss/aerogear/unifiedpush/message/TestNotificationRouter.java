@@ -17,12 +17,16 @@
 package org.jboss.aerogear.unifiedpush.message;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -35,12 +39,21 @@ import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
 import org.jboss.aerogear.unifiedpush.api.PushApplication;
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
 import org.jboss.aerogear.unifiedpush.api.SimplePushVariant;
+import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
 import org.jboss.aerogear.unifiedpush.api.iOSVariant;
 import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
+import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
+import org.jboss.aerogear.unifiedpush.message.event.DirectDispatchEvent;
 import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHoldersWithVariants;
 import org.jboss.aerogear.unifiedpush.message.jms.DispatchToQueue;
 import org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender;
+import org.jboss.aerogear.unifiedpush.message.sender.SenderType;
+import org.jboss.aerogear.unifiedpush.message.sender.SenderTypeLiteral;
+import org.jboss.aerogear.unifiedpush.message.sender.SinkPushNotificationSender;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
 import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
 import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
 import org.jboss.aerogear.unifiedpush.test.archive.UnifiedPushArchive;
@@ -50,6 +63,7 @@ import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 
 @RunWith(Arquillian.class)
@@ -59,7 +73,9 @@ public class TestNotificationRouter {
     public static WebArchive archive() {
         return UnifiedPushArchive.forTestClass(TestNotificationRouter.class)
                 .withMessaging()
-                    .addClasses(NotificationRouter.class, PushNotificationSender.class)
+                    .addClasses(NotificationRouter.class, DirectDispatcher.class, DirectDispatchEvent.class, PushNotificationSender.class)
+                    .addPackage(SenderConfiguration.class.getPackage())
+                    .addClasses(SenderType.class, SenderTypeLiteral.class, SinkPushNotificationSender.class)
                     .addClasses(PushMessageMetricsService.class)
                 .withMockito()
                     .addClasses(MockProviders.class)
@@ -123,41 +139,171 @@ public class TestNotificationRouter {
         // given
         countDownLatch = new CountDownLatch(2);
         SimplePushVariant simplePushVariant = new SimplePushVariant();
-        simplePushVariant.setId("id-simplepush-variant");
+        simplePushVariant.setVariantID("id-simplepush-variant");
         iOSVariant iOSVariant = new iOSVariant();
-        iOSVariant.setId("id-ios-variant");
+        iOSVariant.setVariantID("id-ios-variant");
         AndroidVariant androidVariant = new AndroidVariant();
-        androidVariant.setId("id-android-variant");
+        androidVariant.setVariantID("id-android-variant");
 
         app.getVariants().addAll(Arrays.asList(simplePushVariant, iOSVariant, androidVariant));
         message.getCriteria().setVariants(Arrays.asList("id-ios-variant", "id-android-variant"));
 
-        when(genericVariantService.findByVariantID("id-ios-variant")).thenReturn(iOSVariant);
-        when(genericVariantService.findByVariantID("id-android-variant")).thenReturn(androidVariant);
-        when(genericVariantService.findByVariantID("id-simplepush-variant")).thenReturn(simplePushVariant);
+        // when
+        router.submit(app, message);
+        countDownLatch.await(3, TimeUnit.SECONDS);
+        assertEquals(variants(VariantType.ANDROID, VariantType.IOS), variantTypeHolder.getVariantTypes());
+    }
+
+    @Test
+    public void testVariantIDsOfApplicationAreNotLoadedAgain(GenericVariantService genericVariantService) throws InterruptedException {
+        // given
+        countDownLatch = new CountDownLatch(1);
+        iOSVariant iOSVariant = new iOSVariant();
+        iOSVariant.setVariantID("id-ios-variant");
+
+        app.getVariants().add(iOSVariant);
+        message.getCriteria().setVariants(Arrays.asList("id-ios-variant"));
+
+        // when
+        router.submit(app, message);
+        countDownLatch.await(3, TimeUnit.SECONDS);
+        assertEquals(variants(VariantType.IOS), variantTypeHolder.getVariantTypes());
+
+        // the variants of the application are already loaded
+        verify(genericVariantService, Mockito.never()).findAllVariantsByIDs(Mockito.anyListOf(String.class));
+    }
+
+    @Test
+    public void testVariantIDsOutsideOfApplicationAreLoadedAtOnce(GenericVariantService genericVariantService) throws InterruptedException {
+        // given
+        countDownLatch = new CountDownLatch(2);
+        iOSVariant iOSVariant = new iOSVariant();
+        iOSVariant.setVariantID("id-ios-variant");
+        AndroidVariant androidVariant = new AndroidVariant();
+        androidVariant.setVariantID("id-android-variant");
+
+        message.getCriteria().setVariants(Arrays.asList("id-ios-variant", "id-android-variant", "id-unknown-variant"));
+        when(genericVariantService.findAllVariantsByIDs(Arrays.asList("id-ios-variant", "id-android-variant", "id-unknown-variant")))
+                .thenReturn(Arrays.<Variant>asList(iOSVariant, androidVariant));
 
         // when
         router.submit(app, message);
         countDownLatch.await(3, TimeUnit.SECONDS);
         assertEquals(variants(VariantType.ANDROID, VariantType.IOS), variantTypeHolder.getVariantTypes());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAliasMessageIsDeliveredDirectly(ClientInstallationService clientInstallationService, PushMessageInformationDao pushMessageInformationDao) throws Exception {
+        // given
+        countDownLatch = new CountDownLatch(1);
+        AndroidVariant androidVariant = new AndroidVariant();
+        androidVariant.setVariantID("android-variant");
+        app.getVariants().add(androidVariant);
+        message.getCriteria().setAliases(Arrays.asList("someone@example.com"));
+
+        ResultsStream.QueryBuilder<String> queryBuilder = Mockito.mock(ResultsStream.QueryBuilder.class);
+        ResultsStream<String> emptyStream = Mockito.mock(ResultsStream.class);
+        when(emptyStream.next()).thenReturn(false);
+        when(queryBuilder.executeQuery()).thenReturn(emptyStream);
+        when(clientInstallationService.findAllDeviceTokenForVariantIDByCriteria(Mockito.eq("android-variant"), Mockito.anyList(), Mockito.anyList(), Mockito.anyList(), Mockito.anyInt(), (String) Mockito.isNull()))
+                .thenReturn(queryBuilder);
+
+        // when
+        router.submit(app, message);
 
+        // then
+        assertFalse("message should not be queued", countDownLatch.await(1, TimeUnit.SECONDS));
+        assertEquals(variants(), variantTypeHolder.getVariantTypes());
+        verify(pushMessageInformationDao).update(Mockito.any(PushMessageInformation.class));
+    }
+
+    @Test
+    public void testCollapsibleAliasMessageIsQueuedForCollapseWindow(PushMessageInformationDao pushMessageInformationDao) throws InterruptedException {
+        // given
+        countDownLatch = new CountDownLatch(1);
+        AndroidVariant androidVariant = new AndroidVariant();
+        androidVariant.setVariantID("android-variant");
+        app.getVariants().add(androidVariant);
+        app.setCollapseWindow(5);
+        message.getCriteria().setAliases(Arrays.asList("someone@example.com"));
+        message.getMessage().setConsolidationKey("score");
+
+        // when
+        router.submit(app, message);
+        countDownLatch.await(3, TimeUnit.SECONDS);
+
+        // then
+        assertEquals(variants(VariantType.ANDROID), variantTypeHolder.getVariantTypes());
+        assertTrue("message should be held back", variantTypeHolder.getDeliveryDelay() > 0);
+        verify(pushMessageInformationDao).create(Mockito.argThat(new ArgumentMatcher<PushMessageInformation>() {
+            @Override
+            public boolean matches(Object argument) {
+                return "someone@example.com/score".equals(((PushMessageInformation) argument).getCollapseKey());
+            }
+        }));
+    }
+
+    @Test
+    public void testBatchIsQueuedOncePerVariantType() throws InterruptedException {
+        // given
+        countDownLatch = new CountDownLatch(2);
+        app.getVariants().add(new AndroidVariant());
+        app.getVariants().add(new iOSVariant());
+        app.getVariants().add(new iOSVariant());
+
+        // when
+        List<String> pushMessageInformationIDs = router.submit(app, Arrays.asList(message, new InternalUnifiedPushMessage()));
+        countDownLatch.await(3, TimeUnit.SECONDS);
+
+        // then
+        assertEquals(2, pushMessageInformationIDs.size());
+        assertFalse(pushMessageInformationIDs.get(0).equals(pushMessageInformationIDs.get(1)));
+        assertEquals(variants(VariantType.ANDROID, VariantType.IOS), variantTypeHolder.getVariantTypes());
+        assertEquals(2, variantTypeHolder.getHolderCount(VariantType.ANDROID));
+        assertEquals(2, variantTypeHolder.getHolderCount(VariantType.IOS));
     }
 
     public void observeMessageHolderWithVariants(@Observes @DispatchToQueue MessageHolderWithVariants msg) {
         variantTypeHolder.addVariantType(msg.getVariantType());
+        variantTypeHolder.setDeliveryDelay(msg.getDeliveryDelay());
+        countDownLatch.countDown();
+    }
+
+    public void observeMessageHoldersWithVariants(@Observes @DispatchToQueue MessageHoldersWithVariants msgs) {
+        for (MessageHolderWithVariants msg : msgs.getHolders()) {
+            assertEquals(msgs.getVariantType(), msg.getVariantType());
+            variantTypeHolder.addVariantType(msg.getVariantType());
+        }
+        variantTypeHolder.addHolderCount(msgs.getVariantType(), msgs.getHolders().size());
         countDownLatch.countDown();
     }
 
     @RequestScoped
     public static class VariantTypesHolder {
         private Set<VariantType> variantTypes = new HashSet<VariantType>();
+        private Map<VariantType, Integer> holderCounts = new EnumMap<VariantType, Integer>(VariantType.class);
+        private long deliveryDelay;
 
         public void addVariantType(VariantType variantType) {
             this.variantTypes.add(variantType);
         }
+        public void addHolderCount(VariantType variantType, int count) {
+            this.holderCounts.put(variantType, getHolderCount(variantType) + count);
+        }
+        public int getHolderCount(VariantType variantType) {
+            final Integer count = holderCounts.get(variantType);
+            return count == null ? 0 : count;
+        }
         public Set<VariantType> getVariantTypes() {
             return variantTypes;
         }
+        public void setDeliveryDelay(long deliveryDelay) {
+            this.deliveryDelay = deliveryDelay;
+        }
+        public long getDeliveryDelay() {
+            return deliveryDelay;
+        }
     }
 
     private Set<VariantType> variants(VariantType... types) {
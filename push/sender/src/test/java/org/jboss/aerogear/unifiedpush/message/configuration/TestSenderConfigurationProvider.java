@@ -17,6 +17,8 @@
 package org.jboss.aerogear.unifiedpush.message.configuration;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -35,4 +37,47 @@ public class TestSenderConfigurationProvider {
             System.clearProperty("aerogear.android.batchSize");
         }
     }
+
+    @Test
+    public void testSinkIsDisabledByDefault() {
+        SenderConfiguration configuration = provider.produceIosConfiguration();
+        assertFalse(configuration.sink());
+        assertEquals(0, configuration.sinkLatency());
+        assertEquals(0, configuration.sinkErrorRate());
+    }
+
+    @Test
+    public void testGlobalSinkConfigurationIsOverriddenPerNetwork() {
+        try {
+            System.setProperty("aerogear.sender.sink", "true");
+            System.setProperty("aerogear.sender.sinkLatency", "20");
+            System.setProperty("aerogear.ios.sinkLatency", "100");
+            System.setProperty("aerogear.android.sink", "false");
+
+            SenderConfiguration ios = provider.produceIosConfiguration();
+            assertTrue(ios.sink());
+            assertEquals(100, ios.sinkLatency());
+
+            SenderConfiguration adm = provider.produceAdmConfiguration();
+            assertTrue(adm.sink());
+            assertEquals(20, adm.sinkLatency());
+
+            assertFalse(provider.produceAndroidConfiguration().sink());
+        } finally {
+            System.clearProperty("aerogear.sender.sink");
+            System.clearProperty("aerogear.sender.sinkLatency");
+            System.clearProperty("aerogear.ios.sinkLatency");
+            System.clearProperty("aerogear.android.sink");
+        }
+    }
+
+    @Test
+    public void testSinkErrorRateSanitization() {
+        try {
+            System.setProperty("aerogear.ios.sinkErrorRate", "150");
+            assertEquals(100, provider.produceIosConfiguration().sinkErrorRate());
+        } finally {
+            System.clearProperty("aerogear.ios.sinkErrorRate");
+        }
+    }
 }
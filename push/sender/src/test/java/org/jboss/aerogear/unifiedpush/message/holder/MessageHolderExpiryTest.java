@@ -0,0 +1,70 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.holder;
+
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageHolderExpiryTest {
+
+    @Test
+    public void testNoExpiryWithoutTimeToLive() {
+        final MessageHolderWithVariants holder = new MessageHolderWithVariants(null, new UnifiedPushMessage(), VariantType.ANDROID, Collections.<Variant>emptyList());
+
+        assertThat(holder.getExpiryTime()).isEqualTo(AbstractMessageHolder.NO_EXPIRY);
+        assertThat(holder.isExpired()).isFalse();
+    }
+
+    @Test
+    public void testNoExpiryForZeroTimeToLive() {
+        final UnifiedPushMessage message = new UnifiedPushMessage();
+        message.getConfig().setTimeToLive(0);
+
+        assertThat(AbstractMessageHolder.expiryTimeOf(message)).isEqualTo(AbstractMessageHolder.NO_EXPIRY);
+    }
+
+    @Test
+    public void testExpiryFromTimeToLive() {
+        final UnifiedPushMessage message = new UnifiedPushMessage();
+        message.getConfig().setTimeToLive(60);
+
+        final long before = System.currentTimeMillis();
+        final MessageHolderWithVariants holder = new MessageHolderWithVariants(null, message, VariantType.ANDROID, Collections.<Variant>emptyList());
+
+        assertThat(holder.getExpiryTime()).isBetween(before + 60000L, System.currentTimeMillis() + 60000L);
+        assertThat(holder.isExpired()).isFalse();
+    }
+
+    @Test
+    public void testExpiryIsKeptForSubsequentBatches() {
+        final UnifiedPushMessage message = new UnifiedPushMessage();
+        message.getConfig().setTimeToLive(60);
+        final long elapsed = System.currentTimeMillis() - 1;
+
+        final MessageHolderWithTokens holder = new MessageHolderWithTokens(null, message, null, new TreeSet<String>(), 1, elapsed);
+
+        assertThat(holder.getExpiryTime()).isEqualTo(elapsed);
+        assertThat(holder.isExpired()).isTrue();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.holder;
+
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageHolderSchedulingTest {
+
+    @Test
+    public void testScheduledDelivery() {
+        final UnifiedPushMessage message = new UnifiedPushMessage();
+        final long sendTime = System.currentTimeMillis() + 3600000L;
+        message.getConfig().setSendTime(new Date(sendTime));
+        message.getConfig().setTimeToLive(60);
+
+        final MessageHolderWithVariants holder = new MessageHolderWithVariants(null, message, VariantType.ANDROID, Collections.<Variant>emptyList());
+
+        assertThat(holder.getDeliveryTime()).isEqualTo(sendTime);
+        assertThat(holder.getDeliveryDelay()).isPositive();
+        // the time-to-live starts at the send time
+        assertThat(holder.getExpiryTime()).isEqualTo(sendTime + 60000L);
+    }
+
+    @Test
+    public void testImmediateDeliveryOfSubsequentRequests() {
+        final UnifiedPushMessage message = new UnifiedPushMessage();
+        message.getConfig().setSendTime(new Date(System.currentTimeMillis() + 3600000L));
+
+        final MessageHolderWithVariants holder = new MessageHolderWithVariants(null, message, VariantType.ANDROID, Collections.<Variant>emptyList(), 10, "token", AbstractMessageHolder.NO_EXPIRY);
+
+        assertThat(holder.getDeliveryTime()).isEqualTo(AbstractMessageHolder.IMMEDIATE_DELIVERY);
+        assertThat(holder.getDeliveryDelay()).isEqualTo(0);
+        assertThat(holder.getBatchInterval()).isEqualTo(0);
+    }
+}
@@ -16,7 +16,9 @@
  */
 package org.jboss.aerogear.unifiedpush.message.jms;
 
+import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
 import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
+import org.jboss.aerogear.unifiedpush.dao.VariantMetricInformationDao;
 import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.dao.ResultsStream.QueryBuilder;
 import org.jboss.aerogear.unifiedpush.message.util.JmsClient;
@@ -43,6 +45,26 @@ public class MocksForTokenLoaderTransactionFailForGCM  {
     @Inject
     private JmsClient jmsClient;
 
+    /**
+     * Returns mock {@link PushMessageInformationDao} without any paused or cancelled push messages
+     *
+     * @return mock {@link PushMessageInformationDao}
+     */
+    @Produces
+    public PushMessageInformationDao getPushMessageInformationDao() {
+        return mock(PushMessageInformationDao.class);
+    }
+
+    /**
+     * Returns mock {@link VariantMetricInformationDao}
+     *
+     * @return mock {@link VariantMetricInformationDao}
+     */
+    @Produces
+    public VariantMetricInformationDao getVariantMetricInformationDao() {
+        return mock(VariantMetricInformationDao.class);
+    }
+
     /**
      * Returns mock {@link ClientInstallationService} that generates fake unique Android tokens
      *
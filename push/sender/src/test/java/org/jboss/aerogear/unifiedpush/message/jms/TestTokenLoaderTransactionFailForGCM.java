@@ -32,6 +32,8 @@ import org.jboss.aerogear.unifiedpush.message.token.TokenLoader;
 import org.jboss.aerogear.unifiedpush.message.token.TokenLoaderUtils;
 import org.jboss.aerogear.unifiedpush.message.util.JmsClient;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageStateRegistry;
 import org.jboss.aerogear.unifiedpush.test.archive.UnifiedPushArchive;
 import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
 import org.jboss.arquillian.container.test.api.Deployment;
@@ -98,6 +100,7 @@ public class TestTokenLoaderTransactionFailForGCM extends AbstractJMSTest {
                 .withMessaging()
                 .withMessageDrivenBeans()
                 .addClasses(TokenLoaderUtils.class, TokenLoader.class, ClientInstallationService.class, SenderTypeLiteral.class, SenderType.class)
+                .addClasses(PushMessageStateRegistry.class, PushMessageMetricsService.class)
                 .addClasses(SenderConfiguration.class, SenderConfigurationProvider.class)
                 .withMockito()
                     .addClass(MocksForTokenLoaderTransactionFailForGCM.class)
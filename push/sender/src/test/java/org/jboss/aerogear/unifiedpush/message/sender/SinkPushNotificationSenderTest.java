@@ -0,0 +1,74 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
+import org.junit.Test;
+
+public class SinkPushNotificationSenderTest {
+
+    @Test
+    public void sinkReportsSuccessAfterLatency() {
+        final CountingCallback callback = send(new SenderConfiguration(10, 1000, true, 50, 0));
+        assertEquals(1, callback.successes);
+        assertEquals(0, callback.errors);
+        assertTrue(callback.elapsed >= 50);
+    }
+
+    @Test
+    public void sinkReportsSyntheticErrors() {
+        final CountingCallback callback = send(new SenderConfiguration(10, 1000, true, 0, 100));
+        assertEquals(0, callback.successes);
+        assertEquals(1, callback.errors);
+        assertEquals(SinkPushNotificationSender.SYNTHETIC_ERROR, callback.reason);
+    }
+
+    private CountingCallback send(SenderConfiguration configuration) {
+        final AndroidVariant variant = new AndroidVariant();
+        variant.setVariantID("variant");
+        final CountingCallback callback = new CountingCallback();
+        final long start = System.currentTimeMillis();
+        new SinkPushNotificationSender(configuration).sendPushMessage(variant, Arrays.asList("token1", "token2"), new UnifiedPushMessage(), "pmi", callback);
+        callback.elapsed = System.currentTimeMillis() - start;
+        return callback;
+    }
+
+    private static class CountingCallback implements NotificationSenderCallback {
+        private int successes;
+        private int errors;
+        private String reason;
+        private long elapsed;
+
+        @Override
+        public void onSuccess() {
+            successes++;
+        }
+
+        @Override
+        public void onError(String reason) {
+            errors++;
+            this.reason = reason;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.token;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.message.PipelineTimings;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.configuration.SenderConfiguration;
+import org.jboss.aerogear.unifiedpush.message.event.AllBatchesLoadedEvent;
+import org.jboss.aerogear.unifiedpush.message.event.BatchLoadedEvent;
+import org.jboss.aerogear.unifiedpush.message.event.TriggerVariantMetricCollectionEvent;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithTokens;
+import org.jboss.aerogear.unifiedpush.message.holder.MessageHolderWithVariants;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageStateRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.ejb.EJBContext;
+import javax.enterprise.event.Event;
+import javax.enterprise.inject.Instance;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class TokenLoaderTest {
+
+    @Mock
+    private ClientInstallationService clientInstallationService;
+
+    @Mock
+    private PushMessageStateRegistry stateRegistry;
+
+    @Mock
+    private PushMessageMetricsService metricsService;
+
+    @Mock
+    private Event<MessageHolderWithTokens> dispatchTokensEvent;
+
+    @Mock
+    private Event<MessageHolderWithVariants> nextBatchEvent;
+
+    @Mock
+    private Event<BatchLoadedEvent> batchLoaded;
+
+    @Mock
+    private Event<AllBatchesLoadedEvent> allBatchesLoaded;
+
+    @Mock
+    private Event<TriggerVariantMetricCollectionEvent> triggerVariantMetricCollection;
+
+    @Mock
+    private Event<VariantMetricInformation> dispatchVariantMetricEvent;
+
+    @Mock
+    private Instance<SenderConfiguration> senderConfiguration;
+
+    @Mock
+    private PipelineTimings pipelineTimings;
+
+    @Mock
+    private EJBContext context;
+
+    @InjectMocks
+    private TokenLoader tokenLoader;
+
+    private MessageHolderWithVariants msg;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(senderConfiguration.select(any(Annotation.class))).thenReturn(senderConfiguration);
+
+        final PushMessageInformation pushMessageInformation = new PushMessageInformation();
+        pushMessageInformation.setId("pmi");
+        pushMessageInformation.setPushApplicationId("app");
+
+        final AndroidVariant variant = new AndroidVariant();
+        variant.setVariantID("variant");
+
+        msg = new MessageHolderWithVariants(pushMessageInformation, new UnifiedPushMessage(), VariantType.ANDROID, Collections.<Variant>singletonList(variant));
+    }
+
+    @Test
+    public void rollsBackTokenLoadingOfPausedPushMessage() {
+        when(stateRegistry.isPaused("pmi")).thenReturn(true);
+
+        tokenLoader.loadAndQueueTokenBatch(msg);
+
+        // the request is redelivered, nothing is loaded or recorded until then
+        verify(context).setRollbackOnly();
+        verifyZeroInteractions(clientInstallationService, dispatchTokensEvent, allBatchesLoaded, dispatchVariantMetricEvent);
+    }
+
+    @Test
+    public void skipsVariantsOfCancelledPushMessage() {
+        when(stateRegistry.isCancelled("pmi")).thenReturn(true);
+
+        tokenLoader.loadAndQueueTokenBatch(msg);
+
+        verify(context, never()).setRollbackOnly();
+        verifyZeroInteractions(clientInstallationService, dispatchTokensEvent);
+        verify(allBatchesLoaded).fire(any(AllBatchesLoadedEvent.class));
+        final VariantMetricInformation variantMetric = recordedVariantMetric();
+        assertThat(variantMetric.getDeliveryStatus()).isFalse();
+        assertThat(variantMetric.getReason()).isEqualTo(PushMessageStateRegistry.CANCELLED_REASON);
+    }
+
+    @Test
+    public void completesVariantsOfCollapsedPushMessage() {
+        msg.getPushMessageInformation().setCollapseKey("mike/score");
+        when(metricsService.findLatestIdByCollapseKey("app", "mike/score")).thenReturn("newer-pmi");
+
+        tokenLoader.loadAndQueueTokenBatch(msg);
+
+        verify(metricsService).markCollapsed("pmi");
+        verifyZeroInteractions(clientInstallationService, dispatchTokensEvent);
+        verify(allBatchesLoaded).fire(any(AllBatchesLoadedEvent.class));
+        // not recorded as a failed delivery
+        final VariantMetricInformation variantMetric = recordedVariantMetric();
+        assertThat(variantMetric.getDeliveryStatus()).isTrue();
+        assertThat(variantMetric.getReason()).contains("newer-pmi");
+    }
+
+    private VariantMetricInformation recordedVariantMetric() {
+        final ArgumentCaptor<VariantMetricInformation> captor = ArgumentCaptor.forClass(VariantMetricInformation.class);
+        verify(dispatchVariantMetricEvent).fire(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -23,6 +23,7 @@ import org.jboss.aerogear.unifiedpush.message.Config;
 import org.jboss.aerogear.unifiedpush.message.Criteria;
 import org.jboss.aerogear.unifiedpush.message.InternalUnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.Message;
+import org.jboss.aerogear.unifiedpush.message.PipelineTimings;
 import org.jboss.aerogear.unifiedpush.message.Priority;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
 import org.jboss.aerogear.unifiedpush.message.jms.AbstractJMSMessageConsumer;
@@ -37,6 +38,10 @@ import org.jboss.aerogear.unifiedpush.message.jms.MessageHolderWithVariantsConsu
 import org.jboss.aerogear.unifiedpush.message.jms.MessageHolderWithVariantsProducer;
 import org.jboss.aerogear.unifiedpush.message.jms.TriggerMetricCollectionConsumer;
 import org.jboss.aerogear.unifiedpush.message.util.JmsClient;
+import org.jboss.aerogear.unifiedpush.service.cache.CategoriesCreatedEvent;
+import org.jboss.aerogear.unifiedpush.service.cache.PushApplicationChangedEvent;
+import org.jboss.aerogear.unifiedpush.service.cache.VariantChangedEvent;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageStateChangedEvent;
 import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.asset.EmptyAsset;
@@ -73,7 +78,10 @@ public class UnifiedPushArchiveImpl extends UnifiedPushArchiveBase {
             .addPackage(org.jboss.aerogear.unifiedpush.message.holder.AbstractMessageHolder.class.getPackage())
             .addPackage(org.jboss.aerogear.unifiedpush.message.exception.MessageDeliveryException.class.getPackage())
             .addClasses(AbstractJMSMessageProducer.class, AbstractJMSMessageListener.class, AbstractJMSMessageConsumer.class)
-            .addClasses(AbstractJMSTest.class, JmsClient.class, CdiJmsBridge.class)
+            .addClasses(AbstractJMSTest.class, JmsClient.class, CdiJmsBridge.class, VariantChangedEvent.class, PushApplicationChangedEvent.class, CategoriesCreatedEvent.class)
+            .addClasses(PushMessageStateChangedEvent.class)
+            .addClasses(PipelineTimings.class)
+            .addPackage(org.jboss.aerogear.unifiedpush.service.impl.health.HealthDetails.class.getPackage())
             .addClasses(DispatchToQueue.class, Dequeue.class);
     }
 
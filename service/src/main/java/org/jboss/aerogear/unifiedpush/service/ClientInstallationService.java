@@ -20,6 +20,7 @@ import org.jboss.aerogear.unifiedpush.api.Installation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -45,6 +46,26 @@ public interface ClientInstallationService {
      */
     void addInstallations(Variant variant, List<Installation> installations);
 
+    /**
+     * Imports one chunk of Installations in one transaction. Installations without a device token, duplicates within the chunk
+     * and device tokens that are already stored for the variant are ignored, existing installations are not updated.
+     *
+     * @param variant the variant to store on
+     * @param installations the chunk of installations to import
+     *
+     * @return the number of stored installations
+     */
+    int importInstallations(Variant variant, Collection<Installation> installations);
+
+    /**
+     * Stores or updates the given Installations in one transaction, used for (coalesced) device registrations.
+     * Existing installations are only updated when they are enabled, the same as in {@link #addInstallation(Variant, Installation)}.
+     *
+     * @param variant the variant to store on
+     * @param installations installations, at most one per device token
+     */
+    void addOrUpdateInstallations(Variant variant, Collection<Installation> installations);
+
     /**
      * Performs an update/merge on the given entity.
      *
@@ -127,6 +148,15 @@ public interface ClientInstallationService {
      */
     ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch);
 
+    /**
+     * Used for pacing the Sender API. Counts the registered devices of a given variant, regardless of any criteria.
+     *
+     * @param variantID the variantID
+     *
+     * @return number of devices of the variant
+     */
+    long countDevicesForVariantID(String variantID);
+
     /**
      * Used to query all old GCM tokens, which do not contain a ':' char.
      * Queries the available device-tokens for a given variant, based on provided criteria.
@@ -18,6 +18,8 @@ package org.jboss.aerogear.unifiedpush.service;
 
 import org.jboss.aerogear.unifiedpush.api.Variant;
 
+import java.util.List;
+
 /**
  * Service class that offers functionality to deal with the different variants (e.g. Android, iOS or SimplePush variants).
  */
@@ -46,6 +48,15 @@ public interface GenericVariantService {
      */
     Variant findByVariantID(String variantID);
 
+    /**
+     * Returns the Variant entities, matching the given variantIDs, in one query.
+     *
+     * @param variantIDs the ids
+     *
+     * @return the variants, unknown ids are skipped
+     */
+    List<Variant> findAllVariantsByIDs(List<String> variantIDs);
+
     /**
      * Removes the given variant entity.
      *
@@ -21,6 +21,7 @@ import java.util.List;
 import org.jboss.aerogear.unifiedpush.api.Installation;
 import org.jboss.aerogear.unifiedpush.api.PushApplication;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 import org.jboss.aerogear.unifiedpush.service.dashboard.Application;
 import org.jboss.aerogear.unifiedpush.service.dashboard.ApplicationVariant;
@@ -95,5 +96,14 @@ public interface PushSearchService {
      */
     PageResult<Installation, Count> findAllInstallationsByVariantForDeveloper(String variantID, Integer page, Integer pageSize, String search);
 
+    /**
+     * Streams all installations for the variant specified, without loading them at once. Used for exporting the installations.
+     *
+     * @param variantID the id of the variant to find the installations for
+     *
+     * @return builder for the stream of installations
+     */
+    ResultsStream.QueryBuilder<Installation> streamAllInstallationsByVariantForDeveloper(String variantID);
+
 
 }
@@ -0,0 +1,186 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+import org.jboss.aerogear.unifiedpush.utils.HashUtils;
+
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for bounded, expiring caches of entities that are used to authenticate API requests.
+ *
+ * Next to a copy of the entity, a SHA-256 hash of its secret is kept, so that authentication does not need the database.
+ *
+ * @param <T> the type of the cached entity
+ */
+public abstract class AbstractAuthenticatedCache<T> {
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(getClass());
+
+    private final int maxSize;
+    private final long ttl;
+
+    private final ConcurrentMap<String, CachedEntry<T>> entries = new ConcurrentHashMap<String, CachedEntry<T>>();
+
+    /**
+     * @param maxSize the maximum number of cached entities
+     * @param ttlSeconds the number of seconds after which a cached entity is loaded again
+     */
+    protected AbstractAuthenticatedCache(int maxSize, int ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttl = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    /**
+     * Loads the entity with the given id from the database.
+     *
+     * @param id the id, as submitted by the client
+     * @return the entity or null if there is no such entity
+     */
+    protected abstract T load(String id);
+
+    /**
+     * @param entity the loaded entity
+     * @return the secret that the client needs to submit
+     */
+    protected abstract String secretOf(T entity);
+
+    /**
+     * @param entity the loaded entity
+     * @return the copy of the entity that is kept in the cache
+     */
+    protected abstract T copyOf(T entity);
+
+    /**
+     * Returns the entity matching the given id, if the given secret is the secret of that entity.
+     *
+     * @param id the id of the entity
+     * @param secret the secret submitted by the client
+     * @return the cached copy of the entity, or null if there is no such entity or the secret does not match
+     */
+    public T findAuthenticated(String id, String secret) {
+        if (id == null || secret == null) {
+            return null;
+        }
+
+        CachedEntry<T> cached = entries.get(id);
+        if (cached == null || cached.isExpired()) {
+            final T entity = load(id);
+            if (entity == null) {
+                entries.remove(id);
+                return null;
+            }
+            cached = new CachedEntry<T>(copyOf(entity), HashUtils.sha256(secretOf(entity)), System.currentTimeMillis() + ttl);
+            store(id, cached);
+        }
+
+        if (MessageDigest.isEqual(cached.secretHash, HashUtils.sha256(secret))) {
+            return cached.value;
+        }
+        return null;
+    }
+
+    /**
+     * Drops the cached copy of the given entity on this node.
+     *
+     * @param id the id of the entity that was updated or removed
+     */
+    public void invalidate(String id) {
+        if (id != null && entries.remove(id) != null) {
+            logger.finest("Dropped cached entry " + id);
+        }
+    }
+
+    /**
+     * @return the number of cached entities
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return iterator over the cached copies, supporting removal
+     */
+    protected Iterator<T> cachedValues() {
+        final Iterator<CachedEntry<T>> iterator = entries.values().iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next().value;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+            }
+        };
+    }
+
+    private void store(String id, CachedEntry<T> cached) {
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(id, cached);
+    }
+
+    /**
+     * Removes expired entries; when none of them are expired, an arbitrary entry makes room for the new one
+     */
+    private void evict() {
+        boolean evicted = false;
+        final Iterator<CachedEntry<T>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired()) {
+                iterator.remove();
+                evicted = true;
+            }
+        }
+        if (!evicted) {
+            final Iterator<String> ids = entries.keySet().iterator();
+            if (ids.hasNext()) {
+                ids.next();
+                ids.remove();
+            }
+        }
+    }
+
+    private static class CachedEntry<T> {
+        private final T value;
+        private final byte[] secretHash;
+        private final long expiresAt;
+
+        CachedEntry(T value, byte[] secretHash, long expiresAt) {
+            this.value = value;
+            this.secretHash = secretHash;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
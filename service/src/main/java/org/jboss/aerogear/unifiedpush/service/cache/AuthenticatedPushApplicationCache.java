@@ -0,0 +1,102 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Caches the push applications (including their variants) that are used to authenticate requests of the sender API,
+ * so that sending a push message does not need to load the application and its variants for every request.
+ *
+ * Entries expire after the configured TTL (see {@link #AEROGEAR_APPLICATION_CACHE_TTL}) and are dropped on all nodes
+ * of the cluster whenever the application or one of its variants is updated or removed
+ * (see {@link PushApplicationChangedEvent} and {@link VariantChangedEvent}).
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AuthenticatedPushApplicationCache extends AbstractAuthenticatedCache<PushApplication> {
+
+    // system property names used to configure the maximum number of cached applications and their time to live (in seconds)
+    public static final String AEROGEAR_APPLICATION_CACHE_SIZE = "aerogear.application.cache.size";
+    public static final String AEROGEAR_APPLICATION_CACHE_TTL = "aerogear.application.cache.ttl";
+
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final int DEFAULT_CACHE_TTL = 60;
+
+    @Inject
+    private PushApplicationDao pushApplicationDao;
+
+    public AuthenticatedPushApplicationCache() {
+        super(ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_APPLICATION_CACHE_SIZE, DEFAULT_CACHE_SIZE),
+                ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_APPLICATION_CACHE_TTL, DEFAULT_CACHE_TTL));
+    }
+
+    /**
+     * Drops the cached application that contains the given variant on this node.
+     *
+     * @param variantID the id of the variant that was updated or removed
+     */
+    public void invalidateVariant(String variantID) {
+        final Iterator<PushApplication> applications = cachedValues();
+        while (applications.hasNext()) {
+            for (Variant variant : applications.next().getVariants()) {
+                if (variant.getVariantID().equals(variantID)) {
+                    applications.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected PushApplication load(String pushApplicationID) {
+        return pushApplicationDao.findByPushApplicationID(pushApplicationID);
+    }
+
+    @Override
+    protected String secretOf(PushApplication pushApplication) {
+        return pushApplication.getMasterSecret();
+    }
+
+    /**
+     * Copies the application without its master secret; the variants are kept, since they are needed for sending.
+     */
+    @Override
+    protected PushApplication copyOf(PushApplication pushApplication) {
+        final PushApplication copy = new PushApplication();
+        copy.setId(pushApplication.getId());
+        copy.setPushApplicationID(pushApplication.getPushApplicationID());
+        copy.setName(pushApplication.getName());
+        copy.setDescription(pushApplication.getDescription());
+        copy.setDeveloper(pushApplication.getDeveloper());
+        copy.setMasterSecret(null);
+        copy.setCollapseWindow(pushApplication.getCollapseWindow());
+        copy.setVariants(new ArrayList<Variant>(pushApplication.getVariants()));
+        return copy;
+    }
+}
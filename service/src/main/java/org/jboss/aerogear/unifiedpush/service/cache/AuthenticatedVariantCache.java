@@ -0,0 +1,84 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.dao.VariantDao;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+/**
+ * Caches the variants that are used to authenticate requests of the device registration API,
+ * so that registering, unregistering or importing devices does not need to query the variant hierarchy (and its certificates).
+ *
+ * Only a lightweight copy of each variant (its identifiers and type) is kept, together with a SHA-256 hash of its secret.
+ * Entries expire after the configured TTL (see {@link #AEROGEAR_VARIANT_CACHE_TTL}) and are dropped on all nodes
+ * of the cluster whenever the variant is updated or removed (see {@link VariantChangedEvent}).
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AuthenticatedVariantCache extends AbstractAuthenticatedCache<Variant> {
+
+    // system property names used to configure the maximum number of cached variants and their time to live (in seconds)
+    public static final String AEROGEAR_VARIANT_CACHE_SIZE = "aerogear.variant.cache.size";
+    public static final String AEROGEAR_VARIANT_CACHE_TTL = "aerogear.variant.cache.ttl";
+
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final int DEFAULT_CACHE_TTL = 60;
+
+    @Inject
+    private VariantDao variantDao;
+
+    public AuthenticatedVariantCache() {
+        super(ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_VARIANT_CACHE_SIZE, DEFAULT_CACHE_SIZE),
+                ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_VARIANT_CACHE_TTL, DEFAULT_CACHE_TTL));
+    }
+
+    @Override
+    protected Variant load(String variantID) {
+        return variantDao.findByVariantID(variantID);
+    }
+
+    @Override
+    protected String secretOf(Variant variant) {
+        return variant.getSecret();
+    }
+
+    /**
+     * Copies the identifiers of the given variant into a new instance of the same type, leaving out
+     * the secret and the push network specific settings (e.g. iOS certificates).
+     */
+    @Override
+    protected Variant copyOf(Variant variant) {
+        try {
+            final Variant copy = variant.getClass().newInstance();
+            copy.setId(variant.getId());
+            copy.setVariantID(variant.getVariantID());
+            copy.setName(variant.getName());
+            copy.setDescription(variant.getDescription());
+            copy.setDeveloper(variant.getDeveloper());
+            copy.setSecret(null);
+            return copy;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to copy variant " + variant.getVariantID(), e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Signals that categories were stored, so that all nodes of the cluster reload them into their {@link CategoryDictionary}.
+ */
+public class CategoriesCreatedEvent implements Serializable {
+
+    private static final long serialVersionUID = 7731652098117342095L;
+
+    private List<String> names;
+
+    public CategoriesCreatedEvent(Collection<String> names) {
+        this.names = new ArrayList<String>(names);
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import org.jboss.aerogear.unifiedpush.api.Category;
+import org.jboss.aerogear.unifiedpush.dao.CategoryDao;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary of the stored categories, mapping each category name to the IDs of its persistent {@link Category} rows.
+ *
+ * The dictionary is loaded at startup, so that registrations, imports and push message criteria can resolve
+ * category names without querying the database. New categories are stored in their own transaction
+ * (see {@link #addCategories(Collection)}) and only enter the dictionary once that transaction committed,
+ * so that the dictionary never refers to rows that were rolled back. Names that are not stored at all
+ * (e.g. unknown categories of push message criteria) are remembered as well, up to {@link #MAX_MISSING_NAMES}.
+ *
+ * Since nodes of a cluster may store the same category concurrently, a name can map to more than one ID:
+ * new installations are linked to the lowest one, criteria match all of them. Whenever categories are stored,
+ * a {@link CategoriesCreatedEvent} makes all nodes reload them from the database.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CategoryDictionary {
+
+    static final int MAX_MISSING_NAMES = 10000;
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(CategoryDictionary.class);
+
+    // category IDs per name, sorted ascending; the lists are never modified once stored
+    private final ConcurrentMap<String, List<Long>> categoryIds = new ConcurrentHashMap<String, List<Long>>();
+
+    // names which are known not to be stored
+    private final Set<String> missingNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final Object creationLock = new Object();
+
+    @Inject
+    private CategoryDao categoryDao;
+
+    @Inject
+    private Event<CategoriesCreatedEvent> categoriesCreated;
+
+    @PostConstruct
+    public void loadCategories() {
+        final List<Category> categories = categoryDao.findAll();
+        store(categories);
+        logger.info(String.format("Loaded %d categories", categories.size()));
+    }
+
+    /**
+     * Returns the ID that installations are linked to, for each of the given category names.
+     *
+     * @param names the category names
+     * @return the ID per name; names of categories that are not stored yet are missing
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Map<String, Long> findIds(Collection<String> names) {
+        final Map<String, Long> ids = new HashMap<String, Long>();
+        for (Map.Entry<String, List<Long>> entry : lookup(names, true).entrySet()) {
+            ids.put(entry.getKey(), entry.getValue().get(0));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns all IDs of the given category names, as needed for matching installations by category.
+     *
+     * @param names the category names
+     * @return the IDs; empty when none of the categories is stored
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Long> findAllIds(Collection<String> names) {
+        final List<Long> ids = new ArrayList<Long>();
+        for (List<Long> idsOfName : lookup(names, true).values()) {
+            ids.addAll(idsOfName);
+        }
+        return ids;
+    }
+
+    /**
+     * Stores the given categories, unless they are already stored, and returns their IDs.
+     * Runs in its own transaction; the new categories are added to the dictionary once it committed
+     * (see {@link #categoriesStored(CategoriesCreatedEvent)}).
+     *
+     * @param names the category names
+     * @return the ID that installations are linked to, per name
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Map<String, Long> addCategories(Collection<String> names) {
+        synchronized (creationLock) {
+            // names that were missing before may have been stored by another node meanwhile
+            final Map<String, Long> ids = new HashMap<String, Long>();
+            for (Map.Entry<String, List<Long>> entry : lookup(names, false).entrySet()) {
+                ids.put(entry.getKey(), entry.getValue().get(0));
+            }
+            final List<Category> newCategories = new ArrayList<Category>();
+            for (String name : new LinkedHashSet<String>(names)) {
+                if (!ids.containsKey(name)) {
+                    final Category category = new Category(name);
+                    categoryDao.create(category);
+                    newCategories.add(category);
+                }
+            }
+            if (newCategories.isEmpty()) {
+                return ids;
+            }
+
+            // the IDs are assigned on persist, the rows are written when the transaction commits
+            for (Category category : newCategories) {
+                ids.put(category.getName(), category.getId());
+            }
+
+            logger.fine(String.format("Stored %d new categories", newCategories.size()));
+            categoriesCreated.fire(new CategoriesCreatedEvent(toNames(newCategories)));
+            return ids;
+        }
+    }
+
+    /**
+     * Adds the categories stored by {@link #addCategories(Collection)} to the dictionary, once their transaction committed.
+     * The IDs are read back from the database, which also picks up the same categories stored concurrently.
+     *
+     * @param event the names of the stored categories
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void categoriesStored(@Observes(during = TransactionPhase.AFTER_SUCCESS) CategoriesCreatedEvent event) {
+        store(categoryDao.findByNames(event.getNames()));
+    }
+
+    /**
+     * Drops the given categories, so that they are reloaded from the database on their next use.
+     *
+     * @param names the category names
+     */
+    public void invalidate(Collection<String> names) {
+        categoryIds.keySet().removeAll(names);
+        missingNames.removeAll(names);
+    }
+
+    /**
+     * Returns the IDs of the given names, loading those that are unknown to the dictionary with one query.
+     *
+     * @param skipMissing whether names that are known not to be stored are skipped, instead of being queried again
+     */
+    private Map<String, List<Long>> lookup(Collection<String> names, boolean skipMissing) {
+        final Map<String, List<Long>> ids = new HashMap<String, List<Long>>();
+        final List<String> unknownNames = new ArrayList<String>();
+        for (String name : names) {
+            final List<Long> idsOfName = categoryIds.get(name);
+            if (idsOfName != null) {
+                ids.put(name, idsOfName);
+            } else if (!unknownNames.contains(name) && !(skipMissing && missingNames.contains(name))) {
+                unknownNames.add(name);
+            }
+        }
+
+        if (!unknownNames.isEmpty()) {
+            store(categoryDao.findByNames(unknownNames));
+            for (String name : unknownNames) {
+                final List<Long> idsOfName = categoryIds.get(name);
+                if (idsOfName != null) {
+                    ids.put(name, idsOfName);
+                } else if (missingNames.size() < MAX_MISSING_NAMES) {
+                    missingNames.add(name);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void store(Collection<Category> categories) {
+        final Map<String, List<Long>> idsPerName = new HashMap<String, List<Long>>();
+        for (Category category : categories) {
+            List<Long> ids = idsPerName.get(category.getName());
+            if (ids == null) {
+                ids = new ArrayList<Long>();
+                idsPerName.put(category.getName(), ids);
+            }
+            ids.add(category.getId());
+        }
+
+        missingNames.removeAll(idsPerName.keySet());
+        for (Map.Entry<String, List<Long>> entry : idsPerName.entrySet()) {
+            List<Long> current;
+            List<Long> merged;
+            do {
+                current = categoryIds.get(entry.getKey());
+                final List<Long> ids = new ArrayList<Long>(entry.getValue());
+                if (current != null) {
+                    for (Long id : current) {
+                        if (!ids.contains(id)) {
+                            ids.add(id);
+                        }
+                    }
+                }
+                Collections.sort(ids);
+                merged = Collections.unmodifiableList(ids);
+            } while (current == null ? categoryIds.putIfAbsent(entry.getKey(), merged) != null : !categoryIds.replace(entry.getKey(), current, merged));
+        }
+    }
+
+    private static List<String> toNames(Collection<Category> categories) {
+        final List<String> names = new ArrayList<String>();
+        for (Category category : categories) {
+            names.add(category.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import java.io.Serializable;
+
+/**
+ * Signals that a push application was updated or removed, so that cached copies of it have to be dropped on all nodes of the cluster.
+ */
+public class PushApplicationChangedEvent implements Serializable {
+
+    private static final long serialVersionUID = -2417093658211048593L;
+
+    private String pushApplicationID;
+
+    public PushApplicationChangedEvent(String pushApplicationID) {
+        this.pushApplicationID = pushApplicationID;
+    }
+
+    public String getPushApplicationID() {
+        return pushApplicationID;
+    }
+}
@@ -20,11 +20,11 @@ import org.jboss.aerogear.unifiedpush.api.Category;
 import org.jboss.aerogear.unifiedpush.api.Installation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantType;
-import org.jboss.aerogear.unifiedpush.dao.CategoryDao;
 import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
 import org.jboss.aerogear.unifiedpush.service.annotations.LoggedIn;
+import org.jboss.aerogear.unifiedpush.service.cache.CategoryDictionary;
 import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
 
 import javax.ejb.Asynchronous;
@@ -33,7 +33,13 @@ import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -43,13 +49,16 @@ import java.util.Set;
 @Stateless
 public class ClientInstallationServiceImpl implements ClientInstallationService {
 
+    // number of installations imported in one transaction
+    public static final int IMPORT_CHUNK_SIZE = 1000;
+
     private final AeroGearLogger logger = AeroGearLogger.getInstance(ClientInstallationServiceImpl.class);
 
     @Inject
     private InstallationDao installationDao;
 
     @Inject
-    private CategoryDao categoryDao;
+    private CategoryDictionary categoryDictionary;
 
     @Inject
     @LoggedIn
@@ -58,27 +67,10 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
     @Override
     @Asynchronous
     public void addInstallation(Variant variant, Installation entity) {
+        logger.finest("Performing device/client registration");
 
-        // does it already exist ?
-        Installation installation = this.findInstallationForVariantByDeviceToken(variant.getVariantID(), entity.getDeviceToken());
-
-        // Needed for the Admin UI Only. Help for setting up Routes
-        entity.setPlatform(variant.getType().getTypeName());
-
-        // new device/client ?
-        if (installation == null) {
-            logger.finest("Performing new device/client registration");
-
-            // store the installation:
-            storeInstallationAndSetReferences(variant, entity);
-        } else {
-            // We only update the metadata, if the device is enabled:
-            if (installation.isEnabled()) {
-                logger.finest("Updating received metadata for an 'enabled' installation");
-                // update the entity:
-                this.updateInstallation(installation, entity);
-            }
-        }
+        // new devices are stored, the metadata of existing 'enabled' installations is updated:
+        addOrUpdateInstallations(variant, Collections.singletonList(entity));
     }
 
     @Override
@@ -90,37 +82,73 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
             return;
         }
 
-        Set<String> existingTokens = installationDao.findAllDeviceTokenForVariantID(variant.getVariantID());
+        // the existing tokens are checked chunk by chunk, instead of loading all tokens of the variant
+        for (int i = 0; i < installations.size(); i += IMPORT_CHUNK_SIZE) {
+            importInstallations(variant, installations.subList(i, Math.min(i + IMPORT_CHUNK_SIZE, installations.size())));
+        }
+    }
 
-        // clear out:
-        installationDao.flushAndClear();
+    @Override
+    public int importInstallations(Variant variant, Collection<Installation> installations) {
 
-        for (int i = 0; i < installations.size(); i++) {
+        // let's avoid duplicated tokens/devices per variant
+        final Map<String, Installation> importedInstallations = new LinkedHashMap<String, Installation>();
+        for (Installation installation : installations) {
+            // For devices without a token, let's also not bother the DAO layer to throw BeanValidation exception
+            if (!hasTokenValue(installation)) {
+                continue;
+            }
+            // ensure lower case for iOS
+            if (variant.getType().equals(VariantType.IOS)) {
+                installation.setDeviceToken(installation.getDeviceToken().toLowerCase());
+            }
+            if (!importedInstallations.containsKey(installation.getDeviceToken())) {
+                importedInstallations.put(installation.getDeviceToken(), installation);
+            }
+        }
 
-            Installation current = installations.get(i);
+        // for now, we ignore existing devices.... no update applied!
+        importedInstallations.keySet().removeAll(installationDao.findExistingDeviceTokensForVariant(variant.getVariantID(), importedInstallations.keySet()));
+        if (importedInstallations.isEmpty()) {
+            return 0;
+        }
 
-            // let's avoid duplicated tokens/devices per variant
-            // For devices without a token, let's also not bother the DAO layer to throw BeanValidation exception
-            if (!existingTokens.contains(current.getDeviceToken()) && hasTokenValue(current)) {
+        persistCategories(importedInstallations.values());
+        for (Installation installation : importedInstallations.values()) {
+            logger.finest("Importing device with token: " + installation.getDeviceToken());
+            installation.setVariant(variant);
+            installationDao.create(installation);
+        }
 
-                logger.finest("Importing device with token: " + current.getDeviceToken());
+        // the inserts are sent as JDBC batches, releasing the resources of the chunk:
+        installationDao.flushAndClear();
+        return importedInstallations.size();
+    }
 
-                storeInstallationAndSetReferences(variant, current);
+    @Override
+    public void addOrUpdateInstallations(Variant variant, Collection<Installation> installations) {
 
-                // and add a reference to the existing tokens set, to ensure the JSON file contains no duplicates:
-                existingTokens.add(current.getDeviceToken());
+        // don't bother
+        if (installations == null || installations.isEmpty()) {
+            return;
+        }
 
-                // some tunings, ever 10k devices releasing resources
-                if (i % 10000 == 0) {
-                    logger.finest("releasing some resources during import");
-                    installationDao.flushAndClear();
-                }
-            } else {
-                // for now, we ignore them.... no update applied!
-                logger.finest("Device with token '" + current.getDeviceToken() + "' already exists. Ignoring it ");
+        final Map<String, Installation> postedInstallations = new LinkedHashMap<String, Installation>();
+        for (Installation installation : installations) {
+            // ensure lower case for iOS
+            if (variant.getType().equals(VariantType.IOS)) {
+                installation.setDeviceToken(installation.getDeviceToken().toLowerCase());
             }
+            // Needed for the Admin UI Only. Help for setting up Routes
+            installation.setPlatform(variant.getType().getTypeName());
+            postedInstallations.put(installation.getDeviceToken(), installation);
         }
-        // clear out:
+
+        // the installations are linked to the categories by their IDs
+        persistCategories(postedInstallations.values());
+
+        // one (native) upsert per device, sent as JDBC batch
+        installationDao.upsertInstallations(variant, postedInstallations.values());
         installationDao.flushAndClear();
     }
 
@@ -196,12 +224,27 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
      */
     @Override
     public ResultsStream.QueryBuilder<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch) {
-        return installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, categories, aliases, deviceTypes, maxResults, lastTokenFromPreviousBatch, false);
+        return installationDao.findAllDeviceTokenForVariantIDByCriteriaAndCategoryIDs(variantID, findCategoryIds(categories), aliases, deviceTypes, maxResults, lastTokenFromPreviousBatch, false);
+    }
+
+    @Override
+    public long countDevicesForVariantID(String variantID) {
+        return installationDao.getNumberOfDevicesForVariantID(variantID);
     }
 
     @Override
     public ResultsStream.QueryBuilder<String> findAllOldGoogleCloudMessagingDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes, int maxResults, String lastTokenFromPreviousBatch) {
-        return installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, categories, aliases, deviceTypes, maxResults, lastTokenFromPreviousBatch, true);
+        return installationDao.findAllDeviceTokenForVariantIDByCriteriaAndCategoryIDs(variantID, findCategoryIds(categories), aliases, deviceTypes, maxResults, lastTokenFromPreviousBatch, true);
+    }
+
+    /**
+     * Resolves the category criteria through the {@link CategoryDictionary}, null if the criteria has no categories
+     */
+    private List<Long> findCategoryIds(List<String> categories) {
+        if (categories == null || categories.isEmpty()) {
+            return null;
+        }
+        return categoryDictionary.findAllIds(categories);
     }
 
     /**
@@ -213,48 +256,73 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 
     /**
      * When an installation is created or updated, the categories are passed without IDs.
-     * This method solve this issue by checking for existing categories and updating them (otherwise it would
+     * This method solve this issue by replacing them with their persistent counterparts (otherwise it would
      * persist a new object).
      * @param entity to merge the categories for
      * @param categoriesToMerge are the categories to merge with the existing one
      */
     private void mergeCategories(Installation entity, Set<Category> categoriesToMerge) {
         if (entity.getCategories() != null) {
-            final List<String> categoryNames = convertToNames(categoriesToMerge);
-            final List<Category> existingCategoriesFromDB = categoryDao.findByNames(categoryNames);
-
-            // Replace json dematerialised categories with their persistent counter parts (see Category.equals),
-            // by remove existing/persistent categories from the new collection, and adding them back in (with their PK).
-            categoriesToMerge.removeAll(existingCategoriesFromDB);
-            categoriesToMerge.addAll(existingCategoriesFromDB);
+            final Map<String, Category> categories = resolveCategories(categoriesToMerge);
 
             // and apply the passed in ones.
-            entity.setCategories(categoriesToMerge);
+            entity.setCategories(new HashSet<Category>(categories.values()));
         }
     }
 
-    private List<String> convertToNames(Set<Category> categories) {
-        List<String> result = new ArrayList<String>();
-        for (Category category : categories) {
-            result.add(category.getName());
+    /**
+     * Replaces the categories of the given installations with their persistent counterparts,
+     * storing the categories that don't exist yet.
+     */
+    private void persistCategories(Collection<Installation> installations) {
+        final Set<Category> postedCategories = new HashSet<Category>();
+        for (Installation installation : installations) {
+            if (installation.getCategories() != null) {
+                postedCategories.addAll(installation.getCategories());
+            }
+        }
+        if (postedCategories.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Category> categories = resolveCategories(postedCategories);
+        for (Installation installation : installations) {
+            if (installation.getCategories() != null) {
+                final Set<Category> persistentCategories = new HashSet<Category>();
+                for (Category category : installation.getCategories()) {
+                    persistentCategories.add(categories.get(category.getName()));
+                }
+                installation.setCategories(persistentCategories);
+            }
         }
-        return result;
     }
 
-    /*
-     * Helper to set references and perform the actual storage
+    /**
+     * Looks up the IDs of the given categories in the {@link CategoryDictionary}, storing the categories that don't exist yet.
+     *
+     * @return one category with ID per name
      */
-    private void storeInstallationAndSetReferences(Variant variant, Installation entity) {
+    private Map<String, Category> resolveCategories(Set<Category> postedCategories) {
+        final List<String> names = convertToNames(postedCategories);
+        final Map<String, Long> ids = new HashMap<String, Long>(categoryDictionary.findIds(names));
+        if (ids.size() < postedCategories.size()) {
+            ids.putAll(categoryDictionary.addCategories(names));
+        }
 
-        // ensure lower case for iOS
-        if (variant.getType().equals(VariantType.IOS)) {
-            entity.setDeviceToken(entity.getDeviceToken().toLowerCase());
+        final Map<String, Category> categories = new HashMap<String, Category>();
+        for (Map.Entry<String, Long> entry : ids.entrySet()) {
+            final Category category = new Category(entry.getKey());
+            category.setId(entry.getValue());
+            categories.put(entry.getKey(), category);
         }
-        // set reference
-        entity.setVariant(variant);
-        // update attached categories
-        mergeCategories(entity, entity.getCategories());
-        // store Installation entity
-        installationDao.create(entity);
+        return categories;
+    }
+
+    private List<String> convertToNames(Set<Category> categories) {
+        List<String> result = new ArrayList<String>();
+        for (Category category : categories) {
+            result.add(category.getName());
+        }
+        return result;
     }
 }
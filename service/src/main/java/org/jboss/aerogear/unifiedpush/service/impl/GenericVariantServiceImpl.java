@@ -20,10 +20,15 @@ import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.VariantDao;
 import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
 import org.jboss.aerogear.unifiedpush.service.annotations.LoggedIn;
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedPushApplicationCache;
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedVariantCache;
+import org.jboss.aerogear.unifiedpush.service.cache.VariantChangedEvent;
 
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import java.util.List;
 
 @Stateless
 public class GenericVariantServiceImpl implements GenericVariantService {
@@ -35,6 +40,15 @@ public class GenericVariantServiceImpl implements GenericVariantService {
     @LoggedIn
     private Instance<String> loginName;
 
+    @Inject
+    private AuthenticatedVariantCache variantCache;
+
+    @Inject
+    private AuthenticatedPushApplicationCache pushApplicationCache;
+
+    @Inject
+    private Event<VariantChangedEvent> variantChanged;
+
     @Override
     public void addVariant(Variant variant) {
         variant.setDeveloper(loginName.get());
@@ -46,13 +60,29 @@ public class GenericVariantServiceImpl implements GenericVariantService {
         return variantDao.findByVariantID(variantID);
     }
 
+    @Override
+    public List<Variant> findAllVariantsByIDs(List<String> variantIDs) {
+        return variantDao.findAllVariantsByIDs(variantIDs);
+    }
+
     @Override
     public void updateVariant(Variant variant) {
         variantDao.update(variant);
+        invalidate(variant);
     }
 
     @Override
     public void removeVariant(Variant variant) {
         variantDao.delete(variant);
+        invalidate(variant);
+    }
+
+    /**
+     * Drops the cached variant on this node right away, the event drops it on the other nodes once the transaction commits
+     */
+    private void invalidate(Variant variant) {
+        variantCache.invalidate(variant.getVariantID());
+        pushApplicationCache.invalidateVariant(variant.getVariantID());
+        variantChanged.fire(new VariantChangedEvent(variant.getVariantID()));
     }
 }
@@ -21,10 +21,17 @@ import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
 import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
 import org.jboss.aerogear.unifiedpush.service.annotations.LoggedIn;
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedPushApplicationCache;
+import org.jboss.aerogear.unifiedpush.service.cache.AuthenticatedVariantCache;
+import org.jboss.aerogear.unifiedpush.service.cache.PushApplicationChangedEvent;
+import org.jboss.aerogear.unifiedpush.service.cache.VariantChangedEvent;
 
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Stateless
@@ -37,6 +44,18 @@ public class PushApplicationServiceImpl implements PushApplicationService {
     @LoggedIn
     private Instance<String> loginName;
 
+    @Inject
+    private AuthenticatedVariantCache variantCache;
+
+    @Inject
+    private Event<VariantChangedEvent> variantChanged;
+
+    @Inject
+    private AuthenticatedPushApplicationCache pushApplicationCache;
+
+    @Inject
+    private Event<PushApplicationChangedEvent> pushApplicationChanged;
+
     public PushApplicationServiceImpl() {
     }
 
@@ -56,6 +75,7 @@ public class PushApplicationServiceImpl implements PushApplicationService {
     public void addVariant(PushApplication pushApp, Variant variant) {
         pushApp.getVariants().add(variant);
         pushApplicationDao.update(pushApp);
+        invalidate(pushApp);
     }
 
     @Override
@@ -66,11 +86,28 @@ public class PushApplicationServiceImpl implements PushApplicationService {
     @Override
     public void updatePushApplication(PushApplication pushApp) {
         pushApplicationDao.update(pushApp);
+        invalidate(pushApp);
     }
 
     @Override
     public void removePushApplication(PushApplication pushApp) {
+        // the variants are removed together with the application
+        final List<Variant> variants = new ArrayList<Variant>(pushApp.getVariants());
         pushApplicationDao.delete(pushApp);
+        invalidate(pushApp);
+
+        for (Variant variant : variants) {
+            variantCache.invalidate(variant.getVariantID());
+            variantChanged.fire(new VariantChangedEvent(variant.getVariantID()));
+        }
+    }
+
+    /**
+     * Drops the cached application on this node right away, the event drops it on the other nodes once the transaction commits
+     */
+    private void invalidate(PushApplication pushApp) {
+        pushApplicationCache.invalidate(pushApp.getPushApplicationID());
+        pushApplicationChanged.fire(new PushApplicationChangedEvent(pushApp.getPushApplicationID()));
     }
 
 }
@@ -31,6 +31,7 @@ import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
 import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.dao.VariantDao;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 import org.jboss.aerogear.unifiedpush.service.PushSearchService;
@@ -123,6 +124,11 @@ public class PushSearchByDeveloperServiceImpl implements PushSearchService {
         return installationDao.findInstallationsByVariantForDeveloper(variantID,loginName.get(), page, pageSize, search);
     }
 
+    @Override
+    public ResultsStream.QueryBuilder<Installation> streamAllInstallationsByVariantForDeveloper(String variantID) {
+        return installationDao.streamInstallationsByVariantForDeveloper(variantID, loginName.get());
+    }
+
     private long totalMessages() {
         return pushMessageInformationDao.getNumberOfPushMessagesForLoginName(loginName.get());
     }
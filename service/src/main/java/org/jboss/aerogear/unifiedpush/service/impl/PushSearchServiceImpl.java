@@ -30,6 +30,7 @@ import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
 import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
 import org.jboss.aerogear.unifiedpush.dao.VariantDao;
 import org.jboss.aerogear.unifiedpush.dto.Count;
 import org.jboss.aerogear.unifiedpush.service.PushSearchService;
@@ -75,6 +76,11 @@ public class PushSearchServiceImpl implements PushSearchService {
         return installationDao.findInstallationsByVariant(variantID, page, pageSize, search);
     }
 
+    @Override
+    public ResultsStream.QueryBuilder<Installation> streamAllInstallationsByVariantForDeveloper(String variantID) {
+        return installationDao.streamInstallationsByVariantForDeveloper(variantID, null);
+    }
+
 
     /**
      * Receives the dashboard data for the given user
@@ -0,0 +1,328 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import org.jboss.aerogear.unifiedpush.service.impl.health.HealthDetails;
+import org.jboss.aerogear.unifiedpush.service.impl.health.Status;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Write-behind buffer for the app open analytics.
+ *
+ * App opens are counted in memory per push message and variant, in striped counters so that concurrent requests do not contend
+ * on a single counter, and are added to the counters in the database once per second
+ * (see {@link PushMessageMetricsService#updateAnalytics(String, Map, Date, Date)}). Since only increments are written,
+ * the app opens counted by all nodes add up.
+ *
+ * When more than the configured number of push message and variant pairs is pending (see {@link #AEROGEAR_APP_OPEN_BUFFER_SIZE}),
+ * app opens are written to the database directly. The app opens of a push message that could not be stored are put back into the buffer
+ * for the next flush, up to {@link #MAX_ATTEMPTS} times.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AppOpenCounterBuffer {
+
+    // system property name used to configure the maximum number of pending push message and variant pairs
+    public static final String AEROGEAR_APP_OPEN_BUFFER_SIZE = "aerogear.metrics.appopen.buffer.size";
+
+    private static final int DEFAULT_BUFFER_SIZE = 10000;
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(AppOpenCounterBuffer.class);
+
+    private final int maxPendingCounters = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_APP_OPEN_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+
+    private final ConcurrentMap<String, PendingOpens> pendingOpens = new ConcurrentHashMap<String, PendingOpens>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicLong lastFlushSize = new AtomicLong();
+    private final AtomicLong lastFlushDuration = new AtomicLong();
+    private final AtomicLong failedOpens = new AtomicLong();
+
+    @Inject
+    private PushMessageMetricsService metricsService;
+
+    /**
+     * Counts an app open caused by the given push message.
+     *
+     * @param pushMessageInformationId the ID of the push message information
+     * @param variantID the ID of the variant of the device
+     */
+    public void record(String pushMessageInformationId, String variantID) {
+        final long now = System.currentTimeMillis();
+        if (!add(pushMessageInformationId, variantID, now, now, 1, 0)) {
+            logger.fine("App open buffer is full, storing the app open directly");
+            metricsService.updateAnalytics(pushMessageInformationId, variantID);
+        }
+    }
+
+    /**
+     * Adds the pending app opens to the counters in the database, one transaction per push message.
+     */
+    @Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void flush() {
+        if (pendingOpens.isEmpty() || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final long start = System.currentTimeMillis();
+            long flushed = 0;
+            for (Entry<String, List<PendingOpens>> entry : drain().entrySet()) {
+                final Map<String, Long> opensPerVariant = new HashMap<String, Long>();
+                long opens = 0;
+                long firstOpen = Long.MAX_VALUE;
+                long lastOpen = 0;
+                for (PendingOpens pending : entry.getValue()) {
+                    if (pending.getOpens() == 0) {
+                        continue;
+                    }
+                    opensPerVariant.put(pending.variantID, pending.getOpens());
+                    opens += pending.getOpens();
+                    firstOpen = Math.min(firstOpen, pending.getFirstOpen());
+                    lastOpen = Math.max(lastOpen, pending.getLastOpen());
+                }
+                if (opens == 0) {
+                    continue;
+                }
+                try {
+                    metricsService.updateAnalytics(entry.getKey(), opensPerVariant, new Date(firstOpen), new Date(lastOpen));
+                    flushed += opens;
+                } catch (RuntimeException e) {
+                    logger.warning(String.format("Failed to store %d app opens for push message %s", opens, entry.getKey()));
+                    requeue(entry.getValue(), e);
+                }
+            }
+            lastFlushSize.set(flushed);
+            lastFlushDuration.set(System.currentTimeMillis() - start);
+            logger.fine(String.format("Stored %d app opens in %d ms", flushed, lastFlushDuration.get()));
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * On container shutdown, the pending app opens are stored.
+     */
+    @PreDestroy
+    public void terminate() {
+        flush();
+    }
+
+    /**
+     * Reports the number of pending counters and latency of the last flush; the status is WARN once the buffer overflows.
+     *
+     * @return the health details of the app open buffer
+     */
+    public HealthDetails status() {
+        final HealthDetails details = new HealthDetails();
+        details.setDescription("App open analytics buffer");
+        final int pendingCounters = pendingOpens.size();
+        details.setTestStatus(pendingCounters >= maxPendingCounters ? Status.WARN : Status.OK);
+        details.setResult(String.format("%d pending counters, last flush stored %d app opens in %d ms, %d failed",
+                pendingCounters, lastFlushSize.get(), lastFlushDuration.get(), failedOpens.get()));
+        details.setRuntime(lastFlushDuration.get());
+        return details;
+    }
+
+    /**
+     * Counts the given app opens in the pending counter of the push message and variant.
+     *
+     * @return false if the buffer is full and the app opens were not counted
+     */
+    private boolean add(String pushMessageInformationId, String variantID, long firstOpen, long lastOpen, long opens, int attempts) {
+        final String key = pushMessageInformationId + '/' + variantID;
+
+        while (true) {
+            PendingOpens pending = pendingOpens.get(key);
+            if (pending == null) {
+                if (pendingOpens.size() >= maxPendingCounters) {
+                    return false;
+                }
+                final PendingOpens created = new PendingOpens(pushMessageInformationId, variantID, firstOpen, attempts);
+                pending = pendingOpens.putIfAbsent(key, created);
+                if (pending == null) {
+                    pending = created;
+                }
+            }
+            if (pending.add(firstOpen, lastOpen, opens)) {
+                return true;
+            }
+            // the counter was drained by a concurrent flush, the app opens are counted by a new one
+            pendingOpens.remove(key, pending);
+        }
+    }
+
+    /**
+     * Puts the drained app opens of a push message back into the buffer, unless they failed to be stored too often or the buffer is full
+     */
+    private void requeue(List<PendingOpens> drained, RuntimeException cause) {
+        for (PendingOpens pending : drained) {
+            if (pending.getOpens() == 0) {
+                continue;
+            }
+            if (pending.attempts + 1 >= MAX_ATTEMPTS) {
+                logger.severe(String.format("Failed to store %d app opens for push message %s after %d attempts",
+                        pending.getOpens(), pending.pushMessageInformationId, MAX_ATTEMPTS), cause);
+                failedOpens.addAndGet(pending.getOpens());
+            } else if (!add(pending.pushMessageInformationId, pending.variantID, pending.getFirstOpen(), pending.getLastOpen(), pending.getOpens(), pending.attempts + 1)) {
+                logger.severe(String.format("Failed to store %d app opens for push message %s, the buffer is full", pending.getOpens(), pending.pushMessageInformationId), cause);
+                failedOpens.addAndGet(pending.getOpens());
+            }
+        }
+    }
+
+    /**
+     * Removes and closes all pending counters, grouped by push message
+     */
+    private Map<String, List<PendingOpens>> drain() {
+        final Map<String, List<PendingOpens>> opensPerMessage = new HashMap<String, List<PendingOpens>>();
+
+        final Iterator<String> keys = pendingOpens.keySet().iterator();
+        while (keys.hasNext()) {
+            final PendingOpens pending = pendingOpens.remove(keys.next());
+            if (pending == null) {
+                continue;
+            }
+            pending.close();
+            List<PendingOpens> opens = opensPerMessage.get(pending.pushMessageInformationId);
+            if (opens == null) {
+                opens = new ArrayList<PendingOpens>();
+                opensPerMessage.put(pending.pushMessageInformationId, opens);
+            }
+            opens.add(pending);
+        }
+        return opensPerMessage;
+    }
+
+    /**
+     * Counter of the app opens of one push message and variant.
+     *
+     * The counter is striped by thread; each stripe holds its count and the date of its last app open. Closing the counter
+     * atomically takes the count of every stripe and marks it as closed, so that no app open is lost or counted twice.
+     *
+     * The attempts are the number of failed flushes of the app opens that were put back into the counter.
+     */
+    static class PendingOpens {
+        private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+        // the stripes are a cache line (8 longs) apart, so that cores do not write to a shared cache line
+        private static final int PADDING = 8;
+        private static final long CLOSED = -1L;
+
+        private final String pushMessageInformationId;
+        private final String variantID;
+        private final int attempts;
+        private final AtomicLong firstOpen;
+        private final AtomicLongArray stripes = new AtomicLongArray(STRIPES * PADDING);
+
+        // totals, only valid once the counter is closed
+        private long opens;
+        private long lastOpen;
+
+        PendingOpens(String pushMessageInformationId, String variantID, long firstOpen) {
+            this(pushMessageInformationId, variantID, firstOpen, 0);
+        }
+
+        PendingOpens(String pushMessageInformationId, String variantID, long firstOpen, int attempts) {
+            this.pushMessageInformationId = pushMessageInformationId;
+            this.variantID = variantID;
+            this.firstOpen = new AtomicLong(firstOpen);
+            this.attempts = attempts;
+        }
+
+        /**
+         * @return false if the counter was closed already and the app open was not counted
+         */
+        boolean add(long openDate) {
+            return add(openDate, openDate, 1);
+        }
+
+        /**
+         * @return false if the counter was closed already and the app opens were not counted
+         */
+        boolean add(long firstDate, long lastDate, long opens) {
+            final int index = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+
+            // only app opens put back by a failed flush can be older than the first one
+            long first = firstOpen.get();
+            while (firstDate < first && !firstOpen.compareAndSet(first, firstDate)) {
+                first = firstOpen.get();
+            }
+
+            // the date is set before the count, so that it is seen by close() whenever the count is
+            long last = stripes.get(index + 1);
+            while (lastDate > last && !stripes.compareAndSet(index + 1, last, lastDate)) {
+                last = stripes.get(index + 1);
+            }
+
+            long count = stripes.get(index);
+            while (count != CLOSED) {
+                if (stripes.compareAndSet(index, count, count + opens)) {
+                    return true;
+                }
+                count = stripes.get(index);
+            }
+            return false;
+        }
+
+        void close() {
+            for (int index = 0; index < STRIPES * PADDING; index += PADDING) {
+                final long count = stripes.getAndSet(index, CLOSED);
+                if (count != CLOSED) {
+                    opens += count;
+                }
+                lastOpen = Math.max(lastOpen, stripes.get(index + 1));
+            }
+        }
+
+        long getOpens() {
+            return opens;
+        }
+
+        long getFirstOpen() {
+            return firstOpen.get();
+        }
+
+        long getLastOpen() {
+            return lastOpen;
+        }
+    }
+}
@@ -16,13 +16,19 @@
  */
 package org.jboss.aerogear.unifiedpush.service.metrics;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
-import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.api.PushMessageState;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
 import org.jboss.aerogear.unifiedpush.dao.VariantMetricInformationDao;
@@ -46,6 +52,9 @@ public class PushMessageMetricsService {
     @Inject
     private VariantMetricInformationDao variantMetricInformationDao;
 
+    @Inject
+    private Event<PushMessageStateChangedEvent> pushMessageStateChanged;
+
     /**
      * Starts the capturing of metadata around a push message request.
      *
@@ -57,6 +66,22 @@ public class PushMessageMetricsService {
      * @return the metadata object for the started push message request job
      */
     public PushMessageInformation storeNewRequestFrom(String pushAppId, String json, String ipAddress, String clientIdentifier, int totalVariantCount) {
+        final PushMessageInformation information = newRequestFrom(pushAppId, json, ipAddress, clientIdentifier, totalVariantCount);
+        storeNewRequests(Collections.singletonList(information));
+        return information;
+    }
+
+    /**
+     * Creates the metadata object of a push message request, without storing it.
+     *
+     * @param pushAppId the ip of the push application which is owing the push message job
+     * @param json the raw JSON data
+     * @param ipAddress remote address of the job submitter
+     * @param clientIdentifier the String representating who triggered the push message
+     *
+     * @return the metadata object for the push message request job, to be stored by {@link #storeNewRequests(Collection)}
+     */
+    public PushMessageInformation newRequestFrom(String pushAppId, String json, String ipAddress, String clientIdentifier, int totalVariantCount) {
         final PushMessageInformation information = new PushMessageInformation();
 
         information.setRawJsonMessage(json);
@@ -66,12 +91,82 @@ public class PushMessageMetricsService {
         information.setServedVariants(0);
         information.setTotalVariants(totalVariantCount);
 
-        pushMessageInformationDao.create(information);
+        return information;
+    }
+
+    /**
+     * Stores the metadata of several push message requests, the inserts are flushed at once.
+     *
+     * @param informations the metadata objects created by {@link #newRequestFrom(String, String, String, String, int)}
+     */
+    public void storeNewRequests(Collection<PushMessageInformation> informations) {
+        for (PushMessageInformation information : informations) {
+            pushMessageInformationDao.create(information);
+        }
         pushMessageInformationDao.flushAndClear();
+    }
 
-        return information;
+
+    /**
+     * Looks up the push message request that was submitted with the given idempotency key.
+     *
+     * @param pushAppId the ID of the push application
+     * @param idempotencyKey the key supplied by the sender
+     *
+     * @return the ID of the push message information, or null if no request was submitted with the key
+     */
+    public String findIdByIdempotencyKey(String pushAppId, String idempotencyKey) {
+        return pushMessageInformationDao.findIdByIdempotencyKey(pushAppId, idempotencyKey);
     }
 
+    /**
+     * Looks up the latest push message request that was submitted with the given collapse key.
+     *
+     * @param pushAppId the ID of the push application
+     * @param collapseKey the alias and consolidation key of the push message
+     *
+     * @return the ID of the latest push message information, or null if no request was submitted with the key
+     */
+    public String findLatestIdByCollapseKey(String pushAppId, String collapseKey) {
+        return pushMessageInformationDao.findLatestIdByCollapseKey(pushAppId, collapseKey);
+    }
+
+    /**
+     * Pauses, resumes or cancels the delivery of the given push message; all nodes are notified once the change is committed.
+     *
+     * @param pushMessageInformationId the ID of the push message information
+     * @param state the new delivery state
+     *
+     * @return true if the push message exists, false otherwise
+     */
+    public boolean updateState(String pushMessageInformationId, PushMessageState state) {
+        if (!pushMessageInformationDao.updateState(pushMessageInformationId, state)) {
+            return false;
+        }
+        pushMessageStateChanged.fire(new PushMessageStateChangedEvent(pushMessageInformationId, state));
+        return true;
+    }
+
+    /**
+     * Records that the given push message was collapsed into a newer push message. Since no batches of the push message
+     * are queued, the other nodes are not notified.
+     *
+     * @param pushMessageInformationId the ID of the push message information
+     */
+    public void markCollapsed(String pushMessageInformationId) {
+        pushMessageInformationDao.updateState(pushMessageInformationId, PushMessageState.COLLAPSED);
+    }
+
+    /**
+     * Returns the IDs of the push messages in the given delivery state
+     *
+     * @param state the delivery state
+     *
+     * @return list of push message information IDs
+     */
+    public List<String> findIdsInState(PushMessageState state) {
+        return pushMessageInformationDao.findIdsInState(state);
+    }
 
     /**
      * Delegates a database update for the given {@link org.jboss.aerogear.unifiedpush.api.PushMessageInformation} object.
@@ -139,28 +234,39 @@ public class PushMessageMetricsService {
         return pushMessageInformationDao.find(id);
     }
 
+    /**
+     * Records one app open, caused by the given push message, right away.
+     *
+     * @param aerogearPushId the ID of the push message information
+     * @param variantID the ID of the variant of the device
+     *
+     * @see AppOpenCounterBuffer
+     */
     public void updateAnalytics(String aerogearPushId, String variantID) {
-        PushMessageInformation pushMessageInformation = this.getPushMessageInformation(aerogearPushId);
-
-        if (pushMessageInformation != null) { //if we are here, app has been opened due to a push message
-
-            //if the firstOpenDate is not null that means it's no the first one, let's update the lastDateOpen
-            if (pushMessageInformation.getFirstOpenDate() != null) {
-                pushMessageInformation.setLastOpenDate(new Date());
-            } else {
-                pushMessageInformation.setFirstOpenDate(new Date());
-                pushMessageInformation.setLastOpenDate(new Date());
-            }
-            //update the general counter
-            pushMessageInformation.incrementAppOpenCounter();
-
-            //update the variant counter
-            VariantMetricInformation variantMetricInformation = variantMetricInformationDao.findVariantMetricInformationByVariantID(variantID, pushMessageInformation.getId());
-            variantMetricInformation.incrementVariantOpenCounter();
-            variantMetricInformationDao.update(variantMetricInformation);
-
-            this.updatePushMessageInformation(pushMessageInformation);
-        }
+        final Date now = new Date();
+        updateAnalytics(aerogearPushId, Collections.singletonMap(variantID, 1L), now, now);
+    }
 
+    /**
+     * Adds the given app opens, caused by the given push message, to the counters of the push message and its variants.
+     *
+     * The counters are incremented in the database, without loading the push message, so that app opens recorded by several nodes
+     * do not overwrite each other; opens of an unknown push message are ignored.
+     *
+     * @param aerogearPushId the ID of the push message information
+     * @param opensPerVariant the number of app opens per variant ID
+     * @param firstOpenDate the date of the earliest of the app opens
+     * @param lastOpenDate the date of the latest of the app opens
+     */
+    public void updateAnalytics(String aerogearPushId, Map<String, Long> opensPerVariant, Date firstOpenDate, Date lastOpenDate) {
+        // the loaded push message informations would be stale after the increments
+        pushMessageInformationDao.flushAndClear();
+
+        long opens = 0;
+        for (Entry<String, Long> entry : opensPerVariant.entrySet()) {
+            variantMetricInformationDao.addVariantOpens(entry.getKey(), aerogearPushId, entry.getValue());
+            opens += entry.getValue();
+        }
+        pushMessageInformationDao.addAppOpens(aerogearPushId, opens, firstOpenDate, lastOpenDate);
     }
 }
@@ -0,0 +1,45 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import org.jboss.aerogear.unifiedpush.api.PushMessageState;
+
+import java.io.Serializable;
+
+/**
+ * Signals that a push message was paused, resumed or cancelled, so that all nodes of the cluster adjust its delivery.
+ */
+public class PushMessageStateChangedEvent implements Serializable {
+
+    private static final long serialVersionUID = -5527093427612003375L;
+
+    private String pushMessageInformationId;
+    private PushMessageState state;
+
+    public PushMessageStateChangedEvent(String pushMessageInformationId, PushMessageState state) {
+        this.pushMessageInformationId = pushMessageInformationId;
+        this.state = state;
+    }
+
+    public String getPushMessageInformationId() {
+        return pushMessageInformationId;
+    }
+
+    public PushMessageState getState() {
+        return state;
+    }
+}
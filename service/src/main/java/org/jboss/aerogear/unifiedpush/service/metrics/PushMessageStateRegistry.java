@@ -0,0 +1,101 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import org.jboss.aerogear.unifiedpush.api.PushMessageState;
+import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the push messages that were paused or cancelled, so that token loading and dispatching can check
+ * the delivery state of a push message without querying the database.
+ *
+ * The states are loaded at startup; whenever a state changes, a {@link PushMessageStateChangedEvent}
+ * updates the registry on all nodes of the cluster.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PushMessageStateRegistry {
+
+    // reason recorded in the variant metrics for devices that were not served
+    public static final String CANCELLED_REASON = "Push message was cancelled";
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(PushMessageStateRegistry.class);
+
+    // only the push messages that are not active are kept
+    private final ConcurrentMap<String, PushMessageState> states = new ConcurrentHashMap<String, PushMessageState>();
+
+    @Inject
+    private PushMessageInformationDao pushMessageInformationDao;
+
+    @PostConstruct
+    public void loadStates() {
+        for (String id : pushMessageInformationDao.findIdsInState(PushMessageState.PAUSED)) {
+            states.put(id, PushMessageState.PAUSED);
+        }
+        for (String id : pushMessageInformationDao.findIdsInState(PushMessageState.CANCELLED)) {
+            states.put(id, PushMessageState.CANCELLED);
+        }
+        logger.info(String.format("Loaded %d paused or cancelled push messages", states.size()));
+    }
+
+    /**
+     * @param pushMessageInformationId the ID of the push message information
+     * @return true if the delivery of the push message was cancelled
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public boolean isCancelled(String pushMessageInformationId) {
+        return states.get(pushMessageInformationId) == PushMessageState.CANCELLED;
+    }
+
+    /**
+     * @param pushMessageInformationId the ID of the push message information
+     * @return true if the delivery of the push message is paused
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public boolean isPaused(String pushMessageInformationId) {
+        return states.get(pushMessageInformationId) == PushMessageState.PAUSED;
+    }
+
+    /**
+     * Records the new delivery state of a push message on this node.
+     *
+     * @param event the state change
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void update(PushMessageStateChangedEvent event) {
+        if (event.getState() == PushMessageState.ACTIVE) {
+            states.remove(event.getPushMessageInformationId());
+        } else {
+            states.put(event.getPushMessageInformationId(), event.getState());
+        }
+        logger.fine(String.format("Push message %s is %s", event.getPushMessageInformationId(), event.getState()));
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.registration;
+
+import java.util.UUID;
+
+/**
+ * Progress of a device import, as reported by the job-status endpoint of the importer.
+ *
+ * The counters are only updated by the {@link InstallationImporter} thread running the job, and may be read concurrently.
+ *
+ * Jobs are only known to the node that received the upload: in a cluster, the status has to be polled from
+ * that node (see {@link #getNode()}), e.g. by sticky sessions of the load balancer; other nodes answer 404.
+ */
+public class ImportJob {
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String variantID;
+    private final String node;
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile State state = State.RUNNING;
+    private volatile long processed;
+    private volatile long imported;
+    private volatile long skipped;
+    private volatile long failed;
+    private volatile long endTime;
+    private volatile String reason;
+
+    public ImportJob(String variantID, String node) {
+        this.variantID = variantID;
+        this.node = node;
+    }
+
+    void chunkImported(int size, int stored) {
+        processed += size;
+        imported += stored;
+        skipped += size - stored;
+    }
+
+    void chunkFailed(int size) {
+        processed += size;
+        failed += size;
+    }
+
+    void complete() {
+        endTime = System.currentTimeMillis();
+        state = State.COMPLETED;
+    }
+
+    void fail(String reason) {
+        this.reason = reason;
+        endTime = System.currentTimeMillis();
+        state = State.FAILED;
+    }
+
+    public boolean isFinished() {
+        return state != State.RUNNING;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getVariantID() {
+        return variantID;
+    }
+
+    /**
+     * @return name of the node running the job, which is the only one able to report its progress
+     */
+    public String getNode() {
+        return node;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of installations read from the uploaded file so far
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return number of installations stored
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * @return number of installations ignored, because they have no token or are already stored
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return number of installations of chunks that could not be stored
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the time the job finished, 0 while it is running
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return the reason why the job failed, if so
+     */
+    public String getReason() {
+        return reason;
+    }
+}
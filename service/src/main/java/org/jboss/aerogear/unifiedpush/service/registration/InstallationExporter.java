@@ -0,0 +1,78 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.registration;
+
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.dao.ResultStreamException;
+import org.jboss.aerogear.unifiedpush.dao.ResultsStream;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Runs device exports, so that the installations are read within one transaction
+ * while they are written to the response, and the underlying cursor is always released.
+ *
+ * The export holds its transaction (and database connection) until the last installation is written,
+ * large exports to slow clients are therefore bounded by the transaction timeout of the server.
+ */
+@Stateless
+public class InstallationExporter {
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(InstallationExporter.class);
+
+    /**
+     * Receives the exported installations one by one
+     */
+    public interface InstallationWriter {
+
+        void write(Installation installation) throws IOException;
+    }
+
+    /**
+     * Executes the given query and hands each installation to the writer.
+     *
+     * @param installations the query of the installations to export, not executed yet
+     * @param fetchSize the number of installations to fetch from the database at once
+     * @param writer the writer of the installations
+     *
+     * @throws IOException if the writer fails
+     * @throws ResultStreamException if the installations could not be read
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void exportInstallations(ResultsStream.QueryBuilder<Installation> installations, int fetchSize, InstallationWriter writer) throws IOException, ResultStreamException {
+        final ResultsStream<Installation> results = installations.fetchSize(fetchSize).executeQuery();
+        try {
+            while (results.next()) {
+                writer.write(results.get());
+            }
+        } finally {
+            if (results instanceof Closeable) {
+                try {
+                    ((Closeable) results).close();
+                } catch (IOException e) {
+                    logger.warning("Could not release the exported installations: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
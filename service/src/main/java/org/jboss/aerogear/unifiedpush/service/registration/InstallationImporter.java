@@ -0,0 +1,153 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.registration;
+
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.impl.ClientInstallationServiceImpl;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs device imports in the background, reading the installations chunk by chunk so that the memory needed
+ * does not depend on the size of the uploaded file nor on the number of devices already registered for the variant.
+ *
+ * Each chunk is stored in its own transaction (see {@link ClientInstallationService#importInstallations(Variant, java.util.Collection)}),
+ * the progress is tracked by an {@link ImportJob}, which is kept for an hour after the import finished.
+ * The jobs are kept in memory of this node only, they are not shared across a cluster.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class InstallationImporter {
+
+    // system property holding the name of the node (set by WildFly/EAP)
+    private static final String NODE_NAME = "jboss.node.name";
+
+    private static final long FINISHED_JOB_RETENTION = TimeUnit.HOURS.toMillis(1);
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(InstallationImporter.class);
+
+    private final ConcurrentMap<String, ImportJob> jobs = new ConcurrentHashMap<String, ImportJob>();
+
+    @Inject
+    private ClientInstallationService clientInstallationService;
+
+    /**
+     * Registers a new import job for the given variant, to be passed to {@link #importInstallations(ImportJob, Variant, Iterator)}.
+     *
+     * @param variant the variant to import to
+     * @return the job
+     */
+    public ImportJob createJob(Variant variant) {
+        final ImportJob job = new ImportJob(variant.getVariantID(), ConfigurationUtils.tryGetProperty(NODE_NAME, "localhost"));
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    /**
+     * @param jobId the id of the job
+     * @return the job, or null if there is no such job (any more)
+     */
+    public ImportJob findJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Stores the installations read from the given iterator, in chunks of {@link ClientInstallationServiceImpl#IMPORT_CHUNK_SIZE}.
+     * A chunk that fails to be stored is counted as failed and the import continues; a failure of the iterator itself (e.g. a malformed
+     * file) fails the job. The iterator is closed at the end, if it is {@link Closeable}.
+     *
+     * @param job the job to report the progress to
+     * @param variant the variant to import to
+     * @param installations the installations to import
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void importInstallations(ImportJob job, Variant variant, Iterator<Installation> installations) {
+        try {
+            final List<Installation> chunk = new ArrayList<Installation>(ClientInstallationServiceImpl.IMPORT_CHUNK_SIZE);
+            while (installations.hasNext()) {
+                chunk.add(installations.next());
+                if (chunk.size() == ClientInstallationServiceImpl.IMPORT_CHUNK_SIZE) {
+                    importChunk(job, variant, chunk);
+                }
+            }
+            importChunk(job, variant, chunk);
+
+            job.complete();
+            logger.info(String.format("Import %s finished: %d devices imported, %d skipped, %d failed", job.getId(), job.getImported(), job.getSkipped(), job.getFailed()));
+        } catch (RuntimeException e) {
+            logger.severe("Error when reading the devices to import", e);
+            job.fail(e.getMessage());
+        } finally {
+            if (installations instanceof Closeable) {
+                try {
+                    ((Closeable) installations).close();
+                } catch (IOException e) {
+                    logger.warning("Could not release the devices to import: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void importChunk(ImportJob job, Variant variant, List<Installation> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            job.chunkImported(chunk.size(), clientInstallationService.importInstallations(variant, chunk));
+        } catch (RuntimeException e) {
+            logger.severe(String.format("Failed to import %d devices for variant %s", chunk.size(), variant.getVariantID()), e);
+            job.chunkFailed(chunk.size());
+        }
+        chunk.clear();
+    }
+
+    /**
+     * Forgets the jobs that finished more than an hour ago.
+     */
+    @Schedule(hour = "*", minute = "*/10", persistent = false)
+    public void evictFinishedJobs() {
+        final long threshold = System.currentTimeMillis() - FINISHED_JOB_RETENTION;
+        final Iterator<ImportJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            final ImportJob job = iterator.next();
+            if (job.isFinished() && job.getEndTime() < threshold) {
+                iterator.remove();
+            }
+        }
+    }
+}
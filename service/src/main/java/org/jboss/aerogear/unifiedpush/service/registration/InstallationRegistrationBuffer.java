@@ -0,0 +1,264 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.registration;
+
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.impl.health.HealthDetails;
+import org.jboss.aerogear.unifiedpush.service.impl.health.Status;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind buffer for device registrations.
+ *
+ * Registrations are coalesced per variant and device token (the last write wins) and are written to the database
+ * once per second, in transactions of at most {@link #FLUSH_BATCH_SIZE} installations, so that app-open storms
+ * do not result in one transaction per registration.
+ *
+ * When more than the configured number of registrations is pending (see {@link #AEROGEAR_REGISTRATION_BUFFER_SIZE}),
+ * registrations are handed to the {@link ClientInstallationService} directly.
+ *
+ * Devices that unregister before their registration was flushed are dropped from the buffer (see {@link #remove(Variant, String)}).
+ *
+ * When a batch fails, its installations are stored one by one; registrations that still fail are queued again
+ * for the next flush, up to {@link #MAX_ATTEMPTS} times. Pending registrations are stored on shutdown as well.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class InstallationRegistrationBuffer {
+
+    // system property name used to configure the maximum number of pending registrations
+    public static final String AEROGEAR_REGISTRATION_BUFFER_SIZE = "aerogear.registration.buffer.size";
+
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private static final int DEFAULT_BUFFER_SIZE = 100000;
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(InstallationRegistrationBuffer.class);
+
+    private final int maxPendingRegistrations = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_REGISTRATION_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+
+    private final ConcurrentMap<String, PendingRegistration> pendingRegistrations = new ConcurrentHashMap<String, PendingRegistration>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicLong lastFlushSize = new AtomicLong();
+    private final AtomicLong lastFlushDuration = new AtomicLong();
+    private final AtomicLong failedRegistrations = new AtomicLong();
+
+    @Inject
+    private ClientInstallationService clientInstallationService;
+
+    /**
+     * Queues the given installation for being stored, replacing a pending registration of the same device.
+     *
+     * @param variant the variant to store on
+     * @param installation the installation
+     */
+    public void enqueue(Variant variant, Installation installation) {
+        if (pendingRegistrations.size() >= maxPendingRegistrations) {
+            logger.fine("Registration buffer is full, storing the installation directly");
+            clientInstallationService.addInstallation(variant, installation);
+            return;
+        }
+        pendingRegistrations.put(key(variant, installation.getDeviceToken()), new PendingRegistration(variant, installation));
+    }
+
+    /**
+     * Drops the pending registration of the given device, so that a flush does not store a device that unregistered meanwhile.
+     *
+     * @param variant the variant the device registered on
+     * @param deviceToken the device token
+     * @return true when a pending registration was dropped
+     */
+    public boolean remove(Variant variant, String deviceToken) {
+        return pendingRegistrations.remove(key(variant, deviceToken)) != null;
+    }
+
+    /**
+     * Writes the pending registrations to the database, one transaction per variant and {@link #FLUSH_BATCH_SIZE} installations.
+     */
+    @Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void flush() {
+        if (pendingRegistrations.isEmpty() || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final long start = System.currentTimeMillis();
+            int flushed = 0;
+            for (List<PendingRegistration> batch : drain()) {
+                final Variant variant = batch.get(0).variant;
+                final List<Installation> installations = new ArrayList<Installation>(batch.size());
+                for (PendingRegistration registration : batch) {
+                    installations.add(registration.installation);
+                }
+                try {
+                    clientInstallationService.addOrUpdateInstallations(variant, installations);
+                    flushed += installations.size();
+                } catch (RuntimeException e) {
+                    logger.warning(String.format("Failed to store %d registrations for variant %s, storing them one by one", installations.size(), variant.getVariantID()));
+                    flushed += storeOneByOne(batch);
+                }
+            }
+            lastFlushSize.set(flushed);
+            lastFlushDuration.set(System.currentTimeMillis() - start);
+            logger.fine(String.format("Stored %d registrations in %d ms", flushed, lastFlushDuration.get()));
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * On container shutdown, the pending registrations are stored.
+     */
+    @PreDestroy
+    public void terminate() {
+        flush();
+    }
+
+    /**
+     * Stores each registration of a failed batch in its own transaction, failing registrations are queued again
+     *
+     * @return the number of stored registrations
+     */
+    private int storeOneByOne(List<PendingRegistration> batch) {
+        int stored = 0;
+        for (PendingRegistration registration : batch) {
+            try {
+                clientInstallationService.addOrUpdateInstallations(registration.variant, Collections.singletonList(registration.installation));
+                stored++;
+            } catch (RuntimeException e) {
+                requeue(registration, e);
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Queues a failed registration for the next flush, unless the device registered again meanwhile or the registration failed too often
+     */
+    private void requeue(PendingRegistration registration, RuntimeException cause) {
+        final String key = key(registration.variant, registration.installation.getDeviceToken());
+        if (registration.attempts + 1 >= MAX_ATTEMPTS) {
+            logger.severe(String.format("Failed to store registration for variant %s after %d attempts", registration.variant.getVariantID(), MAX_ATTEMPTS), cause);
+            failedRegistrations.incrementAndGet();
+            return;
+        }
+        pendingRegistrations.putIfAbsent(key, new PendingRegistration(registration.variant, registration.installation, registration.attempts + 1));
+    }
+
+    /**
+     * @return the number of registrations waiting to be stored
+     */
+    public int getQueueDepth() {
+        return pendingRegistrations.size();
+    }
+
+    /**
+     * Reports queue depth and latency of the last flush; the status is WARN once the buffer overflows.
+     *
+     * @return the health details of the registration buffer
+     */
+    public HealthDetails status() {
+        final HealthDetails details = new HealthDetails();
+        details.setDescription("Registration buffer");
+        final int queueDepth = getQueueDepth();
+        details.setTestStatus(queueDepth >= maxPendingRegistrations ? Status.WARN : Status.OK);
+        details.setResult(String.format("%d pending, last flush stored %d registrations in %d ms, %d failed",
+                queueDepth, lastFlushSize.get(), lastFlushDuration.get(), failedRegistrations.get()));
+        details.setRuntime(lastFlushDuration.get());
+        return details;
+    }
+
+    /**
+     * Removes all pending registrations, grouped into batches of the same variant
+     */
+    private List<List<PendingRegistration>> drain() {
+        final Map<String, List<PendingRegistration>> registrationsPerVariant = new LinkedHashMap<String, List<PendingRegistration>>();
+        final List<List<PendingRegistration>> batches = new ArrayList<List<PendingRegistration>>();
+
+        final Iterator<String> keys = pendingRegistrations.keySet().iterator();
+        while (keys.hasNext()) {
+            final PendingRegistration registration = pendingRegistrations.remove(keys.next());
+            if (registration == null) {
+                continue;
+            }
+            final String variantID = registration.variant.getVariantID();
+            List<PendingRegistration> batch = registrationsPerVariant.get(variantID);
+            if (batch == null) {
+                batch = new ArrayList<PendingRegistration>();
+                registrationsPerVariant.put(variantID, batch);
+            }
+            batch.add(registration);
+            if (batch.size() >= FLUSH_BATCH_SIZE) {
+                batches.add(batch);
+                registrationsPerVariant.remove(variantID);
+            }
+        }
+        batches.addAll(registrationsPerVariant.values());
+        return batches;
+    }
+
+    /**
+     * iOS tokens are stored in lower case, so registrations of the same device are coalesced regardless of case
+     */
+    static String key(Variant variant, String deviceToken) {
+        final String token = VariantType.IOS.equals(variant.getType()) && deviceToken != null ? deviceToken.toLowerCase() : deviceToken;
+        return variant.getVariantID() + '/' + token;
+    }
+
+    private static class PendingRegistration {
+        private final Variant variant;
+        private final Installation installation;
+        private final int attempts;
+
+        PendingRegistration(Variant variant, Installation installation) {
+            this(variant, installation, 0);
+        }
+
+        PendingRegistration(Variant variant, Installation installation, int attempts) {
+            this.variant = variant;
+            this.installation = installation;
+            this.attempts = attempts;
+        }
+    }
+}
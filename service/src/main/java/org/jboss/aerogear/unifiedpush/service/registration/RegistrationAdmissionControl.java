@@ -0,0 +1,163 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.registration;
+
+import org.jboss.aerogear.unifiedpush.service.impl.health.HealthDetails;
+import org.jboss.aerogear.unifiedpush.service.impl.health.Status;
+import org.jboss.aerogear.unifiedpush.system.ConfigurationUtils;
+import org.jboss.aerogear.unifiedpush.utils.AeroGearLogger;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for device registrations, so that registration storms (e.g. millions of apps opened after a broadcast)
+ * do not take the database capacity needed for loading the tokens of in-flight push messages.
+ *
+ * Registrations of a variant are limited by a token bucket, refilled with the configured rate (see {@link #AEROGEAR_REGISTRATION_RATE})
+ * up to the configured burst (see {@link #AEROGEAR_REGISTRATION_BURST}). All registrations are rejected while the
+ * {@link InstallationRegistrationBuffer} holds more than the configured number of pending registrations (see {@link #AEROGEAR_REGISTRATION_QUEUE_LIMIT}).
+ * Rejected registrations are meant to be answered with <code>429 Too Many Requests</code>, since the devices register again later anyway.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RegistrationAdmissionControl {
+
+    // system property names used to configure the registrations per second and variant, the burst size and the global queue limit
+    public static final String AEROGEAR_REGISTRATION_RATE = "aerogear.registration.rate";
+    public static final String AEROGEAR_REGISTRATION_BURST = "aerogear.registration.burst";
+    public static final String AEROGEAR_REGISTRATION_QUEUE_LIMIT = "aerogear.registration.queue.limit";
+
+    private static final int DEFAULT_RATE = 1000;
+    private static final int DEFAULT_BURST = 5000;
+    private static final int DEFAULT_QUEUE_LIMIT = 50000;
+
+    // the pending registrations are flushed every second
+    private static final int QUEUE_RETRY_AFTER_SECONDS = 1;
+
+    private final AeroGearLogger logger = AeroGearLogger.getInstance(RegistrationAdmissionControl.class);
+
+    private final int rate = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_REGISTRATION_RATE, DEFAULT_RATE);
+    private final int burst = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_REGISTRATION_BURST, DEFAULT_BURST);
+    private final int queueLimit = ConfigurationUtils.tryGetIntegerProperty(AEROGEAR_REGISTRATION_QUEUE_LIMIT, DEFAULT_QUEUE_LIMIT);
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong shedByRate = new AtomicLong();
+    private final AtomicLong shedByQueue = new AtomicLong();
+
+    @Inject
+    private InstallationRegistrationBuffer registrationBuffer;
+
+    /**
+     * Decides whether the given number of registrations for the variant may be processed now.
+     *
+     * @param variantID the variant the devices register for
+     * @param registrations the number of registrations of the request
+     * @return 0 if the registrations are admitted, otherwise the number of seconds after which the client should retry
+     */
+    public int admit(String variantID, int registrations) {
+        if (queueLimit > 0 && registrationBuffer.getQueueDepth() >= queueLimit) {
+            shedByQueue.addAndGet(registrations);
+            logger.fine("Registration queue is full, rejecting registrations");
+            return QUEUE_RETRY_AFTER_SECONDS;
+        }
+
+        if (rate > 0) {
+            final long now = System.nanoTime();
+            TokenBucket bucket = buckets.get(variantID);
+            if (bucket == null) {
+                final TokenBucket newBucket = new TokenBucket(rate, Math.max(burst, 1), now);
+                bucket = buckets.putIfAbsent(variantID, newBucket);
+                if (bucket == null) {
+                    bucket = newBucket;
+                }
+            }
+            final long waitNanos = bucket.tryAcquire(registrations, now);
+            if (waitNanos > 0) {
+                shedByRate.addAndGet(registrations);
+                logger.fine(String.format("Registration rate of variant %s exceeded, rejecting registrations", variantID));
+                return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            }
+        }
+
+        accepted.addAndGet(registrations);
+        return 0;
+    }
+
+    /**
+     * Reports the number of accepted and rejected registrations; the status is WARN while the queue limit is reached.
+     *
+     * @return the health details of the admission control
+     */
+    public HealthDetails status() {
+        final HealthDetails details = new HealthDetails();
+        details.setDescription("Registration admission");
+        details.setTestStatus(queueLimit > 0 && registrationBuffer.getQueueDepth() >= queueLimit ? Status.WARN : Status.OK);
+        details.setResult(String.format("%d registrations accepted, %d rejected by variant rate limit, %d rejected by queue limit",
+                accepted.get(), shedByRate.get(), shedByQueue.get()));
+        return details;
+    }
+
+    /**
+     * Token bucket holding up to <code>capacity</code> permits, refilled with <code>rate</code> permits per second.
+     */
+    static class TokenBucket {
+        private final double permitsPerNano;
+        private final int capacity;
+
+        private double permits;
+        private long lastRefill;
+
+        TokenBucket(int rate, int capacity, long now) {
+            this.permitsPerNano = rate / (double) TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.permits = capacity;
+            this.lastRefill = now;
+        }
+
+        /**
+         * @return 0 if the permits were taken, otherwise the nanoseconds until enough permits are available
+         */
+        synchronized long tryAcquire(int requested, long now) {
+            if (now > lastRefill) {
+                permits = Math.min(capacity, permits + (now - lastRefill) * permitsPerNano);
+                lastRefill = now;
+            }
+
+            if (permits >= requested) {
+                permits -= requested;
+                return 0;
+            }
+            // requests larger than the bucket are admitted once the bucket is full
+            final double missing = Math.min(requested, capacity) - permits;
+            if (missing <= 0) {
+                permits = 0;
+                return 0;
+            }
+            return (long) Math.ceil(missing / permitsPerNano);
+        }
+    }
+}
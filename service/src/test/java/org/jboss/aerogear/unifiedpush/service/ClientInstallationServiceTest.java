@@ -208,6 +208,29 @@ public class ClientInstallationServiceTest extends AbstractBaseServiceTest {
         assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(), null, null, null)).hasSize(1);
     }
 
+    @Test
+    public void addOrUpdateInstallationsInOneBatch() {
+        Installation existing = new Installation();
+        String existingToken = generateFakedDeviceTokenString();
+        existing.setDeviceToken(existingToken);
+        clientInstallationService.addInstallation(androidVariant, existing);
+
+        Installation update = new Installation();
+        update.setDeviceToken(existingToken);
+        update.setAlias("username");
+        update.setCategories(new HashSet<Category>(Arrays.asList(new Category("football"))));
+
+        Installation newDevice = new Installation();
+        newDevice.setDeviceToken(generateFakedDeviceTokenString());
+        newDevice.setCategories(new HashSet<Category>(Arrays.asList(new Category("football"))));
+
+        clientInstallationService.addOrUpdateInstallations(androidVariant, Arrays.asList(update, newDevice));
+
+        assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(), null, null, null)).hasSize(2);
+        assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(), null, Arrays.asList("username"), null)).containsOnly(existingToken);
+        assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(), Arrays.asList("football"), null, null)).hasSize(2);
+    }
+
     @Test
     public void importDevicesWithAndWithoutTokenDuplicates() {
 
@@ -303,6 +326,30 @@ public class ClientInstallationServiceTest extends AbstractBaseServiceTest {
         assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(), null, null, null)).hasSize(NUMBER_OF_INSTALLATIONS);
     }
 
+    @Test
+    public void importChunkSkipsExistingAndDuplicatedTokens() {
+
+        Installation device = new Installation();
+        device.setDeviceToken(generateFakedDeviceTokenString());
+        assertThat(clientInstallationService.importInstallations(androidVariant, Arrays.asList(device))).isEqualTo(1);
+
+        // the same token again, one duplicated within the chunk and one without token
+        final Installation existing = new Installation();
+        existing.setDeviceToken(device.getDeviceToken());
+        final String newToken = generateFakedDeviceTokenString();
+        final Installation first = new Installation();
+        first.setDeviceToken(newToken);
+        first.setAlias("first");
+        final Installation duplicate = new Installation();
+        duplicate.setDeviceToken(newToken);
+        duplicate.setAlias("duplicate");
+
+        assertThat(clientInstallationService.importInstallations(androidVariant, Arrays.asList(existing, first, duplicate, new Installation()))).isEqualTo(1);
+
+        assertThat(findAllDeviceTokenForVariantIDByCriteria(androidVariant.getVariantID(), null, null, null)).hasSize(2);
+        assertThat(clientInstallationService.findInstallationForVariantByDeviceToken(androidVariant.getVariantID(), newToken).getAlias()).isEqualTo("first");
+    }
+
     @Test
     public void findSingleDeviceTokenWithMultipleCategories() {
 
@@ -21,6 +21,7 @@ package org.jboss.aerogear.unifiedpush.service;
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
 import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
 import org.jboss.aerogear.unifiedpush.dao.VariantMetricInformationDao;
+import org.jboss.aerogear.unifiedpush.service.metrics.AppOpenCounterBuffer;
 import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
 import org.junit.Test;
 
@@ -36,6 +37,9 @@ public class PushMessageMetricServiceTest extends AbstractBaseServiceTest {
     @Inject
     private VariantMetricInformationDao variantMetricInformationDao;
 
+    @Inject
+    private AppOpenCounterBuffer appOpenCounterBuffer;
+
     private PushMessageInformation pushMessageInformation;
 
     @Override
@@ -71,6 +75,19 @@ public class PushMessageMetricServiceTest extends AbstractBaseServiceTest {
 
     }
 
+    @Test
+    public void bufferedAnalyticsTest() {
+        appOpenCounterBuffer.record(pushMessageInformation.getId(), "321");
+        appOpenCounterBuffer.record(pushMessageInformation.getId(), "321");
+        appOpenCounterBuffer.flush();
+
+        PushMessageInformation updatedPushInformation = pushMessageMetricsService.getPushMessageInformation(pushMessageInformation.getId());
+        assertThat(updatedPushInformation.getAppOpenCounter()).isEqualTo(2);
+        assertThat(updatedPushInformation.getFirstOpenDate()).isNotNull();
+        VariantMetricInformation updatedVariantMetric = variantMetricInformationDao.findVariantMetricInformationByVariantID("321", updatedPushInformation.getId());
+        assertThat(updatedVariantMetric.getVariantOpenCounter()).isEqualTo(2);
+    }
+
     @Test
     public void deleteAnalyticsTest() {
 
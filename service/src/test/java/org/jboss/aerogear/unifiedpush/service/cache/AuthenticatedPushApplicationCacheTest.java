@@ -0,0 +1,88 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.service.AbstractBaseServiceTest;
+import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
+import org.junit.Test;
+
+import javax.inject.Inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuthenticatedPushApplicationCacheTest extends AbstractBaseServiceTest {
+
+    @Inject
+    private AuthenticatedPushApplicationCache pushApplicationCache;
+
+    @Inject
+    private GenericVariantService variantService;
+
+    private PushApplication pushApplication;
+
+    @Override
+    protected void specificSetup() {
+        pushApplication = new PushApplication();
+        pushApplication.setName("EJB Container");
+        pushApplication.setCollapseWindow(30);
+        pushApplicationService.addPushApplication(pushApplication);
+    }
+
+    @Test
+    public void findAuthenticatedPushApplication() {
+        final PushApplication cached = pushApplicationCache.findAuthenticated(pushApplication.getPushApplicationID(), pushApplication.getMasterSecret());
+
+        assertThat(cached).isNotNull();
+        assertThat(cached.getPushApplicationID()).isEqualTo(pushApplication.getPushApplicationID());
+        assertThat(cached.getMasterSecret()).isNull();
+        // needed for collapsing push messages on send
+        assertThat(cached.getCollapseWindow()).isEqualTo(30);
+
+        assertThat(pushApplicationCache.findAuthenticated(pushApplication.getPushApplicationID(), "wrong")).isNull();
+        assertThat(pushApplicationCache.findAuthenticated("unknown", pushApplication.getMasterSecret())).isNull();
+    }
+
+    @Test
+    public void invalidateOnMasterSecretReset() {
+        final String oldSecret = pushApplication.getMasterSecret();
+        assertThat(pushApplicationCache.findAuthenticated(pushApplication.getPushApplicationID(), oldSecret)).isNotNull();
+
+        pushApplication.setMasterSecret("new secret");
+        pushApplicationService.updatePushApplication(pushApplication);
+
+        assertThat(pushApplicationCache.findAuthenticated(pushApplication.getPushApplicationID(), oldSecret)).isNull();
+        assertThat(pushApplicationCache.findAuthenticated(pushApplication.getPushApplicationID(), "new secret")).isNotNull();
+    }
+
+    @Test
+    public void invalidateOnNewVariant() {
+        assertThat(pushApplicationCache.findAuthenticated(pushApplication.getPushApplicationID(), pushApplication.getMasterSecret())
+                .getVariants()).isEmpty();
+
+        final AndroidVariant androidVariant = new AndroidVariant();
+        androidVariant.setGoogleKey("Key");
+        androidVariant.setName("Android");
+        variantService.addVariant(androidVariant);
+        pushApplicationService.addVariant(pushApplication, androidVariant);
+
+        final PushApplication cached = pushApplicationCache.findAuthenticated(pushApplication.getPushApplicationID(), pushApplication.getMasterSecret());
+        assertThat(cached.getVariants()).hasSize(1);
+        assertThat(cached.getVariants().get(0).getVariantID()).isEqualTo(androidVariant.getVariantID());
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.service.AbstractBaseServiceTest;
+import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
+import org.junit.Test;
+
+import javax.inject.Inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuthenticatedVariantCacheTest extends AbstractBaseServiceTest {
+
+    @Inject
+    private AuthenticatedVariantCache variantCache;
+
+    @Inject
+    private GenericVariantService variantService;
+
+    private AndroidVariant androidVariant;
+
+    @Override
+    protected void specificSetup() {
+        androidVariant = new AndroidVariant();
+        androidVariant.setGoogleKey("Key");
+        androidVariant.setName("Android");
+        androidVariant.setDeveloper("me");
+        variantService.addVariant(androidVariant);
+    }
+
+    @Test
+    public void findAuthenticatedVariant() {
+        final Variant variant = variantCache.findAuthenticated(androidVariant.getVariantID(), androidVariant.getSecret());
+
+        assertThat(variant).isNotNull();
+        assertThat(variant.getId()).isEqualTo(androidVariant.getId());
+        assertThat(variant.getVariantID()).isEqualTo(androidVariant.getVariantID());
+        assertThat(variant.getType()).isEqualTo(VariantType.ANDROID);
+        // the push network settings are not cached
+        assertThat(((AndroidVariant) variant).getGoogleKey()).isNull();
+    }
+
+    @Test
+    public void rejectWrongSecret() {
+        assertThat(variantCache.findAuthenticated(androidVariant.getVariantID(), "wrong")).isNull();
+        assertThat(variantCache.findAuthenticated(androidVariant.getVariantID(), null)).isNull();
+        assertThat(variantCache.findAuthenticated("unknown", androidVariant.getSecret())).isNull();
+    }
+
+    @Test
+    public void invalidateOnSecretReset() {
+        final String oldSecret = androidVariant.getSecret();
+        assertThat(variantCache.findAuthenticated(androidVariant.getVariantID(), oldSecret)).isNotNull();
+
+        androidVariant.setSecret("new secret");
+        variantService.updateVariant(androidVariant);
+
+        assertThat(variantCache.findAuthenticated(androidVariant.getVariantID(), oldSecret)).isNull();
+        assertThat(variantCache.findAuthenticated(androidVariant.getVariantID(), "new secret")).isNotNull();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cache;
+
+import org.jboss.aerogear.unifiedpush.service.AbstractBaseServiceTest;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CategoryDictionaryTest extends AbstractBaseServiceTest {
+
+    @Inject
+    private CategoryDictionary categoryDictionary;
+
+    @Override
+    protected void specificSetup() {
+        // noop
+    }
+
+    @Test
+    public void addAndFindCategories() {
+        assertThat(categoryDictionary.findIds(Arrays.asList("dictionary-one", "dictionary-two"))).isEmpty();
+
+        final Map<String, Long> ids = categoryDictionary.addCategories(Arrays.asList("dictionary-one", "dictionary-two", "dictionary-one"));
+        assertThat(ids).hasSize(2);
+        assertThat(ids.get("dictionary-one")).isNotNull();
+
+        assertThat(categoryDictionary.findIds(Collections.singletonList("dictionary-one"))).containsEntry("dictionary-one", ids.get("dictionary-one"));
+        assertThat(categoryDictionary.findAllIds(Arrays.asList("dictionary-one", "dictionary-two"))).containsOnly(ids.get("dictionary-one"), ids.get("dictionary-two"));
+
+        // already stored categories are not stored again
+        assertThat(categoryDictionary.addCategories(Collections.singletonList("dictionary-two"))).isEqualTo(Collections.singletonMap("dictionary-two", ids.get("dictionary-two")));
+    }
+
+    @Test
+    public void reloadInvalidatedCategories() {
+        final Map<String, Long> ids = categoryDictionary.addCategories(Collections.singletonList("dictionary-three"));
+
+        categoryDictionary.invalidate(Collections.singletonList("dictionary-three"));
+
+        assertThat(categoryDictionary.findAllIds(Collections.singletonList("dictionary-three"))).containsOnly(ids.get("dictionary-three"));
+        assertThat(categoryDictionary.findAllIds(Collections.singletonList("dictionary-unknown"))).isEmpty();
+    }
+
+    @Test
+    public void storeCategoriesThatWereMissing() {
+        assertThat(categoryDictionary.findAllIds(Collections.singletonList("dictionary-four"))).isEmpty();
+
+        // the missing name is not skipped when storing it
+        final Map<String, Long> ids = categoryDictionary.addCategories(Collections.singletonList("dictionary-four"));
+        assertThat(ids.get("dictionary-four")).isNotNull();
+
+        assertThat(categoryDictionary.findAllIds(Collections.singletonList("dictionary-four"))).containsOnly(ids.get("dictionary-four"));
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import org.jboss.aerogear.unifiedpush.service.metrics.AppOpenCounterBuffer.PendingOpens;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AppOpenCounterBufferTest {
+
+    @Mock
+    private PushMessageMetricsService metricsService;
+
+    @InjectMocks
+    private AppOpenCounterBuffer buffer;
+
+    @Before
+    public void setUp() {
+        // read when the buffer is created
+        System.setProperty(AppOpenCounterBuffer.AEROGEAR_APP_OPEN_BUFFER_SIZE, "1");
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(AppOpenCounterBuffer.AEROGEAR_APP_OPEN_BUFFER_SIZE);
+    }
+
+    @Test
+    public void appOpenIsStoredDirectlyWhenBufferIsFull() {
+        buffer.record("pmi", "variant1");
+        buffer.record("pmi", "variant2");
+
+        verify(metricsService).updateAnalytics("pmi", "variant2");
+        verify(metricsService, never()).updateAnalytics("pmi", "variant1");
+
+        buffer.flush();
+
+        verify(metricsService).updateAnalytics(eq("pmi"), eq(Collections.singletonMap("variant1", 1L)), any(Date.class), any(Date.class));
+    }
+
+    @Test
+    public void failedFlushIsRetriedUntilMaxAttempts() {
+        doThrow(new RuntimeException("database down")).when(metricsService)
+                .updateAnalytics(anyString(), anyMapOf(String.class, Long.class), any(Date.class), any(Date.class));
+        buffer.record("pmi", "variant");
+        buffer.record("pmi", "variant");
+
+        for (int attempt = 1; attempt < AppOpenCounterBuffer.MAX_ATTEMPTS; attempt++) {
+            buffer.flush();
+            assertThat(buffer.status().getResult()).startsWith("1 pending counters").endsWith("0 failed");
+        }
+        buffer.flush();
+
+        final Map<String, Long> opens = Collections.singletonMap("variant", 2L);
+        verify(metricsService, times(AppOpenCounterBuffer.MAX_ATTEMPTS)).updateAnalytics(eq("pmi"), eq(opens), any(Date.class), any(Date.class));
+        assertThat(buffer.status().getResult()).startsWith("0 pending counters").endsWith("2 failed");
+    }
+
+    @Test
+    public void appOpensOfFailedFlushAreStoredByNextFlush() {
+        doThrow(new RuntimeException("database down")).doNothing().when(metricsService)
+                .updateAnalytics(anyString(), anyMapOf(String.class, Long.class), any(Date.class), any(Date.class));
+        buffer.record("pmi", "variant");
+
+        buffer.flush();
+        buffer.record("pmi", "variant");
+        buffer.flush();
+
+        // the app open of the failed flush is added to the one counted since
+        verify(metricsService).updateAnalytics(eq("pmi"), eq(Collections.singletonMap("variant", 2L)), any(Date.class), any(Date.class));
+        assertThat(buffer.status().getResult()).startsWith("0 pending counters").endsWith("0 failed");
+    }
+
+    @Test
+    public void closedCounterReportsOpensAndDates() {
+        final PendingOpens opens = new PendingOpens("pmi", "variant", 1000L);
+        assertThat(opens.add(1000L)).isTrue();
+        assertThat(opens.add(3000L)).isTrue();
+        assertThat(opens.add(2000L)).isTrue();
+
+        opens.close();
+
+        assertThat(opens.getOpens()).isEqualTo(3);
+        assertThat(opens.getFirstOpen()).isEqualTo(1000L);
+        assertThat(opens.getLastOpen()).isEqualTo(3000L);
+        assertThat(opens.add(4000L)).isFalse();
+    }
+
+    @Test
+    public void concurrentOpensAreNeitherLostNorCountedTwice() throws InterruptedException {
+        final int threads = 8;
+        final int opensPerThread = 10000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong counted = new AtomicLong();
+        final PendingOpens opens = new PendingOpens("pmi", "variant", 0L);
+
+        for (int i = 0; i < threads; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < opensPerThread; j++) {
+                        if (opens.add(System.currentTimeMillis())) {
+                            counted.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        // close while the threads are still counting
+        Thread.sleep(1);
+        opens.close();
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+        assertThat(opens.getOpens()).isEqualTo(counted.get());
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.registration;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.iOSVariant;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class InstallationRegistrationBufferTest {
+
+    @Mock
+    private ClientInstallationService clientInstallationService;
+
+    @InjectMocks
+    private InstallationRegistrationBuffer buffer;
+
+    private Variant variant;
+
+    @Before
+    public void setUp() {
+        buffer = new InstallationRegistrationBuffer();
+        MockitoAnnotations.initMocks(this);
+
+        variant = new AndroidVariant();
+        variant.setVariantID("variant");
+    }
+
+    @Test
+    public void failedBatchIsStoredOneByOne() {
+        buffer.enqueue(variant, installation("token1"));
+        buffer.enqueue(variant, installation("token2"));
+        doThrow(new RuntimeException("batch failed")).when(clientInstallationService)
+                .addOrUpdateInstallations(any(Variant.class), argThat(new SizeMatcher(2)));
+
+        buffer.flush();
+
+        verify(clientInstallationService, times(2)).addOrUpdateInstallations(any(Variant.class), argThat(new SizeMatcher(1)));
+        assertThat(buffer.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void failingRegistrationIsRequeuedUntilMaxAttempts() {
+        buffer.enqueue(variant, installation("token1"));
+        doThrow(new RuntimeException("database down")).when(clientInstallationService)
+                .addOrUpdateInstallations(any(Variant.class), anyCollectionOf(Installation.class));
+
+        for (int attempt = 1; attempt < InstallationRegistrationBuffer.MAX_ATTEMPTS; attempt++) {
+            buffer.flush();
+            assertThat(buffer.getQueueDepth()).isEqualTo(1);
+        }
+        buffer.flush();
+        assertThat(buffer.getQueueDepth()).isZero();
+        assertThat(buffer.status().getResult()).endsWith("1 failed");
+    }
+
+    @Test
+    public void pendingRegistrationsAreStoredOnShutdown() {
+        doNothing().when(clientInstallationService).addOrUpdateInstallations(any(Variant.class), anyCollectionOf(Installation.class));
+        buffer.enqueue(variant, installation("token1"));
+
+        buffer.terminate();
+
+        verify(clientInstallationService).addOrUpdateInstallations(any(Variant.class), argThat(new SizeMatcher(1)));
+        assertThat(buffer.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void unregisteredDeviceIsNotStoredByFlush() {
+        buffer.enqueue(variant, installation("token1"));
+
+        assertThat(buffer.remove(variant, "token1")).isTrue();
+        buffer.flush();
+
+        verify(clientInstallationService, never()).addOrUpdateInstallations(any(Variant.class), anyCollectionOf(Installation.class));
+        assertThat(buffer.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void iOSDeviceIsRemovedRegardlessOfCase() {
+        final Variant iOSVariant = new iOSVariant();
+        iOSVariant.setVariantID("ios-variant");
+        buffer.enqueue(iOSVariant, installation("ABCDEF"));
+
+        assertThat(buffer.remove(iOSVariant, "abcdef")).isTrue();
+        assertThat(buffer.remove(iOSVariant, "abcdef")).isFalse();
+        assertThat(buffer.getQueueDepth()).isZero();
+    }
+
+    private Installation installation(String deviceToken) {
+        final Installation installation = new Installation();
+        installation.setDeviceToken(deviceToken);
+        return installation;
+    }
+
+    private static class SizeMatcher extends org.mockito.ArgumentMatcher<Collection<Installation>> {
+        private final int size;
+
+        SizeMatcher(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean matches(Object argument) {
+            return argument instanceof Collection && ((Collection<?>) argument).size() == size;
+        }
+    }
+}
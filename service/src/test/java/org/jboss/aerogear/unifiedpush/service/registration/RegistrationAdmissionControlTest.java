@@ -0,0 +1,62 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.registration;
+
+import org.jboss.aerogear.unifiedpush.service.registration.RegistrationAdmissionControl.TokenBucket;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RegistrationAdmissionControlTest {
+
+    @Test
+    public void bucketAdmitsBurstAndRefills() {
+        final long start = System.nanoTime();
+        final TokenBucket bucket = new TokenBucket(10, 20, start);
+
+        // the full burst is available up-front
+        assertThat(bucket.tryAcquire(20, start)).isEqualTo(0);
+        assertThat(bucket.tryAcquire(1, start)).isGreaterThan(0);
+
+        // 10 permits per second
+        final long halfASecondLater = start + TimeUnit.MILLISECONDS.toNanos(500);
+        assertThat(bucket.tryAcquire(5, halfASecondLater)).isEqualTo(0);
+        assertThat(bucket.tryAcquire(1, halfASecondLater)).isGreaterThan(0);
+    }
+
+    @Test
+    public void bucketReportsTimeUntilPermitsAreAvailable() {
+        final long start = System.nanoTime();
+        final TokenBucket bucket = new TokenBucket(10, 10, start);
+        assertThat(bucket.tryAcquire(10, start)).isEqualTo(0);
+
+        final long wait = bucket.tryAcquire(5, start);
+        assertThat(wait).isBetween(TimeUnit.MILLISECONDS.toNanos(499), TimeUnit.MILLISECONDS.toNanos(501));
+    }
+
+    @Test
+    public void requestLargerThanBucketIsAdmittedWhenBucketIsFull() {
+        final long start = System.nanoTime();
+        final TokenBucket bucket = new TokenBucket(10, 10, start);
+
+        assertThat(bucket.tryAcquire(50, start)).isEqualTo(0);
+        assertThat(bucket.tryAcquire(50, start)).isGreaterThan(0);
+        assertThat(bucket.tryAcquire(50, start + TimeUnit.SECONDS.toNanos(1))).isEqualTo(0);
+    }
+}